@@ -1,14 +1,17 @@
 package com;
 
-import static com.support.CsvTransformer.concatCsvFiles;
-
 import com.support.*;
+import com.support.enums.AggregateFunction;
+import com.support.enums.ColumnType;
 import com.support.enums.ComparisonOperators;
+import com.support.enums.CompressionPreset;
 import com.support.enums.MathOperation;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 public class Main {
@@ -16,97 +19,202 @@ public class Main {
   public static void main(String[] args) throws IOException {
 
     // Inicializa o serviço de download e extração de arquivos zip
+    long start = System.nanoTime();
     ZipArchiveService zipService = buildZipArchiveService();
-    zipService.downloadAndExtractArchives();
+    start = stageFinished("listagem", start);
 
     // Define os diretórios usados no fluxo
-    Path extractDir = Path.of(System.getProperty("user.dir"), "extract");
-    Path normalizedDir = Path.of(System.getProperty("user.dir"), "normalized_files");
-    Path transformedDir = Path.of(System.getProperty("user.dir"), "transformed_files");
-    Path extraFilesDir = Path.of(System.getProperty("user.dir"), "extra_files");
-    Path outputDir = Path.of(System.getProperty("user.dir"), "output");
-
-    // Lista arquivos extraídos
-    List<Path> extractedFiles;
-    try (Stream<Path> paths = Files.list(extractDir)) {
-      extractedFiles = paths.filter(Files::isRegularFile).toList();
+    Path projectRoot = Path.of(System.getProperty("user.dir"));
+    Path extractDir = projectRoot.resolve("extract");
+    Path extraFilesDir = projectRoot.resolve("extra_files");
+    Path outputDir = projectRoot.resolve("output");
+
+    // Nível de compressão do ZIP final
+    CompressionPreset compression =
+        CompressionPreset.valueOf(System.getProperty("pipeline.compression", "DEFAULT"));
+    boolean zipWhileWriting = Boolean.getBoolean("pipeline.zipWhileWriting");
+
+    CsvPipeline source;
+    if (Boolean.getBoolean("pipeline.streaming")) {
+      // Baixa e descompacta em fluxo direto para o processamento (-Dpipeline.keepArchives salva
+      // os ZIPs em compress/)
+      Path archiveDir =
+          Boolean.getBoolean("pipeline.keepArchives") ? projectRoot.resolve("compress") : null;
+      List<CsvSource> sources =
+          zipService.streamSources(archiveDir).stream()
+              .sorted(Comparator.comparing(CsvSource::name)) // mesma ordem do modo em disco
+              .toList();
+      source = CsvPipeline.fromSources(sources, ";");
+    } else {
+      zipService.downloadAndExtractArchives();
+      start = stageFinished("download", start);
+
+      // Lista arquivos extraídos
+      List<Path> extractedFiles;
+      try (Stream<Path> paths = Files.list(extractDir)) {
+        extractedFiles = paths.filter(Files::isRegularFile).sorted().toList();
+      }
+      source = new CsvPipeline(extractedFiles, ";");
     }
 
-    // Normaliza cada CSV extraído
-    for (Path file : extractedFiles) {
-      new CsvNormalizer(file, ";")
-          .normalizeHeaders() // padroniza nomes das colunas
-          .normalizeNumbers() // padroniza formatação numérica
-          .filterByColumnValue("DESCRICAO", "Despesas com Eventos/Sinistros") // filtra linhas
-          .removeBlankLines() // remove linhas vazias
-          .save(); // salva arquivo normalizado
+    // Define arquivo extra a ser mesclado, indexado em disco por registro e CNPJ (o índice é
+    // refeito quando o CSV muda)
+    Path extraFile = extraFilesDir.resolve("dados operadoras.csv");
+    Path extraIndex = projectRoot.resolve("cache").resolve("dados operadoras.idx");
+
+    try (RegistryIndex operators =
+        RegistryIndex.open(extraFile, ";", extraIndex, "REGISTRO_OPERADORA", "CNPJ")) {
+
+      // Normaliza, concatena, transforma e valida em um único fluxo, gravando só o CSV final
+      CsvPipeline pipeline =
+          source
+              .normalizeHeaders() // padroniza nomes das colunas
+              .normalizeNumbers() // padroniza formatação numérica
+              .filterByColumnValue("DESCRICAO", "Despesas com Eventos/Sinistros") // filtra linhas
+              .removeBlankLines() // remove linhas vazias
+              .snapshot(Path.of("transformed_files", "merged_dados.csv"))
+              .calculateNewColumn(
+                  "VL_SALDO_FINAL",
+                  "VL_SALDO_INICIAL",
+                  "VALOR_DESPESAS",
+                  MathOperation.SUBTRACT) // calcula saldo final
+              .addYearAndQuarterColumns("DATA") // adiciona colunas de ano e trimestre
+              .mergeByKey(operators, "REG_ANS", "REGISTRO_OPERADORA") // mescla dados das operadoras
+              .snapshot(Path.of("transformed_files", "dados.csv"))
+              .filterRowsByNumericValue(
+                  "VALOR_DESPESAS", 0, ComparisonOperators.LE) // remove despesas <= 0
+              .validateCnpj("CNPJ")
+              .validateRequiredField("RAZAO_SOCIAL")
+              .formatFields() // mesma formatação do saveFormatted
+              .extractColumns(
+                  List.of(
+                      "DATA",
+                      "CNPJ",
+                      "RAZAO_SOCIAL",
+                      "DESCRICAO",
+                      "TRIMESTRE",
+                      "ANO",
+                      "VL_SALDO_INICIAL",
+                      "VL_SALDO_FINAL",
+                      "VALOR_DESPESAS",
+                      "REG_ANS",
+                      "MODALIDADE",
+                      "UF",
+                      "CNPJ_VALIDO",
+                      "OBSERVACAO"));
+
+      // Normaliza os trimestres em paralelo (-Dpipeline.threads), usando até 1/4 do heap em espera
+      Runtime runtime = Runtime.getRuntime();
+      pipeline.concurrency(
+          Integer.getInteger("pipeline.threads", runtime.availableProcessors()),
+          runtime.maxMemory() / 4);
+
+      // Reaproveita os trimestres já processados; só os novos ou alterados passam pelo fluxo
+      // (-Dpipeline.checkpoints=false desativa)
+      if (Boolean.parseBoolean(System.getProperty("pipeline.checkpoints", "true"))) {
+        pipeline.checkpoints(projectRoot.resolve("checkpoints"));
+      }
+
+      // Grava também o resultado em formato colunar, lido pelo ColumnarReader sem reprocessar o CSV
+      // (-Dpipeline.columnar=false desativa)
+      if (Boolean.parseBoolean(System.getProperty("pipeline.columnar", "true"))) {
+        pipeline.columnar(
+            outputDir.resolve("consolidado_despesas.columnar"),
+            Map.ofEntries(
+                Map.entry("VL_SALDO_INICIAL", ColumnType.DOUBLE),
+                Map.entry("VL_SALDO_FINAL", ColumnType.DOUBLE),
+                Map.entry("VALOR_DESPESAS", ColumnType.DOUBLE),
+                Map.entry("ANO", ColumnType.INT),
+                Map.entry("TRIMESTRE", ColumnType.DICTIONARY),
+                Map.entry("MODALIDADE", ColumnType.DICTIONARY),
+                Map.entry("UF", ColumnType.DICTIONARY)));
+      }
+
+      // Ordena o CSV final por operadora, ano e trimestre, com runs no disco acima de 1/4 do heap
+      // (-Dpipeline.sort=false desativa)
+      if (Boolean.parseBoolean(System.getProperty("pipeline.sort", "true"))) {
+        pipeline.sortBy(
+            SortKey.number("REG_ANS"), SortKey.number("ANO"), SortKey.text("TRIMESTRE"));
+      }
+
+      // Arquivos intermediários só são gravados com -Dpipeline.debug=true
+      if (Boolean.getBoolean("pipeline.debug")) {
+        pipeline.debug(projectRoot);
+      }
+
+      // Com -Dpipeline.zipWhileWriting o ZIP é gerado junto com o CSV, sem reler o arquivo
+      if (zipWhileWriting) {
+        pipeline.zipWhileWriting(outputDir.resolve("consolidado_despesas.zip"), compression);
+      }
+
+      pipeline.save(outputDir.resolve("consolidado_despesas.csv"));
     }
-
-    // Lista arquivos normalizados
-    List<Path> normalizedFiles;
-    try (Stream<Path> paths = Files.list(normalizedDir)) {
-      normalizedFiles = paths.filter(Files::isRegularFile).toList();
+    start = stageFinished("processamento", start);
+
+    // Compacta o CSV final em paralelo (-Dpipeline.compression=FASTEST|DEFAULT|SMALLEST)
+    if (!zipWhileWriting) {
+      Helpers.zipFiles(
+          outputDir.resolve("consolidado_despesas.csv"),
+          compression,
+          Runtime.getRuntime().availableProcessors());
+      start = stageFinished("compactacao", start);
     }
 
-    // Concatena arquivos normalizados em um único CSV
-    Path mergedFile = Path.of("transformed_files/merged_dados.csv");
-    concatCsvFiles(normalizedFiles, ";").save(mergedFile);
-
-    // Define arquivo extra a ser mesclado
-    Path extraFile = extraFilesDir.resolve("dados operadoras.csv");
+    // Totais de despesas por operadora, UF, ano/trimestre e modalidade, calculados a partir do CSV
+    // final (-Dpipeline.aggregates=false desativa)
+    if (Boolean.parseBoolean(System.getProperty("pipeline.aggregates", "true"))) {
+      Path consolidated = outputDir.resolve("consolidado_despesas.csv");
+      Path byOperator = outputDir.resolve("despesas_por_operadora.csv");
+      aggregateExpenses(consolidated, byOperator, "REG_ANS", "RAZAO_SOCIAL", "UF");
+      aggregateExpenses(consolidated, outputDir.resolve("despesas_por_uf.csv"), "UF");
+      aggregateExpenses(
+          consolidated, outputDir.resolve("despesas_por_trimestre.csv"), "ANO", "TRIMESTRE");
+      aggregateExpenses(
+          consolidated, outputDir.resolve("despesas_por_modalidade.csv"), "MODALIDADE");
+
+      // Operadoras com mais despesas: 10 maiores no geral e 5 maiores por UF
+      new CsvTopN(byOperator, ";")
+          .orderBy("VALOR_DESPESAS_SUM", true)
+          .limit(10)
+          .save(outputDir.resolve("top_operadoras.csv"));
+      new CsvTopN(byOperator, ";")
+          .partitionBy("UF")
+          .orderBy("VALOR_DESPESAS_SUM", true)
+          .limit(5)
+          .save(outputDir.resolve("top_operadoras_por_uf.csv"));
+      stageFinished("agregacoes", start);
+    }
+  }
 
-    // Define arquivo de saída transformado
-    Path transformedOutput = Path.of("transformed_files/dados.csv");
+  // Informa a duração da etapa (lida pelo com.perf.loadtest.LoadTestDriver) e retorna o novo início
+  private static long stageFinished(String stage, long start) {
+    long now = System.nanoTime();
+    System.out.println("Etapa " + stage + " concluída em " + (now - start) / 1_000_000 + " ms");
+    return now;
+  }
 
-    // Aplica transformações finais no CSV
-    new CsvTransformer(mergedFile, ";")
-        .calculateNewColumn(
-            "VL_SALDO_FINAL",
-            "VL_SALDO_INICIAL",
+  // Agrega VALOR_DESPESAS do CSV pelas colunas informadas
+  private static void aggregateExpenses(Path source, Path target, String... groupColumns)
+      throws IOException {
+    new CsvAggregator(source, ";")
+        .groupBy(groupColumns)
+        .aggregate(
             "VALOR_DESPESAS",
-            MathOperation.SUBTRACT) // calcula saldo final
-        .addYearAndQuarterColumns("DATA") // adiciona colunas de ano e trimestre
-        .mergeByKey(extraFile, "REG_ANS", "REGISTRO_OPERADORA") // mescla informações adicionais
-        .save(transformedOutput);
-
-    // Valida e filtra CSV final
-    new CsvValidator(transformedDir.resolve("dados.csv"), ";")
-        .filterRowsByNumericValue(
-            "VALOR_DESPESAS", 0, ComparisonOperators.LE) // remove despesas <= 0
-        .validateCnpj("CNPJ")
-        .validateRequiredField("RAZAO_SOCIAL")
-        .saveFormatted("consolidado_despesas.csv"); // salva no diretório output
-
-    new CsvTransformer(outputDir.resolve("consolidado_despesas.csv"), ";")
-        .extractColumns(
-            List.of(
-                "DATA",
-                "CNPJ",
-                "RAZAO_SOCIAL",
-                "DESCRICAO",
-                "TRIMESTRE",
-                "ANO",
-                "VL_SALDO_INICIAL",
-                "VL_SALDO_FINAL",
-                "VALOR_DESPESAS",
-                "REG_ANS",
-                "MODALIDADE",
-                "UF",
-                "CNPJ_VALIDO",
-                "OBSERVACAO"))
-        .save(outputDir.resolve("consolidado_despesas.csv"));
-
-    // Compacta o CSV final
-    Helpers.zipFiles(outputDir.resolve("consolidado_despesas.csv"));
-
-    // Limpa diretórios temporários
-    Helpers.deleteDirectoryFromProjectRoot("normalized_files");
-    Helpers.deleteDirectoryFromProjectRoot("transformed_files");
+            AggregateFunction.SUM,
+            AggregateFunction.COUNT,
+            AggregateFunction.AVG,
+            AggregateFunction.MIN,
+            AggregateFunction.MAX,
+            AggregateFunction.STDDEV)
+        .save(target);
   }
 
-  // Constrói o serviço de download de ZIPs a partir da URL base
+  // Constrói o serviço de download de ZIPs a partir da URL base (-Dpipeline.baseUrl substitui o
+  // endereço da ANS, por exemplo pelo servidor local do teste de carga)
   private static ZipArchiveService buildZipArchiveService() throws IOException {
-    String baseUrl = "https://dadosabertos.ans.gov.br/FTP/PDA/demonstracoes_contabeis/";
+    String baseUrl =
+        System.getProperty(
+            "pipeline.baseUrl", "https://dadosabertos.ans.gov.br/FTP/PDA/demonstracoes_contabeis/");
 
     QuarterlyReportUrlScraper scraper = new QuarterlyReportUrlScraper();
     List<String> reports =
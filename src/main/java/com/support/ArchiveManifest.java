@@ -0,0 +1,108 @@
+package com.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Registro persistente dos ZIPs baixados: URL, ETag, Last-Modified, tamanho e SHA-256 de cada
+ * arquivo, além do hash da versão já extraída e dos arquivos gerados na extração. Permite baixar
+ * só o que mudou (requisições condicionais) e extrair de novo só quando o conteúdo mudou ou a
+ * extração foi apagada.
+ */
+final class ArchiveManifest {
+
+  private static final String ENTRY_SEPARATOR = "|";
+
+  private final Path file;
+  private final Properties props = new Properties();
+
+  private ArchiveManifest(Path file) {
+    this.file = file;
+  }
+
+  /** Carrega o registro; um arquivo ausente ou corrompido começa vazio */
+  static ArchiveManifest load(Path file) throws IOException {
+    ArchiveManifest manifest = new ArchiveManifest(file);
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        manifest.props.load(reader);
+      } catch (IllegalArgumentException e) {
+        manifest.props.clear(); // registro corrompido: tudo é baixado de novo
+      }
+    }
+    return manifest;
+  }
+
+  synchronized boolean contains(String archive) {
+    return props.containsKey(archive + ".sha256");
+  }
+
+  /** Versão registrada do arquivo, desde que a cópia local ainda tenha o tamanho registrado */
+  synchronized RangeDownloader.RemoteFile cached(String archive, Path localFile)
+      throws IOException {
+    String size = props.getProperty(archive + ".size");
+    if (size == null || !Files.exists(localFile)) return null;
+    if (!size.equals(String.valueOf(Files.size(localFile)))) return null;
+
+    return new RangeDownloader.RemoteFile(
+        Files.size(localFile),
+        props.getProperty(archive + ".etag"),
+        props.getProperty(archive + ".lastModified"));
+  }
+
+  /** Registra uma nova versão baixada */
+  synchronized void downloaded(
+      String archive, String url, RangeDownloader.RemoteFile remote, String sha256)
+      throws IOException {
+    props.setProperty(archive + ".url", url);
+    setOrRemove(archive + ".etag", remote.etag());
+    setOrRemove(archive + ".lastModified", remote.lastModified());
+    props.setProperty(archive + ".size", String.valueOf(remote.size()));
+    props.setProperty(archive + ".sha256", sha256);
+    save();
+  }
+
+  /** true se a versão atual já foi extraída e os arquivos extraídos ainda existem */
+  synchronized boolean isExtracted(String archive, Path extractDir) {
+    String sha256 = props.getProperty(archive + ".sha256");
+    if (sha256 == null || !sha256.equals(props.getProperty(archive + ".extractedSha256"))) {
+      return false;
+    }
+
+    String entries = props.getProperty(archive + ".entries", "");
+    return Arrays.stream(entries.split("\\" + ENTRY_SEPARATOR))
+        .filter(name -> !name.isEmpty())
+        .allMatch(name -> Files.exists(extractDir.resolve(name)));
+  }
+
+  /** Registra a extração da versão atual e os arquivos gerados (relativos ao diretório alvo) */
+  synchronized void extracted(String archive, List<String> entries) throws IOException {
+    props.setProperty(archive + ".extractedSha256", props.getProperty(archive + ".sha256", ""));
+    props.setProperty(archive + ".entries", String.join(ENTRY_SEPARATOR, entries));
+    save();
+  }
+
+  private void setOrRemove(String key, String value) {
+    if (value == null) {
+      props.remove(key);
+    } else {
+      props.setProperty(key, value);
+    }
+  }
+
+  /** Grava em um temporário e renomeia, para nunca deixar o registro pela metade */
+  private void save() throws IOException {
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+      props.store(writer, "Arquivos baixados e extraídos");
+    }
+    Helpers.moveAtomically(tempFile, file);
+  }
+}
@@ -0,0 +1,125 @@
+package com.support;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Partições do CsvPipeline guardadas entre execuções: o resultado final de cada arquivo de origem,
+ * em um arquivo cujo nome é o hash do conteúdo da origem junto com a configuração do fluxo. Uma
+ * origem ou configuração diferente gera outra chave, então uma partição existente nunca precisa ser
+ * invalidada.
+ *
+ * <p>Cada partição tem duas linhas de cabeçalho antes das linhas de dados: o header normalizado da
+ * própria origem e o header ao qual as etapas seguintes foram ligadas (o do primeiro arquivo da
+ * concatenação). Origens vazias geram uma partição vazia.
+ */
+final class CheckpointStore {
+
+  private static final String EXTENSION = ".csv";
+
+  private final Path dir;
+  private final String delimiter;
+  private final List<String> keys;
+
+  private CheckpointStore(Path dir, String delimiter, List<String> keys) {
+    this.dir = dir;
+    this.delimiter = delimiter;
+    this.keys = keys;
+  }
+
+  /**
+   * Calcula a chave de cada origem. Retorna null se alguma origem não informa o hash do conteúdo,
+   * caso em que o fluxo é executado sem checkpoints.
+   */
+  static CheckpointStore open(
+      Path dir, String delimiter, String configuration, List<CsvSource> sources)
+      throws IOException {
+    List<String> keys = new ArrayList<>(sources.size());
+    for (CsvSource source : sources) {
+      String contentHash = source.contentHash();
+      if (contentHash == null) return null;
+      keys.add(Helpers.sha256(configuration + "\n" + contentHash));
+    }
+
+    Files.createDirectories(dir);
+    return new CheckpointStore(dir, delimiter, keys);
+  }
+
+  boolean exists(int source) {
+    return Files.exists(file(source));
+  }
+
+  /** Header normalizado da origem; null se ela estava vazia */
+  String[] sourceHeader(int source) throws IOException {
+    return headerLine(source, 0);
+  }
+
+  /** Header ao qual as etapas seguintes foram ligadas; null se a origem estava vazia */
+  String[] boundHeader(int source) throws IOException {
+    return headerLine(source, 1);
+  }
+
+  /** Arquivo temporário onde a partição é gravada antes de commit() */
+  Path tempFile(int source) {
+    return dir.resolve(keys.get(source) + EXTENSION + ".tmp");
+  }
+
+  /** Publica a partição gravada no arquivo temporário */
+  void commit(int source) throws IOException {
+    Helpers.moveAtomically(tempFile(source), file(source));
+  }
+
+  /**
+   * Copia as linhas de dados da partição para o destino. Os headers são pulados pelo tokenizador,
+   * já que um campo de header entre aspas pode conter quebras de linha.
+   */
+  void appendRows(int source, Writer target) throws IOException {
+    try (CsvTokenizer rows = openRows(source)) {
+      rows.transferTo(target);
+    }
+  }
+
+  /** Tokenizador posicionado nas linhas de dados da partição (depois das duas linhas de header) */
+  CsvTokenizer openRows(int source) throws IOException {
+    CsvTokenizer tokenizer = CsvTokenizer.open(file(source), delimiter);
+    if (tokenizer.next()) tokenizer.next();
+    return tokenizer;
+  }
+
+  /** Apaga as partições que não pertencem às origens atuais */
+  void prune() throws IOException {
+    Set<String> current = new HashSet<>();
+    for (String key : keys) {
+      current.add(key + EXTENSION);
+    }
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+      for (Path file : files) {
+        if (!current.contains(file.getFileName().toString())) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private Path file(int source) {
+    return dir.resolve(keys.get(source) + EXTENSION);
+  }
+
+  /** Lê a linha de header com o mesmo tokenizador das linhas, respeitando campos entre aspas */
+  private String[] headerLine(int source, int index) throws IOException {
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file(source), delimiter)) {
+      for (int i = 0; i <= index; i++) {
+        if (!tokenizer.next()) return null;
+      }
+      return tokenizer.toArray();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.support;
+
+/**
+ * Validação de CNPJs pelos dígitos verificadores, sem alocação: os caracteres que não são dígitos
+ * (pontuação, aspas, espaços) são ignorados durante a leitura, no lugar do replaceAll().
+ *
+ * <p>Cada instância guarda um cache limitado de resultados: uma tabela de tamanho fixo indexada
+ * pelo hash do texto, em que uma entrada nova substitui a que ocupava a posição. Os mesmos poucos
+ * milhares de CNPJs de operadoras se repetem em todas as linhas de despesas, e na mescla com o
+ * cadastro a célula costuma ser a mesma instância de String, o que torna a comparação imediata. As
+ * entradas são imutáveis, então a tabela pode ser usada por várias threads sem sincronização.
+ */
+public final class CnpjValidator {
+
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+
+  private static final int LENGTH = 14;
+
+  // Pesos do 2º dígito verificador; o 1º usa os mesmos pesos a partir da segunda posição
+  private static final int[] WEIGHTS = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+
+  private final Verdict[] cache;
+  private final int mask;
+
+  /** cacheSize é arredondado para a próxima potência de dois */
+  public CnpjValidator(int cacheSize) {
+    if (cacheSize < 1) {
+      throw new IllegalArgumentException("Tamanho de cache inválido: " + cacheSize);
+    }
+    int capacity = Integer.highestOneBit(cacheSize * 2 - 1);
+    this.cache = new Verdict[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /** Resultado de isValid() para o texto, consultando o cache antes de calcular */
+  public boolean isValid(String cnpj) {
+    if (cnpj == null) return false;
+
+    int hash = cnpj.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    Verdict cached = cache[slot];
+    if (cached != null && (cached.cnpj() == cnpj || cached.cnpj().equals(cnpj))) {
+      return cached.valid();
+    }
+
+    boolean valid = checkDigits(cnpj);
+    cache[slot] = new Verdict(cnpj, valid);
+    return valid;
+  }
+
+  /**
+   * Confere os dígitos verificadores considerando só os dígitos do texto: exige 14 dígitos, não
+   * todos iguais, e os dois últimos iguais aos calculados.
+   */
+  static boolean checkDigits(CharSequence cnpj) {
+    if (cnpj == null) return false;
+
+    int digits = 0;
+    int sum13 = 0; // soma ponderada do 1º dígito verificador
+    int sum14 = 0; // soma ponderada do 2º dígito verificador
+    int first = -1;
+    boolean allEqual = true;
+    int dig13 = 0;
+    int dig14 = 0;
+
+    for (int i = 0; i < cnpj.length(); i++) {
+      char c = cnpj.charAt(i);
+      if (c < '0' || c > '9') continue;
+      if (digits == LENGTH) return false; // mais de 14 dígitos
+
+      int num = c - '0';
+      if (digits == 0) {
+        first = num;
+      } else if (num != first) {
+        allEqual = false;
+      }
+
+      if (digits < 12) sum13 += num * WEIGHTS[digits + 1];
+      if (digits < 13) sum14 += num * WEIGHTS[digits];
+      if (digits == 12) dig13 = num;
+      if (digits == 13) dig14 = num;
+      digits++;
+    }
+
+    if (digits != LENGTH || allEqual) return false;
+    return dig13 == checkDigit(sum13) && dig14 == checkDigit(sum14);
+  }
+
+  private static int checkDigit(int sum) {
+    int r = sum % 11;
+    return r < 2 ? 0 : 11 - r;
+  }
+
+  /** Resultado guardado no cache para um texto */
+  private record Verdict(String cnpj, boolean valid) {}
+}
@@ -0,0 +1,366 @@
+package com.support;
+
+import com.support.enums.ColumnType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura de arquivos gravados pelo ColumnarWriter. Só o rodapé é lido na abertura; cada leitura
+ * mapeia em memória os blocos selecionados e decodifica apenas as colunas pedidas, sem passar pelo
+ * texto do CSV. Com readRange(), os blocos cujo mínimo e máximo estão fora do intervalo nem são
+ * mapeados. Depois de aberto, o arquivo só é lido e pode ser consultado por várias threads.
+ */
+public final class ColumnarReader implements Closeable {
+
+  /** Valor das células INT vazias ou não inteiras */
+  public static final int NULL_INT = Integer.MIN_VALUE;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final String[] names;
+  private final ColumnType[] types;
+  private final Map<String, Integer> columnIndex = new HashMap<>();
+  private final long rowCount;
+  private final int[] groupRows;
+  private final long[][] offsets; // [bloco][coluna]
+  private final int[][] lengths;
+  private final int[][] nulls;
+  private final double[][] mins;
+  private final double[][] maxs;
+  private final String[][] dictionaries; // por coluna, null fora de DICTIONARY
+
+  private ColumnarReader(Path file, FileChannel channel) throws IOException {
+    this.file = file;
+    this.channel = channel;
+
+    long size = channel.size();
+    if (size < 2 * Integer.BYTES + ColumnarWriter.TRAILER_BYTES) throw invalid();
+    ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, 2 * Integer.BYTES);
+    if (start.getInt() != ColumnarWriter.MAGIC || start.getInt() != ColumnarWriter.VERSION) {
+      throw invalid();
+    }
+    long trailerStart = size - ColumnarWriter.TRAILER_BYTES;
+    ByteBuffer trailer =
+        channel.map(FileChannel.MapMode.READ_ONLY, trailerStart, ColumnarWriter.TRAILER_BYTES);
+    long footerOffset = trailer.getLong();
+    if (trailer.getInt() != ColumnarWriter.MAGIC
+        || footerOffset < 2 * Integer.BYTES
+        || footerOffset > trailerStart
+        || trailerStart - footerOffset > Integer.MAX_VALUE) {
+      throw invalid();
+    }
+
+    ByteBuffer footer =
+        channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, trailerStart - footerOffset);
+    int columnCount = footer.getInt();
+    names = new String[columnCount];
+    types = new ColumnType[columnCount];
+    for (int c = 0; c < columnCount; c++) {
+      names[c] = readString(footer);
+      types[c] = ColumnType.valueOf(readString(footer));
+      columnIndex.putIfAbsent(Helpers.columnName(names[c]), c);
+    }
+    footer.getInt(); // tamanho de bloco usado na gravação
+    rowCount = footer.getLong();
+
+    int groupCount = footer.getInt();
+    groupRows = new int[groupCount];
+    offsets = new long[groupCount][columnCount];
+    lengths = new int[groupCount][columnCount];
+    nulls = new int[groupCount][columnCount];
+    mins = new double[groupCount][columnCount];
+    maxs = new double[groupCount][columnCount];
+    for (int g = 0; g < groupCount; g++) {
+      groupRows[g] = footer.getInt();
+      for (int c = 0; c < columnCount; c++) {
+        offsets[g][c] = footer.getLong();
+        lengths[g][c] = footer.getInt();
+        nulls[g][c] = footer.getInt();
+        mins[g][c] = footer.getDouble();
+        maxs[g][c] = footer.getDouble();
+      }
+    }
+
+    dictionaries = new String[columnCount][];
+    for (int c = 0; c < columnCount; c++) {
+      if (types[c] != ColumnType.DICTIONARY) continue;
+      dictionaries[c] = new String[footer.getInt()];
+      for (int i = 0; i < dictionaries[c].length; i++) {
+        dictionaries[c][i] = readString(footer);
+      }
+    }
+  }
+
+  public static ColumnarReader open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new ColumnarReader(file, channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Nomes das colunas, na ordem do arquivo */
+  public List<String> columns() {
+    return List.of(names);
+  }
+
+  public ColumnType type(String column) {
+    return types[index(column)];
+  }
+
+  public long rowCount() {
+    return rowCount;
+  }
+
+  public int rowGroupCount() {
+    return groupRows.length;
+  }
+
+  public int rowGroupRows(int group) {
+    return groupRows[group];
+  }
+
+  /** Menor valor da coluna numérica no bloco (+infinito sem valores, NaN para texto) */
+  public double min(int group, String column) {
+    return mins[group][index(column)];
+  }
+
+  /** Maior valor da coluna numérica no bloco (-infinito sem valores, NaN para texto) */
+  public double max(int group, String column) {
+    return maxs[group][index(column)];
+  }
+
+  /** Lê as colunas informadas de todas as linhas */
+  public Columns read(String... columns) throws IOException {
+    return read(null, Double.NaN, Double.NaN, columns);
+  }
+
+  /**
+   * Lê as colunas informadas das linhas em que rangeColumn (DOUBLE ou INT) está entre min e max,
+   * inclusive. Os blocos cujas estatísticas não cruzam o intervalo são ignorados sem leitura.
+   */
+  public Columns readRange(String rangeColumn, double min, double max, String... columns)
+      throws IOException {
+    int range = index(rangeColumn);
+    if (types[range] != ColumnType.DOUBLE && types[range] != ColumnType.INT) {
+      throw new IllegalArgumentException("Coluna não numérica: " + rangeColumn);
+    }
+    return read(range, min, max, columns);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private Columns read(Integer range, double min, double max, String... columns)
+      throws IOException {
+    int[] selected = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      selected[i] = index(columns[i]);
+    }
+
+    // Blocos e linhas selecionados (linhas null = bloco inteiro)
+    int groupCount = groupRows.length;
+    ByteBuffer[] groups = new ByteBuffer[groupCount];
+    int[][] rows = new int[groupCount][];
+    long total = 0;
+    for (int g = 0; g < groupCount; g++) {
+      if (range != null && (maxs[g][range] < min || mins[g][range] > max)) continue;
+
+      groups[g] = mapGroup(g);
+      if (range != null
+          && (mins[g][range] < min || maxs[g][range] > max || nulls[g][range] > 0)) {
+        rows[g] = rowsInRange(groups[g], g, range, min, max);
+        total += rows[g].length;
+      } else {
+        total += groupRows[g];
+      }
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Linhas demais para carregar em memória: " + total);
+    }
+
+    Columns result = new Columns((int) total);
+    for (int column : selected) {
+      if (result.values.containsKey(Helpers.columnName(names[column]))) continue;
+      Object values = allocate(column, (int) total);
+      int position = 0;
+      for (int g = 0; g < groupCount; g++) {
+        if (groups[g] == null) continue;
+        position = decode(groups[g], g, column, rows[g], values, position);
+      }
+      result.values.put(Helpers.columnName(names[column]), values);
+    }
+    return result;
+  }
+
+  /** Região do arquivo com todas as colunas do bloco; só as páginas lidas são carregadas */
+  private ByteBuffer mapGroup(int group) throws IOException {
+    if (names.length == 0) return ByteBuffer.allocate(0);
+    long start = offsets[group][0];
+    int last = names.length - 1;
+    long end = offsets[group][last] + lengths[group][last];
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+  }
+
+  private ByteBuffer chunk(ByteBuffer group, int g, int column) {
+    int relative = (int) (offsets[g][column] - offsets[g][0]);
+    return group.slice(relative, lengths[g][column]);
+  }
+
+  private int[] rowsInRange(ByteBuffer group, int g, int column, double min, double max) {
+    ByteBuffer chunk = chunk(group, g, column);
+    int[] rows = new int[groupRows[g]];
+    int count = 0;
+    for (int i = 0; i < groupRows[g]; i++) {
+      double value;
+      if (types[column] == ColumnType.DOUBLE) {
+        value = chunk.getDouble(i * Double.BYTES);
+      } else {
+        int raw = chunk.getInt(i * Integer.BYTES);
+        value = raw == NULL_INT ? Double.NaN : raw;
+      }
+      if (value >= min && value <= max) rows[count++] = i;
+    }
+    return Arrays.copyOf(rows, count);
+  }
+
+  private Object allocate(int column, int size) {
+    return switch (types[column]) {
+      case DOUBLE -> new double[size];
+      case INT -> new int[size];
+      case DICTIONARY, STRING -> new String[size];
+    };
+  }
+
+  /** Decodifica a coluna do bloco (todas as linhas ou só rows) em values a partir de position */
+  private int decode(ByteBuffer group, int g, int column, int[] rows, Object values, int position) {
+    ByteBuffer chunk = chunk(group, g, column);
+    int count = groupRows[g];
+
+    switch (types[column]) {
+      case DOUBLE -> {
+        double[] target = (double[]) values;
+        if (rows == null) {
+          chunk.asDoubleBuffer().get(target, position, count);
+          return position + count;
+        }
+        for (int row : rows) {
+          target[position++] = chunk.getDouble(row * Double.BYTES);
+        }
+        return position;
+      }
+      case INT -> {
+        int[] target = (int[]) values;
+        if (rows == null) {
+          chunk.asIntBuffer().get(target, position, count);
+          return position + count;
+        }
+        for (int row : rows) {
+          target[position++] = chunk.getInt(row * Integer.BYTES);
+        }
+        return position;
+      }
+      case DICTIONARY -> {
+        String[] target = (String[]) values;
+        String[] dictionary = dictionaries[column];
+        int width = chunk.get(0);
+        for (int i = 0; i < (rows == null ? count : rows.length); i++) {
+          int at = 1 + (rows == null ? i : rows[i]) * width;
+          int code =
+              switch (width) {
+                case 1 -> chunk.get(at) & 0xFF;
+                case 2 -> chunk.getShort(at) & 0xFFFF;
+                default -> chunk.getInt(at);
+              };
+          target[position++] = dictionary[code];
+        }
+        return position;
+      }
+      default -> {
+        String[] target = (String[]) values;
+        int textStart = (count + 1) * Integer.BYTES;
+        byte[] text = new byte[chunk.capacity() - textStart];
+        chunk.get(textStart, text);
+        for (int i = 0; i < (rows == null ? count : rows.length); i++) {
+          int row = rows == null ? i : rows[i];
+          int from = chunk.getInt(row * Integer.BYTES);
+          int to = chunk.getInt((row + 1) * Integer.BYTES);
+          target[position++] = new String(text, from, to - from, StandardCharsets.UTF_8);
+        }
+        return position;
+      }
+    }
+  }
+
+  private int index(String column) {
+    Integer index = columnIndex.get(Helpers.columnName(column));
+    if (index == null) {
+      throw new IllegalArgumentException("Coluna não encontrada: " + column);
+    }
+    return index;
+  }
+
+  private IllegalArgumentException invalid() {
+    return new IllegalArgumentException("Arquivo colunar inválido: " + file);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Colunas carregadas por uma leitura, todas com as mesmas linhas na mesma ordem */
+  public static final class Columns {
+
+    private final int rowCount;
+    private final Map<String, Object> values = new HashMap<>();
+
+    private Columns(int rowCount) {
+      this.rowCount = rowCount;
+    }
+
+    public int rowCount() {
+      return rowCount;
+    }
+
+    /** Valores de uma coluna DOUBLE (NaN para vazios) */
+    public double[] doubles(String column) {
+      return (double[]) get(column, double[].class);
+    }
+
+    /** Valores de uma coluna INT (NULL_INT para vazios) */
+    public int[] ints(String column) {
+      return (int[]) get(column, int[].class);
+    }
+
+    /** Valores de uma coluna DICTIONARY ou STRING */
+    public String[] strings(String column) {
+      return (String[]) get(column, String[].class);
+    }
+
+    private Object get(String column, Class<?> type) {
+      Object result = values.get(Helpers.columnName(column));
+      if (result == null) {
+        throw new IllegalArgumentException("Coluna não carregada: " + column);
+      }
+      if (!type.isInstance(result)) {
+        throw new IllegalArgumentException("Tipo incompatível para a coluna: " + column);
+      }
+      return result;
+    }
+  }
+}
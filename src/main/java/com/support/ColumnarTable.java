@@ -0,0 +1,482 @@
+package com.support;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tabela em memória organizada por colunas. Colunas numéricas guardam os valores em arrays
+ * primitivos, colunas de texto repetitivo (descrições, UF, modalidade) usam dicionário e as demais
+ * guardam as Strings diretamente. O tipo de cada coluna é decidido durante a carga: toda coluna
+ * começa numérica e muda de representação no primeiro valor que não cabe nela. O texto original de
+ * cada célula é preservado exatamente, e adicionar uma coluna não copia as linhas.
+ */
+final class ColumnarTable {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private String[] header; // nomes das colunas (null nas colunas sem nome de linhas irregulares)
+  private Column[] columns;
+  private int rowCount;
+
+  ColumnarTable(String[] header) {
+    this.header = header.clone();
+    this.columns = new Column[header.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = Column.create(INITIAL_CAPACITY);
+    }
+  }
+
+  /** Carrega o CSV: o primeiro registro é o header. Arquivo vazio gera tabela sem colunas */
+  static ColumnarTable read(Path file, String delimiter) throws IOException {
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file, delimiter)) {
+      if (!tokenizer.next()) {
+        return new ColumnarTable(new String[0]);
+      }
+
+      ColumnarTable table = new ColumnarTable(tokenizer.toArray());
+      table.addRows(tokenizer);
+      return table;
+    }
+  }
+
+  /** Adiciona os registros restantes do tokenizador como linhas */
+  void addRows(CsvTokenizer tokenizer) throws IOException {
+    while (tokenizer.next()) {
+      addRow(tokenizer.toArray());
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = columns[i].trim();
+    }
+  }
+
+  /**
+   * Adiciona uma linha. Linhas curtas ficam com null nas colunas que faltam; linhas longas criam
+   * colunas sem nome, preenchidas com null nas linhas anteriores.
+   */
+  void addRow(String[] values) {
+    if (values.length > columns.length) {
+      int oldWidth = columns.length;
+      header = Arrays.copyOf(header, values.length);
+      columns = Arrays.copyOf(columns, values.length);
+      for (int i = oldWidth; i < values.length; i++) {
+        Column column = Column.create(Math.max(INITIAL_CAPACITY, rowCount));
+        for (int r = 0; r < rowCount; r++) {
+          column = column.add(null);
+        }
+        columns[i] = column;
+      }
+    }
+
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = columns[i].add(i < values.length ? values[i] : null);
+    }
+    rowCount++;
+  }
+
+  int rowCount() {
+    return rowCount;
+  }
+
+  int width() {
+    return columns.length;
+  }
+
+  String[] header() {
+    return header.clone();
+  }
+
+  /** Substitui os nomes das colunas */
+  void renameColumns(String[] names) {
+    if (names.length != columns.length) {
+      throw new IllegalArgumentException("Quantidade de nomes difere das colunas");
+    }
+    header = names.clone();
+  }
+
+  /** Texto original da célula (null em células ausentes de linhas curtas) */
+  String get(int row, int column) {
+    return columns[column].get(row);
+  }
+
+  /** Valor numérico da célula, aceitando vírgula decimal e aspas; fallback se não for número */
+  double number(int row, int column, double fallback) {
+    return columns[column].number(row, fallback);
+  }
+
+  /** Célula como chave inteira de junção (ver JoinIndex.parseKey()), sem montar o texto */
+  long integerKey(int row, int column) {
+    return columns[column].integerKey(row);
+  }
+
+  /** Adiciona uma coluna já preenchida; não copia as colunas existentes */
+  void addColumn(String name, Column column) {
+    if (column.size() != rowCount) {
+      throw new IllegalArgumentException("Coluna com quantidade de linhas diferente: " + name);
+    }
+    header = Arrays.copyOf(header, header.length + 1);
+    header[header.length - 1] = name;
+    columns = Arrays.copyOf(columns, columns.length + 1);
+    columns[columns.length - 1] = column.trim();
+  }
+
+  /** Mantém apenas as colunas informadas, na ordem informada */
+  void selectColumns(int[] indexes) {
+    String[] newHeader = new String[indexes.length];
+    Column[] selected = new Column[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      newHeader[i] = header[indexes[i]];
+      selected[i] = columns[indexes[i]];
+    }
+    header = newHeader;
+    columns = selected;
+  }
+
+  /** Reordena as linhas: a linha i passa a ser a linha order[i] anterior */
+  void reorderRows(int[] order) {
+    if (order.length != rowCount) {
+      throw new IllegalArgumentException("Quantidade de posições difere das linhas");
+    }
+    for (int i = 0; i < columns.length; i++) {
+      Column reordered = Column.create(Math.max(INITIAL_CAPACITY, rowCount));
+      for (int row : order) {
+        reordered = reordered.add(columns[i].get(row));
+      }
+      columns[i] = reordered.trim();
+    }
+  }
+
+  /** Monta a linha como array de Strings (usado apenas na gravação) */
+  String[] row(int row) {
+    String[] values = new String[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      values[i] = columns[i].get(row);
+    }
+    return values;
+  }
+
+  /**
+   * Coluna da tabela. As colunas crescem com add(), que retorna a própria coluna ou, quando o valor
+   * não cabe na representação atual, uma nova coluna com todos os valores anteriores.
+   */
+  abstract static class Column {
+
+    /** Coluna vazia; começa numérica e muda de representação conforme os valores */
+    static Column create(int capacity) {
+      return new NumericColumn(capacity);
+    }
+
+    /** Coluna vazia com dicionário, para valores sabidamente repetitivos */
+    static Column dictionary(int capacity) {
+      return new DictionaryColumn(capacity);
+    }
+
+    abstract int size();
+
+    abstract String get(int row);
+
+    abstract Column add(String value);
+
+    /** Reduz a capacidade reservada ao tamanho atual */
+    abstract Column trim();
+
+    /** Adiciona o número formatado como String.format(Locale.US, "%.2f", value) */
+    Column addTwoDecimals(double value) {
+      return add(String.format(Locale.US, "%.2f", value));
+    }
+
+    double number(int row, double fallback) {
+      return NumericText.parseDouble(get(row), true, fallback);
+    }
+
+    long integerKey(int row) {
+      return JoinIndex.parseKey(get(row));
+    }
+
+    /** Copia os valores desta coluna para outra representação */
+    Column copyTo(Column target) {
+      for (int r = 0; r < size(); r++) {
+        target = target.add(get(r));
+      }
+      return target;
+    }
+  }
+
+  /**
+   * Números decimais guardados como magnitude inteira (long) e formato (short): escala, zeros à
+   * esquerda extras, sinal e ausência de valor. Aceita apenas o texto -?\d+(\.\d+)? com até 18
+   * dígitos significativos, que pode ser reconstruído exatamente.
+   */
+  private static final class NumericColumn extends Column {
+
+    private static final int SCALE_MASK = 0x1F;
+    private static final int ZEROS_SHIFT = 5;
+    private static final int ZEROS_MASK = 0x1F;
+    private static final int NEGATIVE = 1 << 10;
+    private static final int NULL = 1 << 11;
+    private static final int MAX_DIGITS = 18;
+
+    private long[] magnitudes;
+    private short[] formats;
+    private int size;
+
+    NumericColumn(int capacity) {
+      magnitudes = new long[capacity];
+      formats = new short[capacity];
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    String get(int row) {
+      int format = formats[row];
+      if ((format & NULL) != 0) return null;
+
+      int scale = format & SCALE_MASK;
+      int zeros = (format >> ZEROS_SHIFT) & ZEROS_MASK;
+      String digits = Long.toString(magnitudes[row]);
+
+      // Garante ao menos um dígito na parte inteira
+      int missing = Math.max(scale + 1 - digits.length(), 0);
+      StringBuilder sb = new StringBuilder(digits.length() + zeros + missing + 2);
+      if ((format & NEGATIVE) != 0) sb.append('-');
+      for (int i = 0; i < zeros + missing; i++) sb.append('0');
+      sb.append(digits);
+      if (scale > 0) sb.insert(sb.length() - scale, '.');
+      return sb.toString();
+    }
+
+    @Override
+    double number(int row, double fallback) {
+      int format = formats[row];
+      if ((format & NULL) != 0) return fallback;
+
+      double value = NumericText.exactDecimal(magnitudes[row], format & SCALE_MASK);
+      if (Double.isNaN(value)) {
+        return super.number(row, fallback);
+      }
+      return (format & NEGATIVE) != 0 ? -value : value;
+    }
+
+    @Override
+    long integerKey(int row) {
+      int format = formats[row];
+      long magnitude = magnitudes[row];
+
+      // Apenas inteiros na forma canônica: sem escala, sem zeros à esquerda e sem "-0"
+      if ((format & (NULL | SCALE_MASK | (ZEROS_MASK << ZEROS_SHIFT))) != 0) {
+        return JoinIndex.NOT_INTEGER;
+      }
+      if ((format & NEGATIVE) != 0) {
+        return magnitude == 0 ? JoinIndex.NOT_INTEGER : -magnitude;
+      }
+      return magnitude;
+    }
+
+    @Override
+    Column add(String value) {
+      if (value == null) {
+        append(0, NULL);
+        return this;
+      }
+
+      int length = value.length();
+      int i = 0;
+      int format = 0;
+      if (length > 0 && value.charAt(0) == '-') {
+        format |= NEGATIVE;
+        i++;
+      }
+
+      long magnitude = 0;
+      int digits = 0; // dígitos significativos
+      int intDigits = 0;
+      int zeros = 0;
+      for (; i < length && isDigit(value.charAt(i)); i++, intDigits++) {
+        char c = value.charAt(i);
+        if (magnitude == 0 && c == '0') {
+          zeros++;
+          continue;
+        }
+        magnitude = magnitude * 10 + (c - '0');
+        digits++;
+      }
+      if (intDigits == 0) return demote(value);
+      // O último zero de uma parte inteira nula é o "0" obrigatório
+      if (zeros == intDigits) zeros--;
+
+      int scale = 0;
+      if (i < length && value.charAt(i) == '.') {
+        for (i++; i < length && isDigit(value.charAt(i)); i++, scale++) {
+          magnitude = magnitude * 10 + (value.charAt(i) - '0');
+          if (magnitude != 0) digits++;
+        }
+        if (scale == 0) return demote(value);
+      }
+
+      if (i != length || digits > MAX_DIGITS || scale > SCALE_MASK || zeros > ZEROS_MASK) {
+        return demote(value);
+      }
+
+      append(magnitude, format | scale | (zeros << ZEROS_SHIFT));
+      return this;
+    }
+
+    @Override
+    Column addTwoDecimals(double value) {
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        return super.addTwoDecimals(value);
+      }
+
+      // Arredondamento HALF_UP do Formatter; valores próximos ao meio caem no caminho exato
+      double abs = Math.abs(value);
+      double scaled = abs * 100;
+      double floor = Math.floor(scaled);
+      double fraction = scaled - floor;
+      if (abs >= 1e13 || Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+        return super.addTwoDecimals(value);
+      }
+
+      long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+      int format = 2 | (Double.compare(value, 0.0) < 0 ? NEGATIVE : 0);
+      append(cents, format);
+      return this;
+    }
+
+    @Override
+    Column trim() {
+      if (magnitudes.length > size) {
+        magnitudes = Arrays.copyOf(magnitudes, size);
+        formats = Arrays.copyOf(formats, size);
+      }
+      return this;
+    }
+
+    private void append(long magnitude, int format) {
+      if (size == magnitudes.length) {
+        int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+        magnitudes = Arrays.copyOf(magnitudes, capacity);
+        formats = Arrays.copyOf(formats, capacity);
+      }
+      magnitudes[size] = magnitude;
+      formats[size] = (short) format;
+      size++;
+    }
+
+    /** Converte para coluna de texto e adiciona o valor que não é numérico */
+    private Column demote(String value) {
+      Column column = copyTo(new DictionaryColumn(Math.max(INITIAL_CAPACITY, size + 1)));
+      return column.add(value);
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
+  }
+
+  /**
+   * Texto codificado por dicionário: cada linha guarda o código do valor. Quando os valores deixam
+   * de se repetir (mais distintos que metade das linhas), passa a guardar as Strings diretamente.
+   */
+  private static final class DictionaryColumn extends Column {
+
+    private static final int MIN_DICTIONARY = 1024;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int[] rows;
+    private int size;
+
+    DictionaryColumn(int capacity) {
+      rows = new int[capacity];
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    String get(int row) {
+      int code = rows[row];
+      return code < 0 ? null : values.get(code);
+    }
+
+    @Override
+    Column add(String value) {
+      int code = -1;
+      if (value != null) {
+        Integer existing = codes.get(value);
+        if (existing == null) {
+          if (values.size() >= Math.max(MIN_DICTIONARY, size / 2)) {
+            return copyTo(new PlainColumn(Math.max(INITIAL_CAPACITY, size + 1))).add(value);
+          }
+          existing = values.size();
+          codes.put(value, existing);
+          values.add(value);
+        }
+        code = existing;
+      }
+
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+      }
+      rows[size++] = code;
+      return this;
+    }
+
+    @Override
+    Column trim() {
+      if (rows.length > size) {
+        rows = Arrays.copyOf(rows, size);
+      }
+      return this;
+    }
+  }
+
+  /** Texto sem repetição suficiente para dicionário */
+  private static final class PlainColumn extends Column {
+
+    private String[] values;
+    private int size;
+
+    PlainColumn(int capacity) {
+      values = new String[capacity];
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    String get(int row) {
+      return values[row];
+    }
+
+    @Override
+    Column add(String value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+      }
+      values[size++] = value;
+      return this;
+    }
+
+    @Override
+    Column trim() {
+      if (values.length > size) {
+        values = Arrays.copyOf(values, size);
+      }
+      return this;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package com.support;
+
+import com.support.enums.ColumnType;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grava linhas de um CSV em formato colunar binário, lido pelo ColumnarReader. As linhas são
+ * agrupadas em blocos (row groups) e, dentro de cada bloco, cada coluna é gravada de forma contígua
+ * conforme seu tipo: DOUBLE e INT como valores binários, DICTIONARY como códigos de 1, 2 ou 4 bytes
+ * de um dicionário da coluna e STRING como offsets seguidos do texto em UTF-8. O rodapé guarda, por
+ * bloco e coluna, a posição dos dados, a quantidade de nulos e o mínimo e o máximo das colunas
+ * numéricas, o que permite ler só as colunas pedidas e pular blocos fora de um intervalo.
+ *
+ * <p>Os campos são recebidos como no CSV: aspas externas são removidas e aspas duplicadas voltam a
+ * ser simples. O arquivo é gravado em um temporário e publicado com uma troca atômica no close().
+ *
+ * <p>Layout do arquivo: MAGIC, VERSION, os blocos de dados e o rodapé (colunas com nome e tipo,
+ * blocos com quantidade de linhas e, por coluna, offset, tamanho, nulos, mínimo e máximo, e os
+ * dicionários), seguido da posição do rodapé e de MAGIC.
+ */
+public final class ColumnarWriter implements Closeable {
+
+  static final int MAGIC = 0x434C4D4E; // "CLMN"
+  static final int VERSION = 1;
+  static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+  public static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+
+  private final Path file;
+  private final Path tempFile;
+  private final OutputStream out;
+  private final int rowGroupSize;
+  private final Column[] columns;
+  private final ByteArrayOutputStream groupIndex = new ByteArrayOutputStream();
+  private final DataOutputStream groupIndexOut = new DataOutputStream(groupIndex);
+  private long position;
+  private long rowCount;
+  private int groupCount;
+  private int groupRows;
+  private boolean closed;
+
+  /**
+   * Cria o arquivo com as colunas do header. Colunas ausentes de types são gravadas como STRING;
+   * os nomes são comparados sem aspas, espaços e diferença de maiúsculas.
+   */
+  public ColumnarWriter(Path file, String[] header, Map<String, ColumnType> types, int rowGroupSize)
+      throws IOException {
+    if (rowGroupSize < 1) {
+      throw new IllegalArgumentException("Tamanho de bloco inválido: " + rowGroupSize);
+    }
+
+    Map<String, ColumnType> typesByName = new HashMap<>();
+    types.forEach((column, type) -> typesByName.put(Helpers.columnName(column), type));
+
+    columns = new Column[header.length];
+    for (int i = 0; i < header.length; i++) {
+      String name = Helpers.clean(header[i]);
+      ColumnType type = typesByName.remove(Helpers.columnName(name));
+      columns[i] = new Column(name, type == null ? ColumnType.STRING : type, rowGroupSize);
+    }
+    if (!typesByName.isEmpty()) {
+      throw new IllegalArgumentException("Coluna não encontrada: " + typesByName.keySet());
+    }
+
+    this.file = file;
+    this.rowGroupSize = rowGroupSize;
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    this.out = new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024);
+
+    ByteBuffer start = ByteBuffer.allocate(2 * Integer.BYTES);
+    start.putInt(MAGIC).putInt(VERSION);
+    write(start.array());
+  }
+
+  /** Adiciona uma linha; posições além do header são ignoradas e as ausentes valem como vazias */
+  public void writeRow(String[] row) throws IOException {
+    if (closed) throw new IOException("Arquivo colunar já fechado: " + file);
+
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].add(groupRows, i < row.length ? row[i] : null);
+    }
+    groupRows++;
+    rowCount++;
+
+    if (groupRows == rowGroupSize) {
+      writeGroup();
+    }
+  }
+
+  /** Grava o último bloco e o rodapé e publica o arquivo */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+
+    try (out) {
+      if (groupRows > 0) writeGroup();
+      writeFooter();
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+    Helpers.moveAtomically(tempFile, file);
+  }
+
+  /** Descarta o arquivo em construção, mantendo o anterior (se houver) */
+  public void abort() throws IOException {
+    if (closed) return;
+    closed = true;
+
+    try (out) {
+      // só fecha o temporário
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private void writeGroup() throws IOException {
+    groupIndexOut.writeInt(groupRows);
+    for (Column column : columns) {
+      byte[] chunk = column.encode(groupRows);
+      groupIndexOut.writeLong(position);
+      groupIndexOut.writeInt(chunk.length);
+      groupIndexOut.writeInt(column.nulls);
+      groupIndexOut.writeDouble(column.min);
+      groupIndexOut.writeDouble(column.max);
+      write(chunk);
+    }
+    groupCount++;
+    groupRows = 0;
+  }
+
+  private void writeFooter() throws IOException {
+    ByteArrayOutputStream footer = new ByteArrayOutputStream();
+    DataOutputStream footerOut = new DataOutputStream(footer);
+
+    footerOut.writeInt(columns.length);
+    for (Column column : columns) {
+      writeString(footerOut, column.name);
+      writeString(footerOut, column.type.name());
+    }
+    footerOut.writeInt(rowGroupSize);
+    footerOut.writeLong(rowCount);
+    footerOut.writeInt(groupCount);
+    groupIndex.writeTo(footerOut);
+
+    for (Column column : columns) {
+      if (column.type != ColumnType.DICTIONARY) continue;
+      footerOut.writeInt(column.dictionary.size());
+      for (String value : column.dictionary) {
+        writeString(footerOut, value);
+      }
+    }
+
+    long footerOffset = position;
+    write(footer.toByteArray());
+
+    ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+    trailer.putLong(footerOffset).putInt(MAGIC);
+    write(trailer.array());
+  }
+
+  private void write(byte[] bytes) throws IOException {
+    out.write(bytes);
+    position += bytes.length;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Texto do campo como no CSV: sem as aspas externas e com as aspas duplicadas desfeitas */
+  static String unquote(String value) {
+    if (value == null) return "";
+    if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+      return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+    }
+    return value;
+  }
+
+  /** Valores de uma coluna no bloco atual e estatísticas do último bloco codificado */
+  private static final class Column {
+
+    private final String name;
+    private final ColumnType type;
+    private double[] doubles;
+    private int[] ints; // valores INT ou códigos DICTIONARY
+    private String[] strings;
+    private Map<String, Integer> codes;
+    private List<String> dictionary;
+    private int nulls; // NaN ou NULL_INT no último bloco codificado
+    private double min;
+    private double max;
+
+    Column(String name, ColumnType type, int rowGroupSize) {
+      this.name = name;
+      this.type = type;
+      switch (type) {
+        case DOUBLE -> doubles = new double[rowGroupSize];
+        case INT -> ints = new int[rowGroupSize];
+        case DICTIONARY -> {
+          ints = new int[rowGroupSize];
+          codes = new HashMap<>();
+          dictionary = new ArrayList<>();
+        }
+        case STRING -> strings = new String[rowGroupSize];
+      }
+    }
+
+    void add(int row, String cell) {
+      switch (type) {
+        case DOUBLE -> doubles[row] = NumericText.parseDouble(cell, false, Double.NaN);
+        case INT -> ints[row] = parseInt(cell);
+        case DICTIONARY -> {
+          String value = unquote(cell);
+          Integer code = codes.get(value);
+          if (code == null) {
+            code = dictionary.size();
+            codes.put(value, code);
+            dictionary.add(value);
+          }
+          ints[row] = code;
+        }
+        case STRING -> strings[row] = unquote(cell);
+      }
+    }
+
+    /** Codifica as primeiras rows posições e calcula as estatísticas (NaN para texto) */
+    byte[] encode(int rows) {
+      nulls = 0;
+      min = Double.POSITIVE_INFINITY; // sem valores: o bloco nunca atende a um intervalo
+      max = Double.NEGATIVE_INFINITY;
+
+      switch (type) {
+        case DOUBLE -> {
+          for (int i = 0; i < rows; i++) {
+            double value = doubles[i];
+            if (Double.isNaN(value)) {
+              nulls++;
+              continue;
+            }
+            if (value < min) min = value;
+            if (value > max) max = value;
+          }
+          ByteBuffer chunk = ByteBuffer.allocate(rows * Double.BYTES);
+          chunk.asDoubleBuffer().put(doubles, 0, rows);
+          return chunk.array();
+        }
+        case INT -> {
+          for (int i = 0; i < rows; i++) {
+            int value = ints[i];
+            if (value == ColumnarReader.NULL_INT) {
+              nulls++;
+              continue;
+            }
+            if (value < min) min = value;
+            if (value > max) max = value;
+          }
+          ByteBuffer chunk = ByteBuffer.allocate(rows * Integer.BYTES);
+          chunk.asIntBuffer().put(ints, 0, rows);
+          return chunk.array();
+        }
+        case DICTIONARY -> {
+          min = Double.NaN;
+          max = Double.NaN;
+          return encodeCodes(rows);
+        }
+        default -> {
+          min = Double.NaN;
+          max = Double.NaN;
+          return encodeStrings(rows);
+        }
+      }
+    }
+
+    /** Largura de código (1, 2 ou 4 bytes) seguida dos códigos das linhas */
+    private byte[] encodeCodes(int rows) {
+      int maxCode = 0;
+      for (int i = 0; i < rows; i++) {
+        maxCode = Math.max(maxCode, ints[i]);
+      }
+      int width = maxCode <= 0xFF ? 1 : maxCode <= 0xFFFF ? 2 : 4;
+
+      ByteBuffer chunk = ByteBuffer.allocate(1 + rows * width);
+      chunk.put((byte) width);
+      for (int i = 0; i < rows; i++) {
+        switch (width) {
+          case 1 -> chunk.put((byte) ints[i]);
+          case 2 -> chunk.putShort((short) ints[i]);
+          default -> chunk.putInt(ints[i]);
+        }
+      }
+      return chunk.array();
+    }
+
+    /** rows + 1 offsets (relativos ao início do texto) seguidos do texto em UTF-8 */
+    private byte[] encodeStrings(int rows) {
+      byte[][] encoded = new byte[rows][];
+      int textLength = 0;
+      for (int i = 0; i < rows; i++) {
+        encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+        textLength += encoded[i].length;
+      }
+
+      ByteBuffer chunk = ByteBuffer.allocate((rows + 1) * Integer.BYTES + textLength);
+      int offset = 0;
+      chunk.putInt(offset);
+      for (byte[] value : encoded) {
+        offset += value.length;
+        chunk.putInt(offset);
+      }
+      for (byte[] value : encoded) {
+        chunk.put(value);
+      }
+      Arrays.fill(strings, 0, rows, null);
+      return chunk.array();
+    }
+
+    private static int parseInt(String cell) {
+      double value = NumericText.parseDouble(cell, false, Double.NaN);
+      int result = (int) value;
+      return result == value && result != ColumnarReader.NULL_INT
+          ? result
+          : ColumnarReader.NULL_INT;
+    }
+  }
+}
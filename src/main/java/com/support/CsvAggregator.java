@@ -0,0 +1,350 @@
+package com.support;
+
+import com.support.enums.AggregateFunction;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Agregações agrupadas sobre um CSV, como os totais de despesas por operadora, UF, trimestre ou
+ * modalidade do consolidado: group-by em uma ou mais colunas com SUM, COUNT, MIN, MAX, AVG e STDDEV
+ * sobre colunas numéricas, em uma única leitura do arquivo.
+ *
+ * <p>O arquivo é lido em blocos paralelos pelo MappedCsvReader. Cada bloco agrega em acumuladores
+ * primitivos próprios, indexados por uma chave compacta (os códigos dos valores de agrupamento nos
+ * dicionários do bloco), e os parciais são mesclados na ordem do arquivo; os grupos saem na ordem
+ * da primeira ocorrência, como em uma leitura sequencial. Valores vazios ou não numéricos não
+ * entram nas agregações e linhas vazias são ignoradas.
+ */
+public class CsvAggregator {
+
+  private final Path file;
+  private final String delimiter;
+  private final List<String> groupColumns = new ArrayList<>();
+  private final List<String> valueColumns = new ArrayList<>(); // colunas agregadas, sem repetição
+  private final List<Output> outputs = new ArrayList<>(); // colunas do resultado após os grupos
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  public CsvAggregator(Path file, String delimiter) {
+    this.file = file;
+    this.delimiter = delimiter;
+  }
+
+  /** Agrupa pelas colunas informadas (sem agrupamento, o arquivo inteiro forma um grupo) */
+  public CsvAggregator groupBy(String... columns) {
+    for (String column : columns) {
+      groupColumns.add(Helpers.columnName(column));
+    }
+    return this;
+  }
+
+  /** Adiciona as funções sobre a coluna numérica; cada uma gera a coluna <COLUNA>_<FUNÇÃO> */
+  public CsvAggregator aggregate(String column, AggregateFunction... functions) {
+    if (functions.length == 0) {
+      throw new IllegalArgumentException("Informe ao menos uma função para a coluna: " + column);
+    }
+    String name = Helpers.columnName(column);
+    int value = valueColumns.indexOf(name);
+    if (value < 0) {
+      value = valueColumns.size();
+      valueColumns.add(name);
+    }
+    for (AggregateFunction function : functions) {
+      outputs.add(new Output(value, function));
+    }
+    return this;
+  }
+
+  /** Define quantas threads agregam os blocos (padrão: processadores disponíveis) */
+  public CsvAggregator parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Executa a agregação e retorna o header seguido de uma linha por grupo. Os valores dos grupos
+   * saem sem aspas e os resultados formatados com duas casas decimais (COUNT como inteiro); funções
+   * sem valores no grupo ficam vazias.
+   */
+  public List<String[]> aggregate() throws IOException {
+    if (outputs.isEmpty()) {
+      throw new IllegalArgumentException("Nenhuma agregação definida");
+    }
+
+    Partial total = new Partial(groupColumns.size(), valueColumns.size());
+    new MappedCsvReader(file, delimiter, parallelism)
+        .read(
+            header -> {
+              int[] groupIndexes = Helpers.columnIndexes(header, groupColumns);
+              int[] valueIndexes = Helpers.columnIndexes(header, valueColumns);
+              return records -> aggregateChunk(records, groupIndexes, valueIndexes);
+            },
+            total::merge);
+
+    List<String[]> result = new ArrayList<>(total.groupCount + 1);
+    result.add(header());
+    for (int g = 0; g < total.groupCount; g++) {
+      result.add(total.row(g, outputs));
+    }
+    return result;
+  }
+
+  /** Grava o resultado com as mesmas regras de aspas do saveFormatted() do CsvTransformer */
+  public void save(Path output) throws IOException {
+    List<String[]> rows = aggregate();
+    try (CsvWriter writer = CsvWriter.toFile(output, delimiter)) {
+      for (String[] row : rows) {
+        writer.writeRow(row, row.length, CsvWriter.Quoting.NON_NUMERIC_OR_SPECIAL);
+      }
+    }
+
+    System.out.println("CSV salvo em: " + output.toAbsolutePath());
+  }
+
+  private String[] header() {
+    String[] header = new String[groupColumns.size() + outputs.size()];
+    for (int i = 0; i < groupColumns.size(); i++) {
+      header[i] = groupColumns.get(i);
+    }
+    for (int i = 0; i < outputs.size(); i++) {
+      Output output = outputs.get(i);
+      header[groupColumns.size() + i] =
+          valueColumns.get(output.value()) + "_" + output.function().name();
+    }
+    return header;
+  }
+
+  /** Agrega um bloco de registros em um parcial próprio */
+  private Partial aggregateChunk(CsvTokenizer records, int[] groupIndexes, int[] valueIndexes)
+      throws IOException {
+    Partial partial = new Partial(groupIndexes.length, valueIndexes.length);
+    int[] ids = new int[groupIndexes.length];
+    String[] lastRaw = new String[groupIndexes.length]; // linhas seguidas costumam repetir o grupo
+    int[] lastIds = new int[groupIndexes.length];
+
+    while (records.next()) {
+      int size = records.size();
+      if (size == 1 && records.field(0).length() == 0) continue; // linha vazia
+
+      for (int c = 0; c < groupIndexes.length; c++) {
+        CharSequence cell = groupIndexes[c] < size ? records.field(groupIndexes[c]) : "";
+        if (lastRaw[c] == null || !lastRaw[c].contentEquals(cell)) {
+          lastRaw[c] = cell.toString();
+          lastIds[c] = partial.code(c, Helpers.clean(lastRaw[c]));
+        }
+        ids[c] = lastIds[c];
+      }
+      int group = partial.group(ids);
+
+      for (int v = 0; v < valueIndexes.length; v++) {
+        if (valueIndexes[v] >= size) continue;
+        double value = NumericText.parseDouble(records.field(valueIndexes[v]), false, Double.NaN);
+        if (!Double.isNaN(value)) partial.add(group, v, value);
+      }
+    }
+    return partial;
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.US, "%.2f", value);
+  }
+
+  /** Coluna do resultado: função aplicada a uma das colunas agregadas */
+  private record Output(int value, AggregateFunction function) {}
+
+  /**
+   * Acumuladores de um conjunto de grupos. Cada grupo é identificado pelos códigos dos seus valores
+   * nos dicionários das colunas de agrupamento, guardados lado a lado em keys e localizados por uma
+   * tabela de endereçamento aberto; os acumuladores ficam em arrays indexados por grupo e coluna.
+   * Média e desvio usam a atualização de Welford, que permite mesclar parciais sem perder precisão.
+   */
+  private static final class Partial {
+
+    private final int keyWidth;
+    private final int values;
+    private final List<List<String>> dictionaries = new ArrayList<>();
+    private final List<Map<String, Integer>> codes = new ArrayList<>();
+    private int[] keys;
+    private int[] table = new int[64]; // grupo + 1 por posição, 0 = livre
+    private int groupCount;
+    private int capacity = 16; // grupos que cabem nos arrays
+    private long[] count;
+    private double[] sum;
+    private double[] min;
+    private double[] max;
+    private double[] mean;
+    private double[] m2; // soma dos quadrados das diferenças para a média
+
+    Partial(int keyWidth, int values) {
+      this.keyWidth = keyWidth;
+      this.values = values;
+      for (int c = 0; c < keyWidth; c++) {
+        dictionaries.add(new ArrayList<>());
+        codes.add(new HashMap<>());
+      }
+      keys = new int[capacity * keyWidth];
+      count = new long[capacity * values];
+      sum = new double[capacity * values];
+      min = new double[capacity * values];
+      max = new double[capacity * values];
+      mean = new double[capacity * values];
+      m2 = new double[capacity * values];
+    }
+
+    /** Código do valor no dicionário da coluna de agrupamento */
+    int code(int column, String value) {
+      Integer code = codes.get(column).get(value);
+      if (code == null) {
+        code = dictionaries.get(column).size();
+        codes.get(column).put(value, code);
+        dictionaries.get(column).add(value);
+      }
+      return code;
+    }
+
+    /** Grupo com os códigos informados, criado na primeira ocorrência */
+    int group(int[] ids) {
+      int mask = table.length - 1;
+      for (int slot = hash(ids) & mask; ; slot = (slot + 1) & mask) {
+        int entry = table[slot];
+        if (entry == 0) return insert(slot, ids);
+        if (keyEquals(entry - 1, ids)) return entry - 1;
+      }
+    }
+
+    void add(int group, int value, double x) {
+      int i = group * values + value;
+      long n = ++count[i];
+      sum[i] += x;
+      if (n == 1) {
+        min[i] = x;
+        max[i] = x;
+      } else {
+        if (x < min[i]) min[i] = x;
+        if (x > max[i]) max[i] = x;
+      }
+      double delta = x - mean[i];
+      mean[i] += delta / n;
+      m2[i] += delta * (x - mean[i]);
+    }
+
+    /** Mescla outro parcial, traduzindo seus códigos para os dicionários deste */
+    void merge(Partial other) {
+      int[][] translation = new int[keyWidth][];
+      for (int c = 0; c < keyWidth; c++) {
+        List<String> otherValues = other.dictionaries.get(c);
+        translation[c] = new int[otherValues.size()];
+        for (int code = 0; code < translation[c].length; code++) {
+          translation[c][code] = code(c, otherValues.get(code));
+        }
+      }
+
+      int[] ids = new int[keyWidth];
+      for (int g = 0; g < other.groupCount; g++) {
+        for (int c = 0; c < keyWidth; c++) {
+          ids[c] = translation[c][other.keys[g * keyWidth + c]];
+        }
+        int group = group(ids);
+
+        for (int v = 0; v < values; v++) {
+          int from = g * other.values + v;
+          long n2 = other.count[from];
+          if (n2 == 0) continue;
+
+          int to = group * values + v;
+          long n1 = count[to];
+          long n = n1 + n2;
+          sum[to] += other.sum[from];
+          min[to] = n1 == 0 ? other.min[from] : Math.min(min[to], other.min[from]);
+          max[to] = n1 == 0 ? other.max[from] : Math.max(max[to], other.max[from]);
+          double delta = other.mean[from] - mean[to];
+          mean[to] += delta * n2 / n;
+          m2[to] += other.m2[from] + delta * delta * ((double) n1 * n2 / n);
+          count[to] = n;
+        }
+      }
+    }
+
+    /** Linha do resultado do grupo: valores de agrupamento seguidos das funções */
+    String[] row(int group, List<Output> outputs) {
+      String[] row = new String[keyWidth + outputs.size()];
+      for (int c = 0; c < keyWidth; c++) {
+        row[c] = dictionaries.get(c).get(keys[group * keyWidth + c]);
+      }
+
+      for (int o = 0; o < outputs.size(); o++) {
+        Output output = outputs.get(o);
+        int i = group * values + output.value();
+        long n = count[i];
+        row[keyWidth + o] =
+            switch (output.function()) {
+              case COUNT -> Long.toString(n);
+              case SUM -> n == 0 ? "" : format(sum[i]);
+              case MIN -> n == 0 ? "" : format(min[i]);
+              case MAX -> n == 0 ? "" : format(max[i]);
+              case AVG -> n == 0 ? "" : format(sum[i] / n);
+              case STDDEV -> n < 2 ? "" : format(Math.sqrt(m2[i] / (n - 1)));
+            };
+      }
+      return row;
+    }
+
+    private int insert(int slot, int[] ids) {
+      int group = groupCount++;
+      if (group == capacity) grow();
+      System.arraycopy(ids, 0, keys, group * keyWidth, keyWidth);
+      table[slot] = group + 1;
+
+      if (groupCount * 2 > table.length) rehash();
+      return group;
+    }
+
+    private void grow() {
+      capacity *= 2;
+      keys = Arrays.copyOf(keys, capacity * keyWidth);
+      count = Arrays.copyOf(count, capacity * values);
+      sum = Arrays.copyOf(sum, capacity * values);
+      min = Arrays.copyOf(min, capacity * values);
+      max = Arrays.copyOf(max, capacity * values);
+      mean = Arrays.copyOf(mean, capacity * values);
+      m2 = Arrays.copyOf(m2, capacity * values);
+    }
+
+    private void rehash() {
+      table = new int[table.length * 2];
+      int mask = table.length - 1;
+      int[] ids = new int[keyWidth];
+      for (int g = 0; g < groupCount; g++) {
+        System.arraycopy(keys, g * keyWidth, ids, 0, keyWidth);
+        int slot = hash(ids) & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = g + 1;
+      }
+    }
+
+    private boolean keyEquals(int group, int[] ids) {
+      int offset = group * keyWidth;
+      for (int c = 0; c < keyWidth; c++) {
+        if (keys[offset + c] != ids[c]) return false;
+      }
+      return true;
+    }
+
+    private static int hash(int[] ids) {
+      int h = 1;
+      for (int id : ids) {
+        h = 31 * h + id;
+      }
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -1,117 +1,113 @@
 package com.support;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CsvNormalizer {
 
   private Path file; // arquivo CSV original ou atualizado
   private final String delimiter; // delimitador do CSV
   private final Path normalizedOutputDir; // pasta onde arquivos normalizados serão salvos
+  private final Mode mode; // em memória, streaming ou paralelo
+  private final int parallelism; // threads usadas no modo paralelo
+  private final List<RowStep> plan = new ArrayList<>(); // operações pendentes (streaming/paralelo)
   private List<String[]> rows = new ArrayList<>(); // linhas do CSV
 
+  /** Modos de execução das operações encadeadas */
+  private enum Mode {
+    IN_MEMORY, // executa cada operação na hora sobre as linhas carregadas
+    STREAMING, // registra o plano e executa em uma passada sequencial no save()
+    PARALLEL // registra o plano e executa em blocos paralelos mapeados em memória no save()
+  }
+
   public CsvNormalizer(Path file, String delimiter) throws IOException {
+    this(file, delimiter, Mode.IN_MEMORY, 1);
+  }
+
+  private CsvNormalizer(Path file, String delimiter, Mode mode, int parallelism)
+      throws IOException {
     this.file = file;
     this.delimiter = delimiter;
+    this.mode = mode;
+    this.parallelism = parallelism;
 
     // Cria diretório normalized_files/ se não existir
     this.normalizedOutputDir = Paths.get(System.getProperty("user.dir"), "normalized_files");
     Files.createDirectories(this.normalizedOutputDir);
 
-    load(); // carrega CSV na memória
+    if (mode == Mode.IN_MEMORY) {
+      load(); // carrega CSV na memória
+    }
+  }
+
+  /**
+   * Cria um normalizador em modo streaming: as operações encadeadas são apenas registradas e o
+   * save() executa todas em uma única passada de leitura, transformação e escrita, sem carregar o
+   * arquivo na memória. Erros de coluna inexistente surgem no save().
+   */
+  public static CsvNormalizer streaming(Path file, String delimiter) throws IOException {
+    return new CsvNormalizer(file, delimiter, Mode.STREAMING, 1);
+  }
+
+  /**
+   * Cria um normalizador em modo paralelo: como no streaming, as operações são registradas, mas o
+   * save() mapeia o arquivo em memória e processa blocos de linhas em paralelo com o
+   * MappedCsvReader. A ordem das linhas no arquivo salvo é a mesma de uma execução sequencial.
+   */
+  public static CsvNormalizer parallel(Path file, String delimiter, int parallelism)
+      throws IOException {
+    return new CsvNormalizer(file, delimiter, Mode.PARALLEL, parallelism);
+  }
+
+  /** Modo paralelo usando todos os processadores disponíveis */
+  public static CsvNormalizer parallel(Path file, String delimiter) throws IOException {
+    return parallel(file, delimiter, Runtime.getRuntime().availableProcessors());
   }
 
   /** Normaliza o header: remove aspas, trim e converte para uppercase */
   public CsvNormalizer normalizeHeaders() {
-    String[] header = rows.get(0);
-
-    for (int i = 0; i < header.length; i++) {
-      header[i] = clean(header[i]).toUpperCase();
-    }
-    return this;
+    return apply(normalizeHeadersStep());
   }
 
   /** Normaliza números: substitui "," por ".", remove aspas */
   public CsvNormalizer normalizeNumbers() {
-    for (int i = 1; i < rows.size(); i++) {
-      String[] row = rows.get(i);
-
-      for (int j = 0; j < row.length; j++) {
-        String raw = clean(row[j]);
-        if (raw.matches("-?\\d+[.,]?\\d*")) {
-          row[j] = raw.replace(",", ".");
-        }
-      }
-    }
-    return this;
+    return apply(normalizeNumbersStep());
   }
 
   /** Normaliza colunas textuais específicas: remove espaços e converte para lowercase */
   public CsvNormalizer normalizeTextColumns(List<String> columns) {
-    Map<String, Integer> index = headerIndex();
-
-    for (String col : columns) {
-      Integer idx = index.get(col.toUpperCase());
-      if (idx == null) continue;
-
-      for (int i = 1; i < rows.size(); i++) {
-        rows.get(i)[idx] = clean(rows.get(i)[idx]).toLowerCase();
-      }
-    }
-    return this;
+    return apply(normalizeTextColumnsStep(columns));
   }
 
   /** Remove linhas completamente vazias */
   public CsvNormalizer removeBlankLines() {
-    rows =
-        rows.stream()
-            .filter(r -> Arrays.stream(r).anyMatch(v -> v != null && !clean(v).isEmpty()))
-            .collect(Collectors.toList());
-    return this;
+    return apply(removeBlankLinesStep());
   }
 
   /** Salva o CSV normalizado na pasta normalized_files/ */
   public CsvNormalizer save() throws IOException {
     Path outputFile = normalizedOutputDir.resolve(file.getFileName());
 
-    try (BufferedWriter writer =
-        Files.newBufferedWriter(
-            outputFile,
-            StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING)) {
-
-      for (int i = 0; i < rows.size(); i++) {
-        String[] row = rows.get(i);
-        List<String> formatted = new ArrayList<>();
+    // Escreve em arquivo temporário: fora do modo em memória a origem pode ser o próprio destino
+    Path tempFile = outputFile.resolveSibling(outputFile.getFileName() + ".tmp");
 
-        for (String value : row) {
-          String cleanValue = clean(value);
+    try (CsvWriter writer = CsvWriter.toFile(tempFile, delimiter)) {
 
-          // Header: SEMPRE com aspas
-          if (i == 0) {
-            formatted.add("\"" + cleanValue + "\"");
-          }
-          // Dados numéricos: SEM aspas
-          else if (isNumeric(cleanValue)) {
-            formatted.add(cleanValue);
-          }
-          // Dados textuais: COM aspas
-          else {
-            formatted.add("\"" + cleanValue + "\"");
+      switch (mode) {
+        case IN_MEMORY -> {
+          for (int i = 0; i < rows.size(); i++) {
+            writeRow(writer, rows.get(i), i == 0);
           }
         }
-
-        writer.write(String.join(delimiter, formatted));
-        writer.newLine();
+        case STREAMING -> saveStreaming(writer);
+        case PARALLEL -> saveParallel(writer);
       }
     }
 
+    Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+
     // Atualiza referência do arquivo para o normalizado
     this.file = outputFile;
     return this;
@@ -119,64 +115,243 @@ public class CsvNormalizer {
 
   /** Filtra linhas com base em valor exato de uma coluna */
   public CsvNormalizer filterByColumnValue(String column, String expectedValue) {
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
+    return apply(filterByColumnValueStep(column, expectedValue));
+  }
 
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
+  /** Executa a operação agora (modo em memória) ou a registra no plano (demais modos) */
+  private CsvNormalizer apply(RowStep step) {
+    if (mode == Mode.IN_MEMORY) {
+      rows = RowStep.run(rows, RowStep.compile(rows.get(0), List.of(step)));
+    } else {
+      plan.add(step);
     }
+    return this;
+  }
 
-    String expected = clean(expectedValue).replaceAll("\\s+", "").toLowerCase();
-    List<String[]> filtered = new ArrayList<>();
-    filtered.add(rows.get(0)); // mantém o header
+  /** Executa o plano registrado em uma única passada sobre o arquivo de origem */
+  private void saveStreaming(CsvWriter writer) throws IOException {
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file, delimiter)) {
+      if (!tokenizer.next()) return;
 
-    for (int i = 1; i < rows.size(); i++) {
-      String raw = rows.get(i)[colIndex];
-      String normalized = clean(raw).replaceAll("\\s+", "").toLowerCase();
+      RowStep.Bound bound = RowStep.compile(tokenizer.toArray(), plan);
+      writeRow(writer, bound.header(), true);
 
-      if (normalized.equals(expected)) {
-        filtered.add(rows.get(i));
+      while (tokenizer.next()) {
+        String[] row = bound.apply(tokenizer); // linhas filtradas não chegam a ser materializadas
+        if (row != null) {
+          writeRow(writer, row, false);
+        }
       }
     }
+    plan.clear();
+  }
 
-    rows = filtered;
-    return this;
+  /**
+   * Executa o plano em blocos paralelos: cada bloco é transformado e codificado em bytes em uma
+   * thread da pool, e os blocos são gravados na ordem original do arquivo.
+   */
+  private void saveParallel(CsvWriter writer) throws IOException {
+    new MappedCsvReader(file, delimiter, parallelism)
+        .read(
+            header -> {
+              RowStep.Bound bound = RowStep.compile(header, plan);
+              writeRow(writer, bound.header(), true);
+
+              return records -> {
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+                try (CsvWriter chunkWriter =
+                    new CsvWriter(CsvWriter.stream(chunk, false), delimiter)) {
+                  while (records.next()) {
+                    String[] row = bound.apply(records);
+                    if (row != null) {
+                      writeRow(chunkWriter, row, false);
+                    }
+                  }
+                }
+                return chunk.toByteArray();
+              };
+            },
+            writer::writeBytes);
+    plan.clear();
+  }
+
+  /** Escreve uma linha formatada: header e textos com aspas, números sem aspas */
+  private static void writeRow(CsvWriter out, String[] row, boolean header) throws IOException {
+    out.writeRow(
+        row,
+        row.length,
+        header ? CsvWriter.Quoting.CLEANED_ALWAYS_QUOTED : CsvWriter.Quoting.CLEANED);
+  }
+
+  /** Formata um valor como no arquivo salvo */
+  private static String formatValue(String value, boolean header) {
+    String cleanValue = Helpers.clean(value);
+
+    // Header: SEMPRE com aspas
+    if (header) {
+      return "\"" + cleanValue + "\"";
+    }
+    // Dados numéricos: SEM aspas
+    else if (isNumeric(cleanValue)) {
+      return cleanValue;
+    }
+    // Dados textuais: COM aspas
+    else {
+      return "\"" + cleanValue + "\"";
+    }
+  }
+
+  // Etapas das operações, compartilhadas com o CsvPipeline
+
+  static RowStep normalizeHeadersStep() {
+    return header -> {
+      for (int i = 0; i < header.length; i++) {
+        header[i] = Helpers.columnName(header[i]);
+      }
+      return new RowStep.Bound(header, row -> row, null, true);
+    };
+  }
+
+  static RowStep normalizeNumbersStep() {
+    return header ->
+        new RowStep.Bound(
+            header,
+            row -> {
+              for (int j = 0; j < row.length; j++) {
+                // Classifica o texto bruto; só números geram uma nova String
+                if (NumericText.isPlainDecimal(row[j])) {
+                  row[j] = NumericText.normalizeDecimal(row[j]);
+                }
+              }
+              return row;
+            },
+            null,
+            true);
+  }
+
+  static RowStep normalizeTextColumnsStep(List<String> columns) {
+    return header -> {
+      Map<String, Integer> index = Helpers.headerIndex(header);
+      int[] indexes =
+          columns.stream()
+              .map(col -> index.get(col.toUpperCase()))
+              .filter(Objects::nonNull)
+              .mapToInt(Integer::intValue)
+              .toArray();
+
+      return new RowStep.Bound(
+          header,
+          row -> {
+            for (int idx : indexes) {
+              row[idx] = Helpers.clean(row[idx]).toLowerCase();
+            }
+            return row;
+          });
+    };
+  }
+
+  static RowStep removeBlankLinesStep() {
+    return header ->
+        new RowStep.Bound(
+            header,
+            row ->
+                Arrays.stream(row).anyMatch(v -> v != null && !Helpers.clean(v).isEmpty())
+                    ? row
+                    : null,
+            record -> {
+              for (int i = 0; i < record.size(); i++) {
+                if (!isBlank(record.field(i))) return true;
+              }
+              return false;
+            },
+            true);
+  }
+
+  static RowStep filterByColumnValueStep(String column, String expectedValue) {
+    String expected = Helpers.clean(expectedValue).replaceAll("\\s+", "").toLowerCase();
+
+    return header -> {
+      Integer colIndex = Helpers.headerIndex(header).get(column.toUpperCase());
+
+      if (colIndex == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + column);
+      }
+
+      return new RowStep.Bound(
+          header,
+          row -> {
+            String normalized = Helpers.clean(row[colIndex]).replaceAll("\\s+", "").toLowerCase();
+            return normalized.equals(expected) ? row : null;
+          },
+          record ->
+              colIndex >= record.size() || mayEqualNormalized(record.field(colIndex), expected),
+          true);
+    };
+  }
+
+  /** Formatação aplicada pelo save(): equivale a salvar o arquivo normalizado e relê-lo */
+  static RowStep saveFormatStep() {
+    return header -> {
+      String[] formattedHeader = new String[header.length];
+      for (int i = 0; i < header.length; i++) {
+        formattedHeader[i] = formatValue(header[i], true);
+      }
+
+      return new RowStep.Bound(
+          formattedHeader,
+          row -> {
+            for (int i = 0; i < row.length; i++) {
+              row[i] = formatValue(row[i], false);
+            }
+            return row;
+          });
+    };
   }
 
   /** Carrega CSV na memória */
   private void load() throws IOException {
     rows.clear();
-    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        rows.add(line.split(delimiter, -1));
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file, delimiter)) {
+      while (tokenizer.next()) {
+        rows.add(tokenizer.toArray());
       }
     }
   }
 
-  /** Cria mapa de índice de colunas (nome da coluna -> posição) */
-  private Map<String, Integer> headerIndex() {
-    Map<String, Integer> map = new HashMap<>();
-    String[] header = rows.get(0);
-
-    for (int i = 0; i < header.length; i++) {
-      map.put(clean(header[i]).toUpperCase(), i);
+  /** Campo bruto vazio depois de remover aspas e espaços, como clean() */
+  private static boolean isBlank(CharSequence value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != '"' && c > ' ') return false;
     }
-    return map;
+    return true;
   }
 
-  /** Remove aspas e espaços do valor */
-  private String clean(String value) {
-    return value == null ? "" : value.replace("\"", "").trim();
+  /**
+   * Compara o campo bruto com o valor esperado do filterByColumnValue (sem aspas e espaços, em
+   * minúsculas) sem criar Strings. Retorna false só quando a comparação da etapa certamente
+   * falharia; números simples (que normalizeNumbers pode ter alterado), caracteres de controle e
+   * caracteres fora do ASCII ficam para a comparação sobre a linha materializada.
+   */
+  private static boolean mayEqualNormalized(CharSequence value, String expected) {
+    if (NumericText.isPlainDecimal(value)) return true;
+
+    int matched = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == ' ' || (c >= '\t' && c <= '\r')) continue; // aspas e \s do regex
+      if (c < ' ' || c > 127) return true;
+      if (matched == expected.length()) return false;
+
+      char e = expected.charAt(matched++);
+      if (e > 127) return true;
+      if ((c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) != e) return false;
+    }
+    return matched == expected.length();
   }
 
   /** Verifica se o valor é numérico */
-  private boolean isNumeric(String value) {
-    if (value == null) return false;
-
-    String raw = value.replace("\"", "").trim();
-    if (raw.isEmpty()) return false;
-
-    return raw.matches("-?\\d+(\\.\\d+)?");
+  private static boolean isNumeric(String value) {
+    return NumericText.isStrictDecimal(value);
   }
 }
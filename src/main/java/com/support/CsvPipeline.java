@@ -0,0 +1,986 @@
+package com.support;
+
+import com.support.enums.ColumnType;
+import com.support.enums.ComparisonOperators;
+import com.support.enums.CompressionPreset;
+import com.support.enums.MathOperation;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Encadeia normalização, concatenação, transformação e validação em um único fluxo de linhas. Cada
+ * arquivo de origem é lido uma vez e as linhas passam por todas as etapas em memória até o arquivo
+ * final, sem gravar e reler arquivos intermediários. As etapas têm a mesma semântica dos métodos de
+ * CsvNormalizer, CsvTransformer e CsvValidator; os arquivos intermediários só são gravados quando
+ * um diretório de depuração é informado.
+ *
+ * <p>Com concurrency(), os arquivos de origem são normalizados em paralelo em uma pool de tamanho
+ * fixo. Cada arquivo entrega blocos de linhas normalizadas em uma fila limitada, e as etapas
+ * seguintes consomem as filas na ordem dos arquivos, então o resultado é idêntico ao sequencial.
+ */
+public class CsvPipeline {
+
+  private static final long CHUNK_BYTES = 256 * 1024; // tamanho estimado de cada bloco em espera
+  private static final long MIN_FILE_BUDGET = 4 * CHUNK_BYTES; // memória mínima por arquivo
+  private static final long POLL_MILLIS = 100; // intervalo de verificação de falhas
+  private static final String CHECKPOINT_VERSION = "1"; // muda quando o formato das linhas mudar
+
+  private final List<CsvSource> sources; // arquivos de origem, concatenados nesta ordem
+  private final String delimiter; // delimitador do CSV
+  private final List<RowStep> normalizeSteps = new ArrayList<>(); // por arquivo, antes do concat
+  private final List<RowStep> steps = new ArrayList<>(); // sobre as linhas concatenadas
+  private final List<BufferedWriter> openSnapshots = new ArrayList<>();
+  private final List<String> configuration = new ArrayList<>(); // descrição das etapas
+  private final List<Path> configurationFiles = new ArrayList<>(); // arquivos lidos pelas etapas
+  private Path debugDir; // quando definido, grava os arquivos intermediários
+  private Path checkpointDir; // quando definido, guarda o resultado de cada arquivo de origem
+  private int threads = 1; // arquivos normalizados ao mesmo tempo
+  private long memoryBudget = Long.MAX_VALUE; // bytes de linhas normalizadas em espera
+  private Path zipFile; // quando definido, o arquivo final é compactado durante a gravação
+  private CompressionPreset zipPreset;
+  private Path columnarFile; // quando definido, também grava o resultado em formato colunar
+  private Map<String, ColumnType> columnarTypes;
+  private List<SortKey> sortKeys; // quando definido, ordena as linhas do arquivo final
+  private long sortMemory = Runtime.getRuntime().maxMemory() / 4; // bytes de linhas na ordenação
+  private int sortParallelism = Runtime.getRuntime().availableProcessors();
+
+  public CsvPipeline(List<Path> sources, String delimiter) {
+    this(delimiter, sources == null ? null : sources.stream().map(CsvSource::of).toList());
+  }
+
+  private CsvPipeline(String delimiter, List<CsvSource> sources) {
+    if (sources == null || sources.isEmpty()) {
+      throw new IllegalArgumentException("Lista de arquivos vazia");
+    }
+    this.sources = List.copyOf(sources);
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * Cria o fluxo a partir de origens genéricas, como as entradas de ZIP recebidas em fluxo pelo
+   * ZipArchiveService.streamSources(), sem passar por arquivos em disco.
+   */
+  public static CsvPipeline fromSources(List<CsvSource> sources, String delimiter) {
+    return new CsvPipeline(delimiter, sources);
+  }
+
+  /**
+   * Ativa a gravação dos arquivos intermediários: os arquivos normalizados em
+   * normalized_files/ e os pontos marcados com snapshot(), relativos ao diretório informado.
+   */
+  public CsvPipeline debug(Path dir) {
+    this.debugDir = dir;
+    return this;
+  }
+
+  /**
+   * Normaliza até threads arquivos ao mesmo tempo. O paralelismo efetivo é reduzido para que cada
+   * arquivo tenha ao menos 1 MB do orçamento de memória (bytes estimados das linhas normalizadas
+   * aguardando as etapas seguintes). Uma falha em qualquer arquivo cancela os demais.
+   */
+  public CsvPipeline concurrency(int threads, long memoryBudget) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + threads);
+    }
+    if (memoryBudget < MIN_FILE_BUDGET) {
+      throw new IllegalArgumentException("Orçamento de memória insuficiente: " + memoryBudget);
+    }
+    this.threads = threads;
+    this.memoryBudget = memoryBudget;
+    return this;
+  }
+
+  /**
+   * Guarda o resultado final de cada arquivo de origem em dir, com chave formada pelo hash do
+   * conteúdo do arquivo e pela configuração do fluxo (etapas, argumentos e conteúdo dos arquivos
+   * lidos por elas). Na execução seguinte, só os arquivos novos ou alterados são processados e o
+   * arquivo final é montado a partir das partições. Não tem efeito com debug() ativo nem com
+   * origens que não informam o hash do conteúdo.
+   */
+  public CsvPipeline checkpoints(Path dir) {
+    this.checkpointDir = dir;
+    return this;
+  }
+
+  /**
+   * Compacta o arquivo final em zipFile enquanto ele é gravado, em uma única entrada com o nome do
+   * arquivo, em vez de reler o CSV depois com Helpers.zipFiles(). A compressão é paralela (ver
+   * ParallelZipOutputStream) e usa os processadores disponíveis. O ZIP é gravado em um temporário
+   * e só substitui zipFile quando o arquivo final foi gravado por completo.
+   */
+  public CsvPipeline zipWhileWriting(Path zipFile, CompressionPreset preset) {
+    this.zipFile = zipFile;
+    this.zipPreset = preset;
+    return this;
+  }
+
+  /**
+   * Grava também o resultado final em formato colunar (ver ColumnarWriter), com as mesmas linhas do
+   * CSV e os tipos informados por coluna; as demais colunas são gravadas como texto.
+   */
+  public CsvPipeline columnar(Path file, Map<String, ColumnType> types) {
+    this.columnarFile = file;
+    this.columnarTypes = Map.copyOf(types);
+    return this;
+  }
+
+  /**
+   * Ordena as linhas do arquivo final (e do arquivo colunar) pelas colunas informadas, com o tipo
+   * de comparação de cada uma (ver SortKey); linhas empatadas mantêm a ordem do fluxo. As linhas
+   * ficam em memória até o orçamento de sortMemory() e, acima dele, são gravadas em runs
+   * ordenados no diretório do arquivo final e intercaladas na gravação (ver ExternalSorter). Os
+   * checkpoints guardam as partições sem ordenar, então mudar a ordenação não invalida nenhuma.
+   */
+  public CsvPipeline sortBy(SortKey... keys) {
+    if (keys.length == 0) {
+      throw new IllegalArgumentException("Nenhuma coluna de ordenação informada");
+    }
+    this.sortKeys = List.of(keys);
+    return this;
+  }
+
+  /**
+   * Memória da ordenação (bytes estimados das linhas; padrão: 1/4 do heap) e quantas partes de
+   * cada lote são ordenadas e gravadas em paralelo (padrão: processadores disponíveis).
+   */
+  public CsvPipeline sortMemory(long memoryBudget, int parallelism) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("Orçamento de memória inválido: " + memoryBudget);
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
+    }
+    this.sortMemory = memoryBudget;
+    this.sortParallelism = parallelism;
+    return this;
+  }
+
+  // === NORMALIZAÇÃO (por arquivo) ===
+
+  /** Normaliza o header: remove aspas, trim e converte para uppercase */
+  public CsvPipeline normalizeHeaders() {
+    return normalize(CsvNormalizer.normalizeHeadersStep(), "normalizeHeaders");
+  }
+
+  /** Normaliza números: substitui "," por ".", remove aspas */
+  public CsvPipeline normalizeNumbers() {
+    return normalize(CsvNormalizer.normalizeNumbersStep(), "normalizeNumbers");
+  }
+
+  /** Normaliza colunas textuais específicas: remove espaços e converte para lowercase */
+  public CsvPipeline normalizeTextColumns(List<String> columns) {
+    return normalize(
+        CsvNormalizer.normalizeTextColumnsStep(columns), "normalizeTextColumns", columns);
+  }
+
+  /** Filtra linhas com base em valor exato de uma coluna */
+  public CsvPipeline filterByColumnValue(String column, String expectedValue) {
+    return normalize(
+        CsvNormalizer.filterByColumnValueStep(column, expectedValue),
+        "filterByColumnValue",
+        column,
+        expectedValue);
+  }
+
+  /** Remove linhas completamente vazias */
+  public CsvPipeline removeBlankLines() {
+    return normalize(CsvNormalizer.removeBlankLinesStep(), "removeBlankLines");
+  }
+
+  // === TRANSFORMAÇÃO ===
+
+  /** Cria uma nova coluna baseada em duas existentes com operação matemática */
+  public CsvPipeline calculateNewColumn(
+      String colA, String colB, String newColumn, MathOperation operation) {
+    return then(
+        CsvTransformer.calculateNewColumnStep(colA, colB, newColumn, operation),
+        "calculateNewColumn",
+        colA,
+        colB,
+        newColumn,
+        operation);
+  }
+
+  /** Adiciona colunas ANO e TRIMESTRE a partir de uma coluna de data (yyyy-MM-dd) */
+  public CsvPipeline addYearAndQuarterColumns(String dateColumn) {
+    return then(
+        CsvTransformer.addYearAndQuarterColumnsStep(dateColumn),
+        "addYearAndQuarterColumns",
+        dateColumn);
+  }
+
+  /** Mescla as linhas com outro CSV usando chaves específicas */
+  public CsvPipeline mergeByKey(Path rightFile, String leftKey, String rightKey)
+      throws IOException {
+    configurationFiles.add(rightFile);
+    return then(
+        CsvTransformer.mergeByKeyStep(rightFile, delimiter, leftKey, rightKey),
+        "mergeByKey",
+        rightFile.getFileName(),
+        leftKey,
+        rightKey);
+  }
+
+  /** Mescla as linhas com um CSV de cadastro indexado em disco (ver RegistryIndex) */
+  public CsvPipeline mergeByKey(RegistryIndex registry, String leftKey, String rightKey) {
+    configurationFiles.add(registry.source());
+    return then(
+        CsvTransformer.mergeByKeyStep(registry, leftKey, rightKey),
+        "mergeByKey",
+        registry.source().getFileName(),
+        leftKey,
+        rightKey);
+  }
+
+  /** Mantém apenas as colunas informadas */
+  public CsvPipeline extractColumns(List<String> columns) {
+    return then(CsvTransformer.extractColumnsStep(columns), "extractColumns", columns);
+  }
+
+  // === VALIDAÇÃO ===
+
+  /** Remove linhas com base em uma operação numérica */
+  public CsvPipeline filterRowsByNumericValue(
+      String column, double value, ComparisonOperators op) {
+    return then(
+        CsvValidator.filterRowsByNumericValueStep(column, value, op),
+        "filterRowsByNumericValue",
+        column,
+        value,
+        op);
+  }
+
+  /** Valida a coluna de CNPJs e cria coluna <COLUNA>_VALIDO */
+  public CsvPipeline validateCnpj(String column) {
+    return then(CsvValidator.validateCnpjStep(column), "validateCnpj", column);
+  }
+
+  /** Valida se um campo obrigatório está vazio. Marca observação e cria coluna <COLUNA>_VALIDO */
+  public CsvPipeline validateRequiredField(String column) {
+    return then(CsvValidator.validateRequiredFieldStep(column), "validateRequiredField", column);
+  }
+
+  /** Valida uma coluna por regex e cria coluna <COLUNA>_VALIDO */
+  public CsvPipeline validateByRegex(String column, String regex) {
+    return then(CsvValidator.validateByRegexStep(column, regex), "validateByRegex", column, regex);
+  }
+
+  /** Remove linhas onde o valor da coluna especificada é igual ao valor fornecido */
+  public CsvPipeline removeRowsByValue(String column, String valueToRemove) {
+    return then(
+        CsvValidator.removeRowsByValueStep(column, valueToRemove),
+        "removeRowsByValue",
+        column,
+        valueToRemove);
+  }
+
+  /** Remove linhas onde <COLUNA>_VALIDO == false */
+  public CsvPipeline removeInvalidRows(String column) {
+    return then(CsvValidator.removeInvalidRowsStep(column), "removeInvalidRows", column);
+  }
+
+  /** Formata os campos como o saveFormatted() do CsvValidator (aspas em textos) */
+  public CsvPipeline formatFields() {
+    return then(CsvValidator.formatFieldsStep(), "formatFields");
+  }
+
+  /**
+   * Marca um ponto do fluxo cujas linhas são gravadas em arquivo (relativo ao diretório de
+   * depuração) quando debug() estiver ativo. Sem depuração não tem efeito.
+   */
+  public CsvPipeline snapshot(Path relativeFile) {
+    // Não altera as linhas, então não faz parte da configuração dos checkpoints
+    steps.add(
+        header -> {
+          if (debugDir == null) {
+            return new RowStep.Bound(header, row -> row);
+          }
+
+          BufferedWriter writer = openWriter(debugDir.resolve(relativeFile));
+          openSnapshots.add(writer);
+          int width = header.length;
+          writeRow(writer, header, width);
+
+          return new RowStep.Bound(
+              header,
+              row -> {
+                writeRow(writer, row, width);
+                return row;
+              });
+        });
+    return this;
+  }
+
+  /** Executa o fluxo e grava apenas o arquivo final */
+  public void save(Path outputFile) throws IOException {
+    CheckpointStore store =
+        checkpointDir == null || debugDir != null
+            ? null
+            : CheckpointStore.open(checkpointDir, delimiter, fingerprint(), sources);
+    if (store != null) {
+      saveIncremental(outputFile, store);
+      return;
+    }
+
+    Concatenation output = null;
+    try (OutputWriter writer = openOutputWriter(outputFile)) {
+      output = new Concatenation(writer, outputFile);
+      int parallelism = effectiveParallelism();
+
+      if (parallelism == 1) {
+        for (CsvSource source : sources) {
+          normalizeSource(source, output);
+        }
+      } else {
+        saveConcurrent(output, parallelism);
+      }
+      output.finish();
+      writer.commit();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      closeSnapshots();
+      if (output != null) output.discard(); // só remove os runs depois de finish()
+    }
+
+    System.out.println("CSV salvo em: " + outputFile.toAbsolutePath());
+  }
+
+  /**
+   * Processa apenas os arquivos sem partição válida e monta o arquivo final a partir das partições.
+   * As etapas seguintes são ligadas ao header do primeiro arquivo não vazio, como na concatenação;
+   * uma partição ligada a outro header é processada de novo.
+   */
+  private void saveIncremental(Path outputFile, CheckpointStore store) throws IOException {
+    String[] boundHeader = null;
+    for (int i = 0; i < sources.size() && boundHeader == null; i++) {
+      boundHeader = store.exists(i) ? store.sourceHeader(i) : normalizedHeader(sources.get(i));
+    }
+
+    List<Integer> pending = new ArrayList<>();
+    for (int i = 0; i < sources.size(); i++) {
+      if (!store.exists(i)
+          || (store.sourceHeader(i) != null
+              && !Arrays.equals(store.boundHeader(i), boundHeader))) {
+        pending.add(i);
+      }
+    }
+    processPartitions(store, pending, boundHeader);
+
+    String[] header = boundHeader == null ? null : RowStep.compile(boundHeader, steps).header();
+    if (sortKeys != null) {
+      saveSorted(outputFile, store, header);
+    } else {
+      try (OutputWriter writer = openOutputWriter(outputFile)) {
+        if (header != null) {
+          writeRow(writer, header, header.length);
+          for (int i = 0; i < sources.size(); i++) {
+            store.appendRows(i, writer);
+          }
+        }
+        writer.commit();
+      }
+      if (columnarFile != null) {
+        saveColumnar(store, header == null ? new String[0] : header);
+      }
+    }
+    store.prune();
+
+    System.out.println(
+        "Checkpoints: "
+            + (sources.size() - pending.size())
+            + " de "
+            + sources.size()
+            + " arquivos reaproveitados");
+    System.out.println("CSV salvo em: " + outputFile.toAbsolutePath());
+  }
+
+  /** Grava as partições pendentes, em paralelo até o limite de concurrency() */
+  private void processPartitions(CheckpointStore store, List<Integer> pending, String[] boundHeader)
+      throws IOException {
+    if (pending.isEmpty()) return;
+
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            Math.min(threads, pending.size()), Helpers.daemonThreads("csv-partition"));
+
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int source : pending) {
+        futures.add(
+            pool.submit(
+                () -> {
+                  try (BufferedWriter writer = openWriter(store.tempFile(source))) {
+                    normalizeSource(sources.get(source), new PartitionWriter(writer, boundHeader));
+                  }
+                  store.commit(source);
+                  return null;
+                }));
+      }
+      for (Future<Void> future : futures) {
+        Helpers.await(future, "Processamento interrompido");
+      }
+    } finally {
+      pool.shutdownNow(); // interrompe os arquivos em andamento quando há falha
+    }
+  }
+
+  /** Header do arquivo após a normalização, lendo apenas a primeira linha; null se vazio */
+  private String[] normalizedHeader(CsvSource source) throws IOException {
+    try (CsvTokenizer tokenizer = new CsvTokenizer(source.open(), delimiter)) {
+      if (!tokenizer.next()) return null;
+      return RowStep.compile(tokenizer.toArray(), normalizationChain()).header();
+    }
+  }
+
+  /** Descrição das etapas e do conteúdo dos arquivos que elas leem, base das chaves */
+  private String fingerprint() throws IOException {
+    StringBuilder fingerprint = new StringBuilder(CHECKPOINT_VERSION);
+    fingerprint.append('\n').append(delimiter);
+    for (String step : configuration) {
+      fingerprint.append('\n').append(step);
+    }
+    for (Path file : configurationFiles) {
+      fingerprint.append('\n').append(Helpers.sha256(file));
+    }
+    return fingerprint.toString();
+  }
+
+  /** Arquivos normalizados ao mesmo tempo, limitado pelo orçamento de memória */
+  private int effectiveParallelism() {
+    long byBudget = Math.max(1, memoryBudget / MIN_FILE_BUDGET);
+    return (int) Math.min(Math.min(threads, sources.size()), byBudget);
+  }
+
+  /**
+   * Normaliza os arquivos em paralelo e consome os blocos na ordem dos arquivos. Só parallelism
+   * arquivos ficam em andamento: o arquivo seguinte começa quando o mais antigo termina de ser
+   * consumido, então no máximo parallelism filas (cada uma com sua parte do orçamento) ocupam
+   * memória, mesmo quando os arquivos seguintes terminam antes do que está sendo consumido.
+   */
+  private void saveConcurrent(Concatenation output, int parallelism) throws IOException {
+    int queueCapacity = (int) Math.max(2, memoryBudget / parallelism / CHUNK_BYTES);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<BlockingQueue<Chunk>> queues = new ArrayList<>(sources.size());
+    ExecutorService pool =
+        Executors.newFixedThreadPool(parallelism, Helpers.daemonThreads("csv-normalize"));
+
+    try {
+      for (int i = 0; i < parallelism; i++) {
+        queues.add(startNormalizing(pool, sources.get(i), queueCapacity, failure));
+      }
+
+      for (int i = 0; i < sources.size(); i++) {
+        BlockingQueue<Chunk> queue = queues.get(i);
+        Chunk chunk;
+        do {
+          chunk = take(queue, failure);
+          if (chunk.header() != null) output.header(chunk.header());
+          for (String[] row : chunk.rows()) {
+            output.row(row);
+          }
+        } while (!chunk.last());
+
+        queues.set(i, null); // libera a fila consumida
+        int next = i + parallelism;
+        if (next < sources.size()) {
+          queues.add(startNormalizing(pool, sources.get(next), queueCapacity, failure));
+        }
+      }
+    } finally {
+      pool.shutdownNow(); // interrompe os arquivos em andamento quando há falha
+    }
+  }
+
+  /** Normaliza o arquivo na pool, entregando os blocos em uma fila própria limitada */
+  private BlockingQueue<Chunk> startNormalizing(
+      ExecutorService pool, CsvSource source, int capacity, AtomicReference<Throwable> failure) {
+    BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(capacity);
+    pool.execute(
+        () -> {
+          try {
+            ChunkWriter chunks = new ChunkWriter(queue);
+            normalizeSource(source, chunks);
+            chunks.finish();
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        });
+    return queue;
+  }
+
+  /** Aguarda o próximo bloco da fila, abortando assim que qualquer arquivo falhar */
+  private static Chunk take(BlockingQueue<Chunk> queue, AtomicReference<Throwable> failure)
+      throws IOException {
+    try {
+      while (true) {
+        Throwable error = failure.get();
+        if (error != null) throw Helpers.rethrow(error);
+
+        Chunk chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (chunk != null) return chunk;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Normalização interrompida", e);
+    }
+  }
+
+  /** Normaliza cada CSV da origem (as entradas de um ZIP recebido em fluxo), em ordem */
+  private void normalizeSource(CsvSource source, NormalizedRows target) throws IOException {
+    source.forEachEntry(entry -> normalizeEntry(entry, target));
+  }
+
+  /**
+   * Lê o CSV, aplica as etapas de normalização e entrega o header e as linhas normalizadas ao
+   * destino. Grava o arquivo normalizado quando a depuração está ativa.
+   */
+  private void normalizeEntry(CsvSource source, NormalizedRows target) throws IOException {
+    try (CsvTokenizer tokenizer = new CsvTokenizer(source.open(), delimiter);
+        BufferedWriter normalizedWriter = openNormalizedWriter(source)) {
+
+      if (!tokenizer.next()) return;
+
+      RowStep.Bound normalize = RowStep.compile(tokenizer.toArray(), normalizationChain());
+      int normalizedWidth = normalize.header().length;
+      writeRow(normalizedWriter, normalize.header(), normalizedWidth);
+      target.header(normalize.header());
+
+      while (tokenizer.next()) {
+        String[] row = normalize.apply(tokenizer); // filtradas pelos campos brutos, sem alocar
+        if (row == null) continue;
+        writeRow(normalizedWriter, row, normalizedWidth);
+        target.row(row);
+      }
+    }
+  }
+
+  /** Destino das linhas normalizadas de um arquivo */
+  private interface NormalizedRows {
+    void header(String[] header) throws IOException;
+
+    void row(String[] row) throws IOException;
+  }
+
+  /** Concatena as linhas normalizadas e aplica as etapas seguintes, gravando o arquivo final */
+  private final class Concatenation implements NormalizedRows {
+
+    private final BufferedWriter writer;
+    private final Path outputFile;
+    private RowStep.Bound post; // ligado ao header do primeiro arquivo
+    private ColumnarWriter columnar; // aberto com o header quando columnar() foi chamado
+    private ExternalSorter sorter; // linhas aguardando a ordenação quando sortBy() foi chamado
+    private Function<String[], String> sortKey;
+    private long sequence;
+
+    Concatenation(BufferedWriter writer, Path outputFile) {
+      this.writer = writer;
+      this.outputFile = outputFile;
+    }
+
+    @Override
+    public void header(String[] header) throws IOException {
+      // Concatenação: o header do primeiro arquivo define as etapas seguintes
+      if (post == null) {
+        post = RowStep.compile(header, steps);
+        writeRow(writer, post.header(), post.header().length);
+        if (columnarFile != null) columnar = openColumnar(post.header());
+        if (sortKeys != null) {
+          sortKey = SortKey.encoder(post.header(), sortKeys);
+          sorter = openSorter(outputFile);
+        }
+      }
+    }
+
+    @Override
+    public void row(String[] row) throws IOException {
+      row = post.rows().apply(row);
+      if (row == null) return;
+
+      if (sorter != null) {
+        sorter.add(new ExternalSorter.Entry(sortKey.apply(row), sequence++, row));
+      } else {
+        writeRow(writer, row, post.header().length);
+        if (columnar != null) columnar.writeRow(row);
+      }
+    }
+
+    /**
+     * Grava as linhas ordenadas (com sortBy()) e publica o arquivo colunar (vazio, sem colunas,
+     * quando nenhuma origem tinha header)
+     */
+    void finish() throws IOException {
+      if (sorter != null) writeSorted(sorter, writer, post.header().length, columnar);
+      if (columnarFile == null) return;
+      if (columnar == null) columnar = openColumnar(new String[0]);
+      columnar.close();
+    }
+
+    /** Remove os runs da ordenação e descarta o arquivo colunar incompleto depois de uma falha */
+    void discard() throws IOException {
+      try {
+        if (sorter != null) sorter.close();
+      } finally {
+        if (columnar != null) columnar.abort(); // sem efeito depois de finish()
+      }
+    }
+  }
+
+  /**
+   * Grava a partição de um arquivo: o header normalizado, o header ligado às etapas seguintes e as
+   * linhas já transformadas. Cada partição liga as etapas por conta própria, então pode ser gravada
+   * em paralelo com as demais.
+   */
+  private final class PartitionWriter implements NormalizedRows {
+
+    private final BufferedWriter writer;
+    private final String[] boundHeader;
+    private RowStep.Bound post;
+
+    PartitionWriter(BufferedWriter writer, String[] boundHeader) {
+      this.writer = writer;
+      this.boundHeader = boundHeader;
+    }
+
+    @Override
+    public void header(String[] header) {
+      writeRow(writer, header, header.length);
+      writeRow(writer, boundHeader, boundHeader.length);
+      post = RowStep.compile(boundHeader, steps);
+    }
+
+    @Override
+    public void row(String[] row) {
+      row = post.rows().apply(row);
+      if (row != null) {
+        writeRow(writer, row, post.header().length);
+      }
+    }
+  }
+
+  /** Bloco de linhas normalizadas de um arquivo; o header vem apenas no primeiro bloco */
+  private record Chunk(String[] header, List<String[]> rows, boolean last) {}
+
+  /** Agrupa as linhas normalizadas em blocos de tamanho estimado limitado e os coloca na fila */
+  private static final class ChunkWriter implements NormalizedRows {
+
+    private final BlockingQueue<Chunk> queue;
+    private String[] header;
+    private List<String[]> rows = new ArrayList<>();
+    private long bytes;
+
+    ChunkWriter(BlockingQueue<Chunk> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void header(String[] header) throws IOException {
+      // Outra entrada da mesma origem: o bloco pendente segue com o header anterior
+      if (this.header != null || !rows.isEmpty()) put(false);
+      this.header = header;
+    }
+
+    @Override
+    public void row(String[] row) throws IOException {
+      rows.add(row);
+      bytes += 16L + 4L * row.length;
+      for (String value : row) {
+        if (value != null) bytes += 40 + value.length();
+      }
+      if (bytes >= CHUNK_BYTES) {
+        put(false);
+      }
+    }
+
+    /** Entrega o último bloco (também para arquivos vazios, sem header) */
+    void finish() throws IOException {
+      put(true);
+    }
+
+    private void put(boolean last) throws IOException {
+      try {
+        queue.put(new Chunk(header, rows, last));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Normalização cancelada");
+      }
+      header = null;
+      rows = new ArrayList<>();
+      bytes = 0;
+    }
+  }
+
+  /** Grava o arquivo colunar a partir das linhas das partições, na ordem das origens */
+  private void saveColumnar(CheckpointStore store, String[] header) throws IOException {
+    ColumnarWriter columnar = openColumnar(header);
+    try {
+      for (int i = 0; i < sources.size(); i++) {
+        try (CsvTokenizer rows = store.openRows(i)) {
+          while (rows.next()) {
+            columnar.writeRow(rows.toArray());
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      columnar.abort();
+      throw e;
+    }
+    columnar.close();
+  }
+
+  /**
+   * Monta o arquivo final (e o colunar) a partir das partições, com as linhas na ordem de sortBy().
+   * header é null quando nenhuma origem tinha header.
+   */
+  private void saveSorted(Path outputFile, CheckpointStore store, String[] header)
+      throws IOException {
+    ColumnarWriter columnar =
+        columnarFile == null ? null : openColumnar(header == null ? new String[0] : header);
+    try (OutputWriter writer = openOutputWriter(outputFile);
+        ExternalSorter sorter = openSorter(outputFile)) {
+      if (header != null) {
+        writeRow(writer, header, header.length);
+        Function<String[], String> sortKey = SortKey.encoder(header, sortKeys);
+        long sequence = 0;
+        for (int i = 0; i < sources.size(); i++) {
+          try (CsvTokenizer rows = store.openRows(i)) {
+            while (rows.next()) {
+              String[] row = rows.toArray();
+              sorter.add(new ExternalSorter.Entry(sortKey.apply(row), sequence++, row));
+            }
+          }
+        }
+        writeSorted(sorter, writer, header.length, columnar);
+      }
+      writer.commit();
+    } catch (IOException | RuntimeException e) {
+      if (columnar != null) columnar.abort();
+      throw e;
+    }
+    if (columnar != null) columnar.close();
+  }
+
+  /** Grava as linhas na ordem do sorter no arquivo final e, se aberto, no arquivo colunar */
+  private void writeSorted(
+      ExternalSorter sorter, BufferedWriter writer, int width, ColumnarWriter columnar)
+      throws IOException {
+    try (ExternalSorter.Cursor rows = sorter.sorted()) {
+      ExternalSorter.Entry entry;
+      while ((entry = rows.next()) != null) {
+        writeRow(writer, entry.values(), width);
+        if (columnar != null) columnar.writeRow(entry.values());
+      }
+    }
+  }
+
+  /** Ordenação com runs em um diretório temporário ao lado do arquivo final */
+  private ExternalSorter openSorter(Path outputFile) {
+    return new ExternalSorter(
+        outputFile.toAbsolutePath().getParent(),
+        sortMemory,
+        Comparator.comparing(ExternalSorter.Entry::key)
+            .thenComparingLong(ExternalSorter.Entry::seq),
+        sortParallelism);
+  }
+
+  private ColumnarWriter openColumnar(String[] header) throws IOException {
+    return new ColumnarWriter(
+        columnarFile, header, columnarTypes, ColumnarWriter.DEFAULT_ROW_GROUP_SIZE);
+  }
+
+  /** Arquivo final em UTF-8; commit() marca a gravação como completa antes do close() */
+  private static final class OutputWriter extends BufferedWriter {
+
+    private final TeeOutputStream tee; // null sem zipWhileWriting()
+
+    OutputWriter(OutputStream out, TeeOutputStream tee) {
+      // Mesmo encoder do Files.newBufferedWriter: caracteres inválidos geram erro
+      super(new OutputStreamWriter(out, StandardCharsets.UTF_8.newEncoder()));
+      this.tee = tee;
+    }
+
+    /** Grava o que está no buffer e libera a finalização do ZIP no close() */
+    void commit() throws IOException {
+      flush();
+      if (tee != null) tee.committed = true;
+    }
+  }
+
+  /**
+   * Repassa os bytes ao arquivo final e ao ZIP temporário. close() fecha os dois; o ZIP só é
+   * finalizado e movido para o destino depois de um commit(), senão é descartado.
+   */
+  private static final class TeeOutputStream extends OutputStream {
+
+    private final OutputStream file;
+    private final ParallelZipOutputStream zip;
+    private final Path tempZip;
+    private final Path zipFile;
+    private boolean committed;
+
+    TeeOutputStream(OutputStream file, ParallelZipOutputStream zip, Path tempZip, Path zipFile) {
+      this.file = file;
+      this.zip = zip;
+      this.tempZip = tempZip;
+      this.zipFile = zipFile;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      file.write(b);
+      zip.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      file.write(bytes, offset, length);
+      zip.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      file.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try (file) {
+        if (committed) {
+          zip.close();
+          Helpers.moveAtomically(tempZip, zipFile);
+        } else {
+          zip.abort(); // gravação incompleta: nunca finaliza o ZIP
+        }
+      } finally {
+        Files.deleteIfExists(tempZip); // sem efeito depois da publicação
+      }
+    }
+  }
+
+  /** Registra uma etapa de normalização; nome e argumentos descrevem a etapa nos checkpoints */
+  private CsvPipeline normalize(RowStep step, String name, Object... args) {
+    if (!steps.isEmpty()) {
+      throw new IllegalStateException("Etapas de normalização devem vir antes das demais");
+    }
+    normalizeSteps.add(step);
+    configuration.add(describe(name, args));
+    return this;
+  }
+
+  /** Registra uma etapa sobre as linhas concatenadas */
+  private CsvPipeline then(RowStep step, String name, Object... args) {
+    steps.add(step);
+    configuration.add(describe(name, args));
+    return this;
+  }
+
+  private static String describe(String name, Object... args) {
+    StringBuilder description = new StringBuilder(name);
+    for (Object arg : args) {
+      description.append('|').append(arg);
+    }
+    return description.toString();
+  }
+
+  /** Etapas de normalização seguidas da formatação do arquivo normalizado */
+  private List<RowStep> normalizationChain() {
+    List<RowStep> chain = new ArrayList<>(normalizeSteps);
+    chain.add(CsvNormalizer.saveFormatStep());
+    return chain;
+  }
+
+  /** Abre o arquivo normalizado de depuração, ou null sem depuração */
+  private BufferedWriter openNormalizedWriter(CsvSource source) {
+    if (debugDir == null) return null;
+    return openWriter(debugDir.resolve("normalized_files").resolve(source.name()));
+  }
+
+  /**
+   * Abre o arquivo final, gravando ao mesmo tempo no ZIP quando zipWhileWriting() foi chamado. O
+   * ZIP vai para um temporário e só é finalizado e publicado se commit() for chamado antes de
+   * close().
+   */
+  private OutputWriter openOutputWriter(Path outputFile) throws IOException {
+    Files.createDirectories(outputFile.toAbsolutePath().getParent());
+    if (zipFile == null) return new OutputWriter(Files.newOutputStream(outputFile), null);
+
+    Files.createDirectories(zipFile.toAbsolutePath().getParent());
+    Path tempZip = zipFile.resolveSibling(zipFile.getFileName() + ".tmp");
+    OutputStream file = Files.newOutputStream(outputFile);
+    ParallelZipOutputStream zip = null;
+    try {
+      zip =
+          new ParallelZipOutputStream(
+              Files.newOutputStream(tempZip),
+              zipPreset.level(),
+              Runtime.getRuntime().availableProcessors());
+      zip.putNextEntry(outputFile.getFileName().toString(), System.currentTimeMillis());
+    } catch (IOException | RuntimeException e) {
+      try (file) {
+        if (zip != null) zip.abort();
+      } finally {
+        Files.deleteIfExists(tempZip);
+      }
+      throw e;
+    }
+    TeeOutputStream tee = new TeeOutputStream(file, zip, tempZip, zipFile);
+    return new OutputWriter(tee, tee);
+  }
+
+  private static BufferedWriter openWriter(Path file) {
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      return Files.newBufferedWriter(
+          file,
+          StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Erro ao criar arquivo: " + file, e);
+    }
+  }
+
+  /**
+   * Grava a linha sem as posições vazias além de width, que são apenas capacidade reservada pelas
+   * etapas que adicionam colunas.
+   */
+  private void writeRow(BufferedWriter writer, String[] row, int width) {
+    if (writer == null) return;
+
+    int end = row.length;
+    while (end > width && row[end - 1] == null) end--;
+
+    try {
+      for (int i = 0; i < end; i++) {
+        if (i > 0) writer.write(delimiter);
+        if (row[i] != null) writer.write(row[i]);
+      }
+      writer.newLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void closeSnapshots() throws IOException {
+    for (BufferedWriter writer : openSnapshots) {
+      writer.close();
+    }
+    openSnapshots.clear();
+  }
+}
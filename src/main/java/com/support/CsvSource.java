@@ -0,0 +1,66 @@
+package com.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Origem de um CSV processado pelo CsvPipeline: um arquivo em disco ou um conteúdo recebido em
+ * fluxo (por exemplo, as entradas de um ZIP sendo baixado), lido uma única vez do início ao fim.
+ */
+public interface CsvSource {
+
+  /** Nome do arquivo CSV, usado nos arquivos de depuração */
+  String name();
+
+  /** Abre o conteúdo (UTF-8) para leitura sequencial */
+  Reader open() throws IOException;
+
+  /**
+   * Percorre os CSVs da origem, em ordem. Por padrão a própria origem é o único CSV; um ZIP
+   * recebido em fluxo entrega uma origem por entrada, que só pode ser lida durante a chamada.
+   */
+  default void forEachEntry(EntryAction action) throws IOException {
+    action.accept(this);
+  }
+
+  /**
+   * Hash do conteúdo, usado como chave dos checkpoints do CsvPipeline; null quando só é possível
+   * conhecê-lo lendo a origem (conteúdo recebido em fluxo)
+   */
+  default String contentHash() throws IOException {
+    return null;
+  }
+
+  /** Ação aplicada a cada CSV de uma origem */
+  interface EntryAction {
+    void accept(CsvSource entry) throws IOException;
+  }
+
+  /** Origem a partir de um arquivo em disco */
+  static CsvSource of(Path file) {
+    return new CsvSource() {
+      @Override
+      public String name() {
+        return file.getFileName().toString();
+      }
+
+      @Override
+      public Reader open() throws IOException {
+        return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public String contentHash() throws IOException {
+        return Helpers.sha256(file);
+      }
+
+      @Override
+      public String toString() {
+        return file.toString();
+      }
+    };
+  }
+}
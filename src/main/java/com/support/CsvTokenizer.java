@@ -0,0 +1,278 @@
+package com.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Tokenizador CSV compartilhado pelos processadores. Separa registros e campos respeitando aspas
+ * (RFC-4180): delimitadores e quebras de linha dentro de aspas fazem parte do campo, e aspas
+ * escapadas ("") são preservadas. Os campos são expostos como visões reutilizáveis sobre o buffer
+ * interno, sem alocar uma String por campo; o texto bruto de cada campo (incluindo as aspas) é o
+ * mesmo que line.split(delimiter, -1) produziria.
+ */
+public final class CsvTokenizer implements Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final char delimiter;
+  private final Reader reader; // null quando o buffer já contém todo o conteúdo
+
+  private char[] buf;
+  private int pos; // próxima posição a ser lida
+  private int limit; // fim dos dados válidos no buffer
+  private boolean eof;
+  private boolean pendingLf; // registro anterior terminou em '\r'; ignora o '\n' seguinte
+  private int shifted; // deslocamento aplicado ao buffer pelo último fill()
+
+  private int[] starts = new int[32];
+  private int[] ends = new int[32];
+  private int count;
+  private Field[] views = new Field[0];
+
+  /** Tokeniza o conteúdo de um Reader (o Reader é fechado junto com o tokenizador) */
+  public CsvTokenizer(Reader reader, String delimiter) {
+    this.delimiter = toDelimiterChar(delimiter);
+    this.reader = reader;
+    this.buf = new char[DEFAULT_BUFFER_SIZE];
+  }
+
+  /** Tokeniza um trecho de um buffer de caracteres já carregado */
+  public CsvTokenizer(char[] buffer, int from, int to, String delimiter) {
+    this.delimiter = toDelimiterChar(delimiter);
+    this.reader = null;
+    this.buf = buffer;
+    this.pos = from;
+    this.limit = to;
+    this.eof = true;
+  }
+
+  /** Abre um arquivo CSV em UTF-8 para tokenização */
+  public static CsvTokenizer open(Path file, String delimiter) throws IOException {
+    return new CsvTokenizer(Files.newBufferedReader(file, StandardCharsets.UTF_8), delimiter);
+  }
+
+  /** Tokeniza um buffer de bytes UTF-8 (decodificado uma única vez para o buffer interno) */
+  public static CsvTokenizer of(ByteBuffer bytes, String delimiter) {
+    CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+    if (chars.hasArray()) {
+      int offset = chars.arrayOffset();
+      return new CsvTokenizer(
+          chars.array(), offset + chars.position(), offset + chars.limit(), delimiter);
+    }
+    char[] copy = new char[chars.remaining()];
+    chars.get(copy);
+    return new CsvTokenizer(copy, 0, copy.length, delimiter);
+  }
+
+  /** Avança para o próximo registro; retorna false no fim da entrada */
+  public boolean next() throws IOException {
+    count = 0;
+
+    if (pendingLf) {
+      pendingLf = false;
+      if (pos < limit || fill(pos)) {
+        if (buf[pos] == '\n') pos++;
+      }
+    }
+
+    if (pos >= limit && !fill(pos)) {
+      return false;
+    }
+
+    int recordStart = pos;
+    int fieldStart = pos;
+    boolean inQuotes = false;
+
+    while (true) {
+      if (pos >= limit) {
+        // fill() move o registro atual para o início do buffer
+        boolean more = fill(recordStart);
+        fieldStart -= shifted;
+        recordStart -= shifted;
+        shiftFields(shifted);
+
+        if (!more) {
+          addField(fieldStart, pos);
+          return true;
+        }
+      }
+
+      char c = buf[pos];
+
+      if (c == '"') {
+        // Aspas escapadas ("") alternam duas vezes e mantêm o estado
+        inQuotes = !inQuotes;
+      } else if (!inQuotes) {
+        if (c == delimiter) {
+          addField(fieldStart, pos);
+          fieldStart = pos + 1;
+        } else if (c == '\n' || c == '\r') {
+          addField(fieldStart, pos);
+          pos++;
+          pendingLf = c == '\r';
+          return true;
+        }
+      }
+      pos++;
+    }
+  }
+
+  /** Quantidade de campos do registro atual */
+  public int size() {
+    return count;
+  }
+
+  /** Visão do campo i do registro atual (válida até a próxima chamada de next()) */
+  public Field field(int i) {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException("Campo inexistente: " + i);
+    }
+    if (views.length < count) {
+      Field[] grown = Arrays.copyOf(views, Math.max(count, views.length * 2));
+      for (int j = views.length; j < grown.length; j++) {
+        grown[j] = new Field(j);
+      }
+      views = grown;
+    }
+    return views[i];
+  }
+
+  /** Materializa o registro atual como array de Strings com o texto bruto dos campos */
+  public String[] toArray() {
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = new String(buf, starts[i], ends[i] - starts[i]);
+    }
+    return values;
+  }
+
+  /**
+   * Copia o restante da entrada, a partir do próximo registro, sem tokenizá-lo. Permite pular
+   * registros iniciais (headers) respeitando aspas e repassar o resto do texto como está.
+   */
+  public void transferTo(Writer target) throws IOException {
+    count = 0;
+    if (pendingLf) {
+      pendingLf = false;
+      if ((pos < limit || fill(pos)) && buf[pos] == '\n') pos++;
+    }
+
+    target.write(buf, pos, limit - pos);
+    pos = limit;
+    if (!eof) {
+      reader.transferTo(target);
+      eof = true;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) reader.close();
+  }
+
+  /**
+   * Garante mais dados no buffer preservando o conteúdo a partir de keepFrom, que passa a ficar no
+   * início do buffer. Retorna false quando não há mais dados.
+   */
+  private boolean fill(int keepFrom) throws IOException {
+    shifted = 0;
+    if (eof) return false;
+
+    int kept = limit - keepFrom;
+    if (kept == buf.length) {
+      buf = Arrays.copyOf(buf, buf.length * 2); // registro maior que o buffer
+    }
+    if (keepFrom > 0) {
+      System.arraycopy(buf, keepFrom, buf, 0, kept);
+    }
+    pos -= keepFrom;
+    limit = kept;
+    shifted = keepFrom;
+
+    int read;
+    do {
+      read = reader.read(buf, limit, buf.length - limit);
+    } while (read == 0);
+
+    if (read < 0) {
+      eof = true;
+      return false;
+    }
+    limit += read;
+    return true;
+  }
+
+  private void addField(int start, int end) {
+    if (count == starts.length) {
+      starts = Arrays.copyOf(starts, count * 2);
+      ends = Arrays.copyOf(ends, count * 2);
+    }
+    starts[count] = start;
+    ends[count] = end;
+    count++;
+  }
+
+  private void shiftFields(int shift) {
+    for (int i = 0; i < count; i++) {
+      starts[i] -= shift;
+      ends[i] -= shift;
+    }
+  }
+
+  private static char toDelimiterChar(String delimiter) {
+    if (delimiter == null || delimiter.length() != 1) {
+      throw new IllegalArgumentException("Delimitador deve ter um único caractere: " + delimiter);
+    }
+    return delimiter.charAt(0);
+  }
+
+  /** Visão reutilizável sobre o texto bruto de um campo do registro atual */
+  public final class Field implements CharSequence {
+
+    private final int index;
+
+    private Field(int index) {
+      this.index = index;
+    }
+
+    public char[] buffer() {
+      return buf;
+    }
+
+    public int start() {
+      return starts[index];
+    }
+
+    public int end() {
+      return ends[index];
+    }
+
+    @Override
+    public int length() {
+      return ends[index] - starts[index];
+    }
+
+    @Override
+    public char charAt(int i) {
+      return buf[starts[index] + i];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      return new String(buf, starts[index] + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buf, starts[index], length());
+    }
+  }
+}
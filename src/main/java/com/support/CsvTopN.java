@@ -0,0 +1,277 @@
+package com.support;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-N de um CSV (como os salvos pelo CsvTransformer e pelo CsvValidator) por uma coluna numérica,
+ * geral ou dentro de grupos (por exemplo, as 5 maiores operadoras por UF), em uma única leitura e
+ * sem ordenar o arquivo: cada grupo mantém um heap limitado a N linhas, com as chaves em arrays
+ * primitivos, e só as linhas que entram no heap são convertidas em Strings.
+ *
+ * <p>O arquivo é lido em blocos paralelos pelo MappedCsvReader, cada bloco com seus próprios heaps,
+ * e os heaps dos blocos são mesclados na ordem do arquivo. Valores iguais ficam na ordem em que
+ * aparecem no arquivo, então o resultado não depende do paralelismo. Linhas sem valor numérico na
+ * coluna de ordenação não entram no ranking.
+ */
+public class CsvTopN {
+
+  private static final String RANK_COLUMN = "RANKING";
+
+  private final Path file;
+  private final String delimiter;
+  private final List<String> partitionColumns = new ArrayList<>();
+  private String orderColumn;
+  private boolean descending;
+  private int limit = 10;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  public CsvTopN(Path file, String delimiter) {
+    this.file = file;
+    this.delimiter = delimiter;
+  }
+
+  /** Coluna numérica do ranking; descending = true mantém os maiores valores */
+  public CsvTopN orderBy(String column, boolean descending) {
+    this.orderColumn = Helpers.columnName(column);
+    this.descending = descending;
+    return this;
+  }
+
+  /** Quantidade de linhas mantidas por grupo (padrão: 10) */
+  public CsvTopN limit(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("Limite deve ser positivo: " + n);
+    }
+    this.limit = n;
+    return this;
+  }
+
+  /** Ranking separado para cada combinação de valores das colunas informadas */
+  public CsvTopN partitionBy(String... columns) {
+    for (String column : columns) {
+      partitionColumns.add(Helpers.columnName(column));
+    }
+    return this;
+  }
+
+  /** Define quantas threads processam os blocos (padrão: processadores disponíveis) */
+  public CsvTopN parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Header (com a coluna RANKING no fim) seguido das linhas selecionadas, com o texto original das
+   * células: os grupos na ordem da primeira ocorrência e, em cada grupo, do 1º ao N-ésimo.
+   */
+  public List<String[]> rows() throws IOException {
+    if (orderColumn == null) {
+      throw new IllegalArgumentException("Coluna de ordenação não definida");
+    }
+
+    Ranking total = new Ranking();
+    String[][] header = {new String[0]};
+    long[] chunks = {0};
+    new MappedCsvReader(file, delimiter, parallelism)
+        .read(
+            fileHeader -> {
+              header[0] = fileHeader;
+              int[] partitionIndexes = Helpers.columnIndexes(fileHeader, partitionColumns);
+              int keyIndex = Helpers.columnIndexes(fileHeader, List.of(orderColumn))[0];
+              return records -> rankChunk(records, partitionIndexes, keyIndex);
+            },
+            chunk -> total.merge(chunk, chunks[0]++));
+
+    List<String[]> result = new ArrayList<>();
+    String[] outputHeader = Arrays.copyOf(header[0], header[0].length + 1);
+    outputHeader[header[0].length] = "\"" + RANK_COLUMN + "\"";
+    result.add(outputHeader);
+
+    for (Heap heap : total.groups.values()) {
+      int[] ranked = heap.ranked();
+      for (int rank = 0; rank < ranked.length; rank++) {
+        String[] row = heap.rows[ranked[rank]];
+        String[] output = Arrays.copyOf(row, row.length + 1);
+        output[row.length] = Integer.toString(rank + 1);
+        result.add(output);
+      }
+    }
+    return result;
+  }
+
+  /** Grava o resultado com as células como estão no arquivo de origem */
+  public void save(Path output) throws IOException {
+    List<String[]> rows = rows();
+    try (CsvWriter writer = CsvWriter.toFile(output, delimiter)) {
+      for (String[] row : rows) {
+        writer.writeRow(row);
+      }
+    }
+
+    System.out.println("CSV salvo em: " + output.toAbsolutePath());
+  }
+
+  /** Heaps de um bloco; a ordem de cada linha é a posição dela no bloco */
+  private Ranking rankChunk(CsvTokenizer records, int[] partitionIndexes, int keyIndex)
+      throws IOException {
+    Ranking ranking = new Ranking();
+    String[] lastRaw = new String[partitionIndexes.length]; // linhas seguidas repetem o grupo
+    Heap heap = null;
+
+    for (long order = 0; records.next(); order++) {
+      int size = records.size();
+      if (keyIndex >= size) continue;
+      double key = NumericText.parseDouble(records.field(keyIndex), false, Double.NaN);
+      if (Double.isNaN(key)) continue;
+
+      boolean changed = heap == null;
+      for (int c = 0; c < partitionIndexes.length; c++) {
+        CharSequence cell = partitionIndexes[c] < size ? records.field(partitionIndexes[c]) : "";
+        if (lastRaw[c] == null || !lastRaw[c].contentEquals(cell)) {
+          lastRaw[c] = cell.toString();
+          changed = true;
+        }
+      }
+      if (changed) heap = ranking.heap(groupKey(lastRaw));
+
+      if (heap.accepts(key, order)) {
+        heap.add(key, order, records.toArray());
+      }
+    }
+    return ranking;
+  }
+
+  /** Valores limpos das colunas do grupo, separados por um caractere que não ocorre no texto */
+  private static String groupKey(String[] raw) {
+    StringBuilder key = new StringBuilder();
+    for (int c = 0; c < raw.length; c++) {
+      if (c > 0) key.append('\0');
+      key.append(Helpers.clean(raw[c]));
+    }
+    return key.toString();
+  }
+
+  /** Heaps por grupo, na ordem da primeira ocorrência */
+  private final class Ranking {
+
+    private final Map<String, Heap> groups = new LinkedHashMap<>();
+
+    Heap heap(String group) {
+      return groups.computeIfAbsent(group, g -> new Heap());
+    }
+
+    /** Mescla os heaps de um bloco; a ordem passa a ser (bloco, posição no bloco) */
+    void merge(Ranking chunk, long chunkIndex) {
+      for (Map.Entry<String, Heap> entry : chunk.groups.entrySet()) {
+        Heap target = heap(entry.getKey());
+        Heap source = entry.getValue();
+        for (int i = 0; i < source.size; i++) {
+          long order = chunkIndex << 32 | source.orders[i];
+          if (target.accepts(source.keys[i], order)) {
+            target.add(source.keys[i], order, source.rows[i]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Heap binário limitado a limit linhas em que a raiz é a pior linha mantida, substituída quando
+   * chega uma melhor. Chaves e ordens ficam em arrays primitivos, que crescem até o limite.
+   */
+  private final class Heap {
+
+    private double[] keys = new double[Math.min(limit, 8)];
+    private long[] orders = new long[keys.length];
+    private String[][] rows = new String[keys.length][];
+    private int size;
+
+    /** Se a linha entraria no heap, verificado antes de converter a linha */
+    boolean accepts(double key, long order) {
+      return size < limit || better(key, order, keys[0], orders[0]);
+    }
+
+    void add(double key, long order, String[] row) {
+      if (size < limit) {
+        if (size == keys.length) grow();
+        set(size, key, order, row);
+        siftUp(size++);
+      } else {
+        set(0, key, order, row);
+        siftDown(0);
+      }
+    }
+
+    /** Posições das linhas do 1º ao último colocado */
+    int[] ranked() {
+      Integer[] positions = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        positions[i] = i;
+      }
+      Arrays.sort(
+          positions,
+          (a, b) ->
+              better(keys[a], orders[a], keys[b], orders[b])
+                  ? -1
+                  : better(keys[b], orders[b], keys[a], orders[a]) ? 1 : 0);
+      return Arrays.stream(positions).mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Maior (ou menor) valor primeiro; em caso de empate, a linha que aparece antes */
+    private boolean better(double key, long order, double otherKey, long otherOrder) {
+      if (key != otherKey) return descending ? key > otherKey : key < otherKey;
+      return order < otherOrder;
+    }
+
+    private void siftUp(int i) {
+      while (i > 0) {
+        int parent = (i - 1) / 2;
+        if (!better(keys[parent], orders[parent], keys[i], orders[i])) break;
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        int worst = i;
+        for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+          if (better(keys[worst], orders[worst], keys[child], orders[child])) worst = child;
+        }
+        if (worst == i) return;
+        swap(i, worst);
+        i = worst;
+      }
+    }
+
+    private void set(int i, double key, long order, String[] row) {
+      keys[i] = key;
+      orders[i] = order;
+      rows[i] = row;
+    }
+
+    private void swap(int i, int j) {
+      double key = keys[i];
+      long order = orders[i];
+      String[] row = rows[i];
+      set(i, keys[j], orders[j], rows[j]);
+      set(j, key, order, row);
+    }
+
+    private void grow() {
+      int capacity = Math.min(limit, keys.length * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      orders = Arrays.copyOf(orders, capacity);
+      rows = Arrays.copyOf(rows, capacity);
+    }
+  }
+}
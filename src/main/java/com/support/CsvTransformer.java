@@ -2,28 +2,29 @@ package com.support;
 
 import com.support.enums.MathOperation;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 public class CsvTransformer {
 
   private Path file; // arquivo CSV original ou atualizado
   private final String delimiter; // delimitador do CSV
-  private List<String[]> rows = new ArrayList<>(); // linhas do CSV
+  private final ColumnarTable table; // dados do CSV organizados por coluna
 
   /** Construtor: carrega o CSV na memória */
   public CsvTransformer(Path file, String delimiter) throws IOException {
     this.file = file;
     this.delimiter = delimiter;
-    load();
+    this.table = ColumnarTable.read(file, delimiter);
   }
 
   /** Cria uma nova coluna baseada em duas existentes com operação matemática */
   public CsvTransformer calculateNewColumn(
       String colA, String colB, String newColumn, MathOperation operation) {
-
-    Map<String, Integer> index = headerIndex();
+    Map<String, Integer> index = Helpers.headerIndex(table.header());
     Integer idxA = index.get(colA.toUpperCase());
     Integer idxB = index.get(colB.toUpperCase());
 
@@ -31,75 +32,72 @@ public class CsvTransformer {
       throw new IllegalArgumentException("Colunas informadas não existem");
     }
 
-    // Adiciona nova coluna no header
-    rows.set(0, append(rows.get(0), newColumn));
-
-    // Calcula valor para cada linha
-    for (int i = 1; i < rows.size(); i++) {
-      double a = parseNumber(rows.get(i), idxA);
-      double b = parseNumber(rows.get(i), idxB);
-      double result = applyOperation(a, b, operation);
-      rows.set(i, append(rows.get(i), String.format(Locale.US, "%.2f", result)));
+    // Calcula a nova coluna direto dos valores numéricos, sem copiar as linhas
+    ColumnarTable.Column result = ColumnarTable.Column.create(table.rowCount());
+    for (int r = 0; r < table.rowCount(); r++) {
+      double a = table.number(r, idxA, 0.0);
+      double b = table.number(r, idxB, 0.0);
+      result = result.addTwoDecimals(applyOperation(a, b, operation));
     }
 
+    table.addColumn(newColumn, result);
     return this;
   }
 
   /** Adiciona colunas ANO e TRIMESTRE a partir de uma coluna de data (yyyy-MM-dd) */
   public CsvTransformer addYearAndQuarterColumns(String dateColumn) {
-
-    Map<String, Integer> index = headerIndex();
-    Integer dateIdx = index.get(dateColumn.toUpperCase());
+    Integer dateIdx = Helpers.headerIndex(table.header()).get(dateColumn.toUpperCase());
 
     if (dateIdx == null) {
       throw new IllegalArgumentException("Coluna de data não encontrada");
     }
 
-    // Adiciona colunas no header
-    rows.set(0, append(rows.get(0), "\"ANO\"", "\"TRIMESTRE\""));
+    ColumnarTable.Column years = ColumnarTable.Column.create(table.rowCount());
+    ColumnarTable.Column quarters = ColumnarTable.Column.dictionary(table.rowCount());
 
-    for (int i = 1; i < rows.size(); i++) {
-      String raw = rows.get(i)[dateIdx].replace("\"", "").trim();
+    for (int r = 0; r < table.rowCount(); r++) {
+      String raw = Helpers.clean(table.get(r, dateIdx)); // célula ausente vale como vazia
       int year = 0;
       String quarter = "";
 
-      if (raw.matches("\\d{4}-\\d{2}-\\d{2}")) {
+      if (isIsoDate(raw)) {
         int month = Integer.parseInt(raw.substring(5, 7));
         year = Integer.parseInt(raw.substring(0, 4));
         quarter = "Q" + (((month - 1) / 3) + 1);
       }
 
-      rows.set(i, append(rows.get(i), String.valueOf(year), quarter));
+      years = years.add(String.valueOf(year));
+      quarters = quarters.add(quarter);
     }
 
+    table.addColumn("\"ANO\"", years);
+    table.addColumn("\"TRIMESTRE\"", quarters);
     return this;
   }
 
   /** Mantém apenas as colunas informadas */
   public CsvTransformer extractColumns(List<String> columns) {
+    table.selectColumns(columnIndexes(table.header(), columns));
+    return this;
+  }
 
-    Map<String, Integer> index = headerIndex();
-    List<Integer> indexes = new ArrayList<>();
-
-    for (String col : columns) {
-      Integer idx = index.get(col.toUpperCase());
-      if (idx == null) {
-        throw new IllegalArgumentException("Coluna não encontrada: " + col);
-      }
-      indexes.add(idx);
-    }
-
-    // Filtra linhas mantendo apenas as colunas selecionadas
-    List<String[]> newRows = new ArrayList<>();
-    for (String[] row : rows) {
-      String[] filtered = new String[indexes.size()];
-      for (int i = 0; i < indexes.size(); i++) {
-        filtered[i] = row[indexes.get(i)];
-      }
-      newRows.add(filtered);
-    }
-
-    rows = newRows;
+  /**
+   * Ordena as linhas pelas colunas informadas, com o tipo de comparação de cada uma (ver SortKey);
+   * linhas empatadas mantêm a ordem atual. Para arquivos maiores que a memória, o sortBy() do
+   * CsvPipeline ordena o arquivo final com runs no disco.
+   */
+  public CsvTransformer sortBy(SortKey... keys) {
+    Function<String[], String> encoder = SortKey.encoder(table.header(), List.of(keys));
+
+    // Chaves codificadas uma vez por linha, em paralelo; a ordenação é estável
+    int rowCount = table.rowCount();
+    String[] sortKeys = new String[rowCount];
+    IntStream.range(0, rowCount).parallel().forEach(r -> sortKeys[r] = encoder.apply(table.row(r)));
+
+    Integer[] order = new Integer[rowCount];
+    Arrays.setAll(order, r -> r);
+    Arrays.parallelSort(order, Comparator.comparing(r -> sortKeys[r]));
+    table.reorderRows(Arrays.stream(order).mapToInt(Integer::intValue).toArray());
     return this;
   }
 
@@ -116,195 +114,365 @@ public class CsvTransformer {
 
     // Adiciona linhas dos demais arquivos (descartando header)
     for (int i = 1; i < files.size(); i++) {
-      try (BufferedReader reader = Files.newBufferedReader(files.get(i), StandardCharsets.UTF_8)) {
-        reader.readLine(); // descarta header
-        String line;
-        while ((line = reader.readLine()) != null) {
-          transformer.rows.add(line.split(delimiter, -1));
-        }
+      try (CsvTokenizer tokenizer = CsvTokenizer.open(files.get(i), delimiter)) {
+        tokenizer.next(); // descarta header
+        transformer.table.addRows(tokenizer);
       }
     }
 
     return transformer;
   }
 
-  /** Mescla CSV atual com outro CSV usando chaves específicas */
+  /**
+   * Mescla CSV atual com outro CSV usando chaves específicas. Para arquivos maiores que a memória,
+   * ver mergeByKey() de arquivo para arquivo.
+   */
   public CsvTransformer mergeByKey(Path rightFile, String leftKey, String rightKey)
       throws IOException {
 
-    Map<String, String[]> rightIndex = new HashMap<>();
-    List<String> rightHeaders;
-    int rightKeyIndex;
-
-    try (BufferedReader reader = Files.newBufferedReader(rightFile, StandardCharsets.UTF_8)) {
-      String header = reader.readLine();
-      rightHeaders = Arrays.stream(header.split(delimiter, -1)).map(this::clean).toList();
-      rightKeyIndex = rightHeaders.indexOf(rightKey.toUpperCase());
-      if (rightKeyIndex == -1) {
-        throw new IllegalArgumentException("Chave não encontrada no CSV da direita: " + rightKey);
-      }
+    ColumnarTable right = ColumnarTable.read(rightFile, delimiter);
+    List<String> rightHeaders =
+        Arrays.stream(right.header()).map(Helpers::columnName).toList();
+    int rightKeyIndex = rightHeaders.indexOf(rightKey.toUpperCase());
+    if (rightKeyIndex == -1) {
+      throw new IllegalArgumentException("Chave não encontrada no CSV da direita: " + rightKey);
+    }
 
-      String line;
-      while ((line = reader.readLine()) != null) {
-        String[] values = line.split(delimiter, -1);
-        String key = values[rightKeyIndex].replace("\"", "").trim();
-        rightIndex.put(key, values);
-      }
+    // Índice chave -> linha do CSV da direita (a última ocorrência prevalece)
+    JoinIndex rightIndex = new JoinIndex(right.rowCount());
+    for (int r = 0; r < right.rowCount(); r++) {
+      rightIndex.put(right.get(r, rightKeyIndex), r);
     }
 
-    List<String> leftHeaders = Arrays.stream(rows.get(0)).map(this::clean).toList();
-    int leftKeyIndex = leftHeaders.indexOf(leftKey.toUpperCase());
+    String[] leftHeaders =
+        Arrays.stream(table.header()).map(Helpers::columnName).toArray(String[]::new);
+    int leftKeyIndex = Arrays.asList(leftHeaders).indexOf(leftKey.toUpperCase());
     if (leftKeyIndex == -1) {
       throw new IllegalArgumentException("Chave não encontrada no CSV da esquerda: " + leftKey);
     }
 
-    List<String[]> mergedRows = new ArrayList<>();
-    List<String> finalHeader = new ArrayList<>(leftHeaders);
-    finalHeader.addAll(rightHeaders);
-    finalHeader.add("OBSERVACAO"); // coluna extra para observações
-    mergedRows.add(finalHeader.toArray(String[]::new));
-
-    for (int i = 1; i < rows.size(); i++) {
-      String[] leftValues = rows.get(i);
-      String key = leftValues[leftKeyIndex].replace("\"", "").trim();
-
-      String[] rightValues = rightIndex.get(key);
-      List<String> merged = new ArrayList<>(Arrays.asList(leftValues));
-
-      if (rightValues != null) {
-        merged.addAll(Arrays.asList(rightValues));
-        merged.add(""); // observação vazia
-      } else {
-        merged.addAll(Collections.nCopies(rightHeaders.size(), ""));
-        merged.add("DADOS_NAO_ENCONTRADOS");
-      }
-
-      mergedRows.add(merged.toArray(String[]::new));
+    // Busca as chaves da esquerda em paralelo, por faixas de linhas (o índice só é lido)
+    int rowCount = table.rowCount();
+    int[] matches = new int[rowCount];
+    IntStream.range(0, rowCount)
+        .parallel()
+        .forEach(r -> matches[r] = rightIndex.get(table, r, leftKeyIndex));
+
+    table.renameColumns(leftHeaders);
+
+    // Colunas da direita (vazias quando a chave não existe ou a linha da direita é curta),
+    // montadas em paralelo e adicionadas na ordem do header
+    List<ColumnarTable.Column> rightColumns =
+        IntStream.range(0, rightHeaders.size())
+            .parallel()
+            .mapToObj(
+                j -> {
+                  ColumnarTable.Column column = ColumnarTable.Column.create(rowCount);
+                  for (int r = 0; r < rowCount; r++) {
+                    String value =
+                        matches[r] == JoinIndex.NOT_FOUND ? null : right.get(matches[r], j);
+                    column = column.add(value == null ? "" : value);
+                  }
+                  return column;
+                })
+            .toList();
+    for (int j = 0; j < rightHeaders.size(); j++) {
+      table.addColumn(rightHeaders.get(j), rightColumns.get(j));
     }
 
-    this.rows = mergedRows;
+    // Coluna extra para observações
+    ColumnarTable.Column observations = ColumnarTable.Column.dictionary(rowCount);
+    for (int r = 0; r < rowCount; r++) {
+      observations =
+          observations.add(matches[r] == JoinIndex.NOT_FOUND ? "DADOS_NAO_ENCONTRADOS" : "");
+    }
+    table.addColumn("OBSERVACAO", observations);
     return this;
   }
 
+  /**
+   * mergeByKey() com memória limitada, de arquivo para arquivo: grava em outputFile o mesmo
+   * resultado de mergeByKey() seguido de save(), sem carregar no heap nenhum dos lados nem o
+   * resultado. Os dois lados são ordenados pela chave pelo ExternalMergeJoin, que só grava runs no
+   * disco (ao lado de outputFile) quando as linhas passam de memoryBudget bytes estimados.
+   */
+  public static void mergeByKey(
+      Path leftFile,
+      Path rightFile,
+      String delimiter,
+      String leftKey,
+      String rightKey,
+      long memoryBudget,
+      Path outputFile)
+      throws IOException {
+    Path dir = outputFile.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    new ExternalMergeJoin(delimiter, memoryBudget, dir)
+        .join(leftFile, rightFile, leftKey, rightKey, outputFile);
+  }
+
   /** Salva CSV transformado no caminho informado */
   public void save(Path outputFile) throws IOException {
-    Files.createDirectories(outputFile.getParent());
-    try (BufferedWriter writer =
-        Files.newBufferedWriter(
-            outputFile,
-            StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING)) {
-
-      for (String[] row : rows) {
-        writer.write(String.join(delimiter, row));
-        writer.newLine();
-      }
+    try (CsvWriter writer = CsvWriter.toFile(outputFile, delimiter)) {
+      writeRows(writer, CsvWriter.Quoting.NONE);
     }
     this.file = outputFile;
   }
 
-  private String formatCsvField(String field) {
-    if (field == null) return "";
-
-    field = field.trim();
+  /**
+   * Salva o CSV formatado corretamente em diretório /output: textos, e campos com delimitador,
+   * aspas ou quebra de linha, entre aspas (ver CsvWriter.Quoting.NON_NUMERIC_OR_SPECIAL)
+   */
+  public void saveFormatted(String fileName) throws IOException {
+    saveFormatted(Path.of("output").resolve(fileName));
+  }
 
-    // Se já estiver entre aspas, assume formatado
-    if (field.startsWith("\"") && field.endsWith("\"")) {
-      return field;
+  /** Salva o CSV formatado, como saveFormatted(String), no caminho informado */
+  public void saveFormatted(Path outputFile) throws IOException {
+    try (CsvWriter writer = CsvWriter.toFile(outputFile, delimiter)) {
+      writeRows(writer, CsvWriter.Quoting.NON_NUMERIC_OR_SPECIAL);
     }
 
-    boolean containsDelimiter = field.contains(delimiter);
-    boolean containsQuote = field.contains("\"");
-    boolean containsLineBreak = field.contains("\n") || field.contains("\r");
+    System.out.println("CSV salvo em: " + outputFile.toAbsolutePath());
+  }
 
-    boolean isNumber;
-    try {
-      Double.parseDouble(field.replace(",", "."));
-      isNumber = true;
-    } catch (NumberFormatException e) {
-      isNumber = false;
-    }
+  /**
+   * Grava header e linhas aplicando a formatação em cada campo. Posições vazias no fim da linha
+   * (linhas mais curtas que o header no arquivo original) não são gravadas.
+   */
+  private void writeRows(CsvWriter writer, CsvWriter.Quoting quoting) throws IOException {
+    if (table.width() == 0) return;
 
-    if (!isNumber || containsDelimiter || containsQuote || containsLineBreak) {
-      String escaped = field.replace("\"", "\"\"");
-      return "\"" + escaped + "\"";
+    writeRow(writer, table.header(), quoting);
+    for (int r = 0; r < table.rowCount(); r++) {
+      writeRow(writer, table.row(r), quoting);
     }
+  }
 
-    return field;
+  private static void writeRow(CsvWriter writer, String[] row, CsvWriter.Quoting quoting)
+      throws IOException {
+    int end = row.length;
+    while (end > 0 && row[end - 1] == null) end--;
+    writer.writeRow(row, end, quoting);
   }
 
-  /**
-   * Salva o CSV formatado corretamente em diretório /output
-   */
-  public void saveFormatted(String fileName) throws IOException {
+  // Etapas das operações, compartilhadas com o CsvPipeline
 
-    Path outputDir = Path.of("output");
-    Files.createDirectories(outputDir);
+  static RowStep calculateNewColumnStep(
+      String colA, String colB, String newColumn, MathOperation operation) {
+    return header -> {
+      Map<String, Integer> index = Helpers.headerIndex(header);
+      Integer idxA = index.get(colA.toUpperCase());
+      Integer idxB = index.get(colB.toUpperCase());
 
-    Path outputFile = outputDir.resolve(fileName);
+      if (idxA == null || idxB == null) {
+        throw new IllegalArgumentException("Colunas informadas não existem");
+      }
 
-    try (BufferedWriter writer =
-                 Files.newBufferedWriter(
-                         outputFile,
-                         StandardCharsets.UTF_8,
-                         StandardOpenOption.CREATE,
-                         StandardOpenOption.TRUNCATE_EXISTING)) {
+      // Adiciona nova coluna no header
+      String[] newHeader = append(header, newColumn);
+      int target = header.length;
+
+      // Calcula valor para cada linha
+      return new RowStep.Bound(
+          newHeader,
+          row -> {
+            double a = parseNumber(row, idxA);
+            double b = parseNumber(row, idxB);
+            double result = applyOperation(a, b, operation);
+            row = RowStep.ensureWidth(row, newHeader.length);
+            row[target] = String.format(Locale.US, "%.2f", result);
+            return row;
+          });
+    };
+  }
 
-      for (String[] row : rows) {
-        String line =
-                Arrays.stream(row)
-                        .map(this::formatCsvField)
-                        .reduce((a, b) -> a + delimiter + b)
-                        .orElse("");
+  static RowStep addYearAndQuarterColumnsStep(String dateColumn) {
+    return header -> {
+      Integer dateIdx = Helpers.headerIndex(header).get(dateColumn.toUpperCase());
 
-        writer.write(line);
-        writer.newLine();
+      if (dateIdx == null) {
+        throw new IllegalArgumentException("Coluna de data não encontrada");
       }
-    }
 
-    System.out.println("CSV salvo em: " + outputFile.toAbsolutePath());
+      // Adiciona colunas no header
+      String[] newHeader = append(header, "\"ANO\"", "\"TRIMESTRE\"");
+      int target = header.length;
+
+      return new RowStep.Bound(
+          newHeader,
+          row -> {
+            String raw = Helpers.clean(dateIdx < row.length ? row[dateIdx] : null);
+            int year = 0;
+            String quarter = "";
+
+            if (isIsoDate(raw)) {
+              int month = Integer.parseInt(raw.substring(5, 7));
+              year = Integer.parseInt(raw.substring(0, 4));
+              quarter = "Q" + (((month - 1) / 3) + 1);
+            }
+
+            row = RowStep.ensureWidth(row, newHeader.length);
+            row[target] = String.valueOf(year);
+            row[target + 1] = quarter;
+            return row;
+          });
+    };
+  }
+
+  static RowStep extractColumnsStep(List<String> columns) {
+    return header -> {
+      int[] indexes = columnIndexes(header, columns);
+
+      // Filtra linhas mantendo apenas as colunas selecionadas
+      UnaryOperator<String[]> extract =
+          row -> {
+            String[] filtered = new String[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+              filtered[i] = row[indexes[i]];
+            }
+            return filtered;
+          };
+
+      return new RowStep.Bound(extract.apply(header), extract);
+    };
   }
 
+  /** Carrega o CSV da direita em um índice por chave; o header da esquerda é ligado depois */
+  static RowStep mergeByKeyStep(Path rightFile, String delimiter, String leftKey, String rightKey)
+      throws IOException {
 
-  /** Carrega CSV na memória */
-  private void load() throws IOException {
-    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        rows.add(line.split(delimiter, -1));
+    List<String[]> rightRows = new ArrayList<>();
+    JoinIndex rightIndex;
+    List<String> rightHeaders;
+    int rightKeyIndex;
+
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(rightFile, delimiter)) {
+      tokenizer.next();
+      rightHeaders = Arrays.stream(tokenizer.toArray()).map(Helpers::columnName).toList();
+      rightKeyIndex = rightHeaders.indexOf(rightKey.toUpperCase());
+      if (rightKeyIndex == -1) {
+        throw new IllegalArgumentException("Chave não encontrada no CSV da direita: " + rightKey);
+      }
+
+      while (tokenizer.next()) {
+        rightRows.add(tokenizer.toArray());
+      }
+
+      // Índice chave -> linha (a última ocorrência prevalece)
+      rightIndex = new JoinIndex(rightRows.size());
+      for (int r = 0; r < rightRows.size(); r++) {
+        String[] values = rightRows.get(r);
+        rightIndex.put(rightKeyIndex < values.length ? values[rightKeyIndex] : null, r);
       }
     }
+    String[][] rightValuesByRow = rightRows.toArray(String[][]::new);
+
+    return mergeStep(
+        rightHeaders,
+        leftKey,
+        key -> {
+          int match = rightIndex.get(key);
+          return match == JoinIndex.NOT_FOUND ? null : rightValuesByRow[match];
+        });
   }
 
-  /** Cria mapa de índice de colunas (nome da coluna -> posição) */
-  private Map<String, Integer> headerIndex() {
-    Map<String, Integer> map = new HashMap<>();
-    String[] header = rows.get(0);
-    for (int i = 0; i < header.length; i++) {
-      map.put(header[i].replace("\"", "").trim().toUpperCase(), i);
+  /** Mescla com um CSV de cadastro já indexado em disco, sem reler o arquivo */
+  static RowStep mergeByKeyStep(RegistryIndex registry, String leftKey, String rightKey) {
+    List<String> rightHeaders =
+        Arrays.stream(registry.header()).map(Helpers::columnName).toList();
+    if (!registry.isIndexed(rightKey)) {
+      throw new IllegalArgumentException("Coluna não indexada no cadastro: " + rightKey);
     }
-    return map;
+
+    return mergeStep(
+        rightHeaders,
+        leftKey,
+        key -> {
+          int match = registry.find(rightKey, key);
+          return match == RegistryIndex.NOT_FOUND ? null : registry.values(match);
+        });
+  }
+
+  /** Liga a mescla ao header da esquerda; lookup retorna a linha da direita da chave, ou null */
+  private static RowStep mergeStep(
+      List<String> rightHeaders, String leftKey, Function<String, String[]> lookup) {
+    return header -> {
+      List<String> leftHeaders = Arrays.stream(header).map(Helpers::columnName).toList();
+      int leftKeyIndex = leftHeaders.indexOf(leftKey.toUpperCase());
+      if (leftKeyIndex == -1) {
+        throw new IllegalArgumentException("Chave não encontrada no CSV da esquerda: " + leftKey);
+      }
+
+      List<String> finalHeader = new ArrayList<>(leftHeaders);
+      finalHeader.addAll(rightHeaders);
+      finalHeader.add("OBSERVACAO"); // coluna extra para observações
+
+      int leftWidth = leftHeaders.size();
+      int rightWidth = rightHeaders.size();
+      int width = finalHeader.size();
+
+      return new RowStep.Bound(
+          finalHeader.toArray(String[]::new),
+          row -> {
+            // Dentro de uma cadeia compilada a linha já chega com a largura final
+            row = RowStep.ensureWidth(row, width);
+            String[] rightValues = lookup.apply(row[leftKeyIndex]);
+
+            if (rightValues != null) {
+              int copied = Math.min(rightValues.length, rightWidth);
+              System.arraycopy(rightValues, 0, row, leftWidth, copied);
+              Arrays.fill(row, leftWidth + copied, width - 1, "");
+              row[width - 1] = ""; // observação vazia
+            } else {
+              Arrays.fill(row, leftWidth, width - 1, "");
+              row[width - 1] = "DADOS_NAO_ENCONTRADOS";
+            }
+            return row;
+          });
+    };
+  }
+
+  /** Posições das colunas informadas, na ordem informada */
+  private static int[] columnIndexes(String[] header, List<String> columns) {
+    Map<String, Integer> index = Helpers.headerIndex(header);
+    int[] indexes = new int[columns.size()];
+
+    for (int i = 0; i < columns.size(); i++) {
+      Integer idx = index.get(columns.get(i).toUpperCase());
+      if (idx == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + columns.get(i));
+      }
+      indexes[i] = idx;
+    }
+    return indexes;
   }
 
   /** Adiciona colunas no final da linha */
-  private String[] append(String[] row, String... values) {
+  private static String[] append(String[] row, String... values) {
     String[] out = Arrays.copyOf(row, row.length + values.length);
     System.arraycopy(values, 0, out, row.length, values.length);
     return out;
   }
 
   /** Converte valor de célula para número */
-  private double parseNumber(String[] row, int idx) {
-    try {
-      return Double.parseDouble(row[idx].replace("\"", "").replace(",", ".").trim());
-    } catch (Exception e) {
-      return 0.0;
+  private static double parseNumber(String[] row, int idx) {
+    if (idx >= row.length) return 0.0;
+    return NumericText.parseDouble(row[idx], true, 0.0);
+  }
+
+  /** Equivale a value.matches("\\d{4}-\\d{2}-\\d{2}"), sem compilar a regex a cada linha */
+  private static boolean isIsoDate(String value) {
+    if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') return false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (i != 4 && i != 7 && (c < '0' || c > '9')) return false;
     }
+    return true;
   }
 
   /** Aplica operação matemática */
-  private double applyOperation(double a, double b, MathOperation op) {
+  private static double applyOperation(double a, double b, MathOperation op) {
     return switch (op) {
       case ADD -> a + b;
       case SUBTRACT -> a - b;
@@ -312,9 +480,4 @@ public class CsvTransformer {
       case DIVIDE -> b == 0 ? 0.0 : a / b;
     };
   }
-
-  /** Limpa valor removendo aspas, trim e converte para uppercase */
-  private String clean(String value) {
-    return value == null ? "" : value.replace("\"", "").trim().toUpperCase();
-  }
 }
@@ -1,18 +1,25 @@
 package com.support;
 
 import com.support.enums.ComparisonOperators;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+/**
+ * Validações sobre um CSV em memória. Cada operação declara uma regra; as regras pendentes são
+ * compiladas em uma única passada por linha (RowStep.compile), executada em paralelo por faixas de
+ * linhas quando o resultado é gravado. A saída é a mesma de aplicar as operações uma a uma.
+ */
 public class CsvValidator {
 
   private final Path file;
   private final String delimiter;
   private List<String[]> rows = new ArrayList<>();
+  private final List<RowStep> pending = new ArrayList<>(); // regras ainda não aplicadas
+  private String[] pendingHeader; // header resultante das regras pendentes
+  private int parallelism = Runtime.getRuntime().availableProcessors();
 
   public CsvValidator(Path file, String delimiter) throws IOException {
     this.file = file;
@@ -22,233 +29,62 @@ public class CsvValidator {
 
   /** Valida uma coluna por regex e cria coluna <COLUNA>_VALIDO */
   public CsvValidator validateByRegex(String column, String regex) {
-
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
-
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
-    }
-
-    String newColumn = column.toUpperCase() + "_VALIDO";
-
-    // adiciona header
-    rows.set(0, append(rows.get(0), "\"" + newColumn + "\""));
-
-    Pattern pattern = Pattern.compile(regex);
-
-    for (int i = 1; i < rows.size(); i++) {
-      String raw = clean(rows.get(i)[colIndex]);
-      boolean valid = pattern.matcher(raw).matches();
-      rows.set(i, append(rows.get(i), valid ? "true" : "false"));
-    }
-
-    return this;
+    return apply(validateByRegexStep(column, regex));
   }
 
   /** Remove linhas onde o valor da coluna especificada é igual ao valor fornecido */
   public CsvValidator removeRowsByValue(String column, String valueToRemove) {
-
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
-
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
-    }
-
-    List<String[]> filtered = new ArrayList<>();
-    filtered.add(rows.get(0)); // mantém o header
-
-    for (int i = 1; i < rows.size(); i++) {
-      String cell = clean(rows.get(i)[colIndex]);
-      if (!cell.equals(valueToRemove)) {
-        filtered.add(rows.get(i));
-      }
-    }
-
-    rows = filtered;
-    return this;
+    return apply(removeRowsByValueStep(column, valueToRemove));
   }
 
-    /** Remove linhas com base em uma operação numérica */
+  /** Remove linhas com base em uma operação numérica */
   public CsvValidator filterRowsByNumericValue(
       String column, double value, ComparisonOperators op) {
-
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
-
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
-    }
-
-    List<String[]> filtered = new ArrayList<>();
-    filtered.add(rows.get(0)); // mantém o header
-
-    for (int i = 1; i < rows.size(); i++) {
-      String cellStr = clean(rows.get(i)[colIndex]);
-      boolean keep = true; // por padrão mantém
-
-      try {
-        double cellValue = Double.parseDouble(cellStr);
-
-        switch (op) {
-          case EQ -> keep = cellValue != value; // remove se for igual
-          case NE -> keep = cellValue == value; // remove se for diferente
-          case LT -> keep = !(cellValue < value);
-          case LE -> keep = !(cellValue <= value);
-          case GT -> keep = !(cellValue > value);
-          case GE -> keep = !(cellValue >= value);
-        }
-
-      } catch (NumberFormatException e) {
-        // se não for número, mantém
-      }
-
-      if (keep) {
-        filtered.add(rows.get(i));
-      }
-    }
-
-    rows = filtered;
-    return this;
+    return apply(filterRowsByNumericValueStep(column, value, op));
   }
 
   /** Remove linhas onde <COLUNA>_VALIDO == false */
   public CsvValidator removeInvalidRows(String column) {
-
-    String validationColumn = column.toUpperCase() + "_VALIDO";
-
-    Map<String, Integer> index = headerIndex();
-    Integer idx = index.get(validationColumn);
-
-    if (idx == null) {
-      throw new IllegalArgumentException("Coluna de validação não encontrada: " + validationColumn);
-    }
-
-    List<String[]> filtered = new ArrayList<>();
-    filtered.add(rows.get(0)); // header
-
-    for (int i = 1; i < rows.size(); i++) {
-      if ("true".equalsIgnoreCase(clean(rows.get(i)[idx]))) {
-        filtered.add(rows.get(i));
-      }
-    }
-
-    rows = filtered;
-    return this;
+    return apply(removeInvalidRowsStep(column));
   }
 
   /** Valida a coluna de CNPJs e cria coluna <COLUNA>_VALIDO */
   public CsvValidator validateCnpj(String column) {
+    return apply(validateCnpjStep(column));
+  }
 
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
-
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
-    }
-
-    String newColumn = column.toUpperCase() + "_VALIDO";
-
-    // adiciona header
-    rows.set(0, append(rows.get(0), "\"" + newColumn + "\""));
-
-    for (int i = 1; i < rows.size(); i++) {
-      String raw = clean(rows.get(i)[colIndex]);
-      boolean valid = isCnpjValido(raw);
-      rows.set(i, append(rows.get(i), valid ? "true" : "false"));
+  /** Define quantas threads aplicam as regras (padrão: processadores disponíveis) */
+  public CsvValidator parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
     }
-
+    this.parallelism = parallelism;
     return this;
   }
 
-  /** Função estática para validar CNPJs */
+  /** Função estática para validar CNPJs (ignora caracteres não numéricos) */
   public static boolean isCnpjValido(String cnpj) {
-    if (cnpj == null) return false;
-
-    // Remove caracteres não numéricos
-    cnpj = cnpj.replaceAll("[^0-9]", "");
-
-    // Verificações iniciais
-    if (cnpj.length() != 14) return false;
-    if (cnpj.matches("(\\d)\\1{13}")) return false;
-
-    try {
-      int sm, r, num, peso;
-      char dig13, dig14;
-
-      // 1º Dígito Verificador
-      sm = 0;
-      peso = 2;
-      for (int i = 11; i >= 0; i--) {
-        num = cnpj.charAt(i) - '0';
-        sm += num * peso;
-        peso++;
-        if (peso == 10) peso = 2;
-      }
-      r = sm % 11;
-      dig13 = (r < 2) ? '0' : (char) ((11 - r) + '0');
-
-      // 2º Dígito Verificador
-      sm = 0;
-      peso = 2;
-      for (int i = 12; i >= 0; i--) {
-        num = cnpj.charAt(i) - '0';
-        sm += num * peso;
-        peso++;
-        if (peso == 10) peso = 2;
-      }
-      r = sm % 11;
-      dig14 = (r < 2) ? '0' : (char) ((11 - r) + '0');
-
-      return dig13 == cnpj.charAt(12) && dig14 == cnpj.charAt(13);
-
-    } catch (Exception e) {
-      return false;
-    }
+    return CnpjValidator.checkDigits(cnpj);
   }
 
   public void save(Path output) throws IOException {
-
-    Files.createDirectories(output.getParent());
-
-    try (BufferedWriter writer =
-        Files.newBufferedWriter(
-            output,
-            StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING)) {
-
-      for (String[] row : rows) {
-        writer.write(String.join(delimiter, row));
-        writer.newLine();
+    try (CsvWriter writer = CsvWriter.toFile(output, delimiter)) {
+      for (String[] row : rows()) {
+        writer.writeRow(row);
       }
     }
   }
 
   private void load() throws IOException {
     rows.clear();
-    rows.addAll(
-        Files.readAllLines(file, StandardCharsets.UTF_8).stream()
-            .map(line -> line.split(delimiter, -1))
-            .toList());
-  }
-
-  private Map<String, Integer> headerIndex() {
-    Map<String, Integer> map = new HashMap<>();
-    String[] header = rows.get(0);
-
-    for (int i = 0; i < header.length; i++) {
-      map.put(clean(header[i]).toUpperCase(), i);
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file, delimiter)) {
+      while (tokenizer.next()) {
+        rows.add(tokenizer.toArray());
+      }
     }
-    return map;
-  }
-
-  private String clean(String value) {
-    return value == null ? "" : value.replace("\"", "").trim();
   }
 
-  private String[] append(String[] original, String... values) {
+  private static String[] append(String[] original, String... values) {
     String[] result = Arrays.copyOf(original, original.length + values.length);
     System.arraycopy(values, 0, result, original.length, values.length);
     return result;
@@ -258,7 +94,7 @@ public class CsvValidator {
    * Formata um campo para CSV: - Se contiver vírgula, aspas ou quebra de linha, envolve em aspas
    * duplas - Aspas internas são duplicadas
    */
-  private String formatCsvField(String field) {
+  private static String formatCsvField(String field) {
     if (field == null) return "";
 
     field = field.trim();
@@ -270,14 +106,8 @@ public class CsvValidator {
 
     boolean containsComma = field.contains(",");
 
-    // Tenta detectar se é número
-    boolean isNumber;
-    try {
-      Double.parseDouble(field.replace(",", ".")); // aceita vírgula decimal
-      isNumber = true;
-    } catch (NumberFormatException e) {
-      isNumber = false;
-    }
+    // Detecta se é número (aceita vírgula decimal)
+    boolean isNumber = NumericText.isDouble(field, true);
 
     // Se não for número ou contiver vírgula, adiciona aspas
     if (!isNumber || containsComma) {
@@ -289,29 +119,16 @@ public class CsvValidator {
   }
 
   public void saveFormatted(String fileName) throws IOException {
-    // Cria diretório "output" na raiz do projeto
-    Path outputDir = Path.of("output");
-    Files.createDirectories(outputDir);
-
-    // Cria o caminho completo para o arquivo
-    Path outputFile = outputDir.resolve(fileName);
-
-    try (BufferedWriter writer =
-        Files.newBufferedWriter(
-            outputFile,
-            StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING)) {
-
-      for (String[] row : rows) {
-        // Aplica formatação em cada campo
-        String line =
-            Arrays.stream(row)
-                .map(this::formatCsvField)
-                .reduce((a, b) -> a + delimiter + b)
-                .orElse("");
-        writer.write(line);
-        writer.newLine();
+    // Cria o caminho no diretório "output" na raiz do projeto
+    saveFormatted(Path.of("output").resolve(fileName));
+  }
+
+  /** Salva o CSV formatado, como saveFormatted(String), no caminho informado */
+  public void saveFormatted(Path outputFile) throws IOException {
+    // Aplica a formatação do formatCsvField() em cada campo durante a gravação
+    try (CsvWriter writer = CsvWriter.toFile(outputFile, delimiter)) {
+      for (String[] row : rows()) {
+        writer.writeRow(row, row.length, CsvWriter.Quoting.NON_NUMERIC);
       }
     }
 
@@ -320,61 +137,188 @@ public class CsvValidator {
 
   /** Valida se um campo obrigatório está vazio. Marca observação e cria coluna <COLUNA>_VALIDO */
   public CsvValidator validateRequiredField(String column) {
+    return apply(validateRequiredFieldStep(column));
+  }
 
-    Map<String, Integer> index = headerIndex();
-    Integer colIndex = index.get(column.toUpperCase());
+  /** Declara a regra; o header é ligado já aqui para que colunas inexistentes falhem na chamada */
+  private CsvValidator apply(RowStep step) {
+    String[] header = pending.isEmpty() ? rows.get(0) : pendingHeader;
+    pendingHeader = step.bind(header).header();
+    pending.add(step);
+    return this;
+  }
 
-    if (colIndex == null) {
-      throw new IllegalArgumentException("Coluna não encontrada: " + column);
+  /** Linhas com as regras pendentes aplicadas em uma única passada */
+  private List<String[]> rows() {
+    if (!pending.isEmpty()) {
+      rows = RowStep.runParallel(rows, RowStep.compile(rows.get(0), pending), parallelism);
+      pending.clear();
     }
+    return rows;
+  }
 
-    String validColumn = column.toUpperCase() + "_VALIDO";
-    String obsColumn = "OBSERVACAO";
+  // Etapas das operações, compartilhadas com o CsvPipeline
 
-    // === HEADER ===
-    List<String> header = new ArrayList<>(List.of(rows.get(0)));
+  static RowStep validateByRegexStep(String column, String regex) {
+    Pattern pattern = Pattern.compile(regex);
+    return appendValidationStep(column, raw -> pattern.matcher(Helpers.clean(raw)).matches());
+  }
 
-    if (!header.contains(validColumn)) {
-      header.add("\"" + validColumn + "\"");
-    }
+  /** Valida a célula sem limpá-la (aspas e espaços já são ignorados), com cache por etapa */
+  static RowStep validateCnpjStep(String column) {
+    CnpjValidator validator = new CnpjValidator(CnpjValidator.DEFAULT_CACHE_SIZE);
+    return appendValidationStep(column, validator::isValid);
+  }
 
-    if (!header.contains(obsColumn)) {
-      header.add("\"" + obsColumn + "\"");
-    }
+  /** Cria a coluna <COLUNA>_VALIDO com o resultado da validação da célula de cada linha */
+  private static RowStep appendValidationStep(String column, Predicate<String> validation) {
+    return header -> {
+      Integer colIndex = Helpers.headerIndex(header).get(column.toUpperCase());
+
+      if (colIndex == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + column);
+      }
+
+      String newColumn = column.toUpperCase() + "_VALIDO";
+
+      // adiciona header
+      String[] newHeader = append(header, "\"" + newColumn + "\"");
+      int target = header.length;
+
+      return new RowStep.Bound(
+          newHeader,
+          row -> {
+            boolean valid = validation.test(row[colIndex]);
+            row = RowStep.ensureWidth(row, newHeader.length);
+            row[target] = valid ? "true" : "false";
+            return row;
+          });
+    };
+  }
 
-    rows.set(0, header.toArray(new String[0]));
+  static RowStep removeRowsByValueStep(String column, String valueToRemove) {
+    return filterStep(column, cell -> !cell.equals(valueToRemove));
+  }
 
-    // Atualiza índices após alterar header
-    index = headerIndex();
-    int validIdx = index.get(validColumn);
-    int obsIdx = index.get(obsColumn);
+  static RowStep filterRowsByNumericValueStep(
+      String column, double value, ComparisonOperators op) {
+    return filterStep(
+        column,
+        cellStr -> {
+          double cellValue = NumericText.parseDouble(cellStr, false, Double.NaN);
+          if (Double.isNaN(cellValue) && !NumericText.isDouble(cellStr, false)) {
+            return true; // se não for número, mantém
+          }
+
+          return switch (op) {
+            case EQ -> cellValue != value; // remove se for igual
+            case NE -> cellValue == value; // remove se for diferente
+            case LT -> !(cellValue < value);
+            case LE -> !(cellValue <= value);
+            case GT -> !(cellValue > value);
+            case GE -> !(cellValue >= value);
+          };
+        });
+  }
 
-    // === LINHAS ===
-    for (int i = 1; i < rows.size(); i++) {
+  static RowStep removeInvalidRowsStep(String column) {
+    String validationColumn = column.toUpperCase() + "_VALIDO";
 
-      String[] row = rows.get(i);
-      String value = clean(row[colIndex]);
+    return header -> {
+      Integer idx = Helpers.headerIndex(header).get(validationColumn);
 
-      boolean isValid = !value.isEmpty();
+      if (idx == null) {
+        throw new IllegalArgumentException(
+            "Coluna de validação não encontrada: " + validationColumn);
+      }
 
-      row = ensureSize(row, rows.get(0).length);
+      return new RowStep.Bound(
+          header, row -> "true".equalsIgnoreCase(Helpers.clean(row[idx])) ? row : null);
+    };
+  }
 
-      row[validIdx] = isValid ? "true" : "false";
+  /** Mantém apenas as linhas cujo valor (limpo) da coluna atende ao predicado */
+  private static RowStep filterStep(String column, Predicate<String> keep) {
+    return header -> {
+      Integer colIndex = Helpers.headerIndex(header).get(column.toUpperCase());
 
-      if (!isValid) {
-        String obs = clean(row[obsIdx]);
-        String msg = "Campo " + column + " não preenchido";
-        row[obsIdx] = obs.isEmpty() ? msg : obs + " | " + msg;
+      if (colIndex == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + column);
       }
 
-      rows.set(i, row);
-    }
+      return new RowStep.Bound(header, row -> keep.test(Helpers.clean(row[colIndex])) ? row : null);
+    };
+  }
 
-    return this;
+  static RowStep validateRequiredFieldStep(String column) {
+    return header -> {
+      Map<String, Integer> index = Helpers.headerIndex(header);
+      Integer colIndex = index.get(column.toUpperCase());
+
+      if (colIndex == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + column);
+      }
+
+      String validColumn = column.toUpperCase() + "_VALIDO";
+      String obsColumn = "OBSERVACAO";
+
+      // === HEADER ===
+      List<String> newHeader = new ArrayList<>(List.of(header));
+
+      if (!newHeader.contains(validColumn)) {
+        newHeader.add("\"" + validColumn + "\"");
+      }
+
+      if (!newHeader.contains(obsColumn)) {
+        newHeader.add("\"" + obsColumn + "\"");
+      }
+
+      String[] finalHeader = newHeader.toArray(new String[0]);
+
+      // Atualiza índices após alterar header
+      index = Helpers.headerIndex(finalHeader);
+      int validIdx = index.get(validColumn);
+      int obsIdx = index.get(obsColumn);
+      String msg = "Campo " + column + " não preenchido";
+
+      // === LINHAS ===
+      return new RowStep.Bound(
+          finalHeader,
+          row -> {
+            String value = Helpers.clean(row[colIndex]);
+
+            boolean isValid = !value.isEmpty();
+
+            row = RowStep.ensureWidth(row, finalHeader.length);
+
+            row[validIdx] = isValid ? "true" : "false";
+
+            if (!isValid) {
+              String obs = Helpers.clean(row[obsIdx]);
+              row[obsIdx] = obs.isEmpty() ? msg : obs + " | " + msg;
+            }
+
+            return row;
+          });
+    };
   }
 
-  private String[] ensureSize(String[] row, int size) {
-    if (row.length >= size) return row;
-    return Arrays.copyOf(row, size);
+  /** Formatação aplicada pelo saveFormatted(): equivale a salvar formatado e reler o arquivo */
+  static RowStep formatFieldsStep() {
+    return header -> {
+      String[] formattedHeader = new String[header.length];
+      for (int i = 0; i < header.length; i++) {
+        formattedHeader[i] = formatCsvField(header[i]);
+      }
+
+      return new RowStep.Bound(
+          formattedHeader,
+          row -> {
+            for (int i = 0; i < row.length; i++) {
+              row[i] = formatCsvField(row[i]);
+            }
+            return row;
+          });
+    };
   }
 }
@@ -0,0 +1,337 @@
+package com.support;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Gravação de linhas CSV em UTF-8 direto em um buffer de bytes reaproveitado, sem montar Strings
+ * intermediárias por campo ou por linha. A decisão de colocar aspas é tomada em uma varredura do
+ * campo (ver Quoting) e os bytes vão para um Sink: arquivo, arquivo gzip ou entrada de um ZIP.
+ * Texto com surrogate sem par gera MalformedInputException, como nos writers do JDK.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_CHARS_PER_CHUNK = BUFFER_SIZE / 4;
+  private static final byte[] LINE_SEPARATOR =
+      System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+  /** Destino dos bytes gravados */
+  @FunctionalInterface
+  public interface Sink extends Closeable {
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    default void flush() throws IOException {}
+
+    @Override
+    default void close() throws IOException {}
+  }
+
+  /**
+   * Regras de aspas aplicadas a cada campo. null é gravado como campo vazio, exceto nas regras
+   * CLEANED, em que vale como texto vazio (e portanto recebe aspas), como no CsvNormalizer
+   */
+  public enum Quoting {
+    /** Campo gravado como está */
+    NONE,
+    /**
+     * Regra do saveFormatted() do CsvValidator: campo sem espaços nas pontas, mantido se já estiver
+     * entre aspas, e entre aspas (com aspas internas duplicadas) se não for número ou tiver vírgula
+     */
+    NON_NUMERIC,
+    /**
+     * Regra do saveFormatted() do CsvTransformer: como NON_NUMERIC, mas as aspas são exigidas por
+     * delimitador, aspas ou quebra de linha no campo em vez da vírgula
+     */
+    NON_NUMERIC_OR_SPECIAL,
+    /** Regra do CsvNormalizer para dados: sem aspas e espaços, entre aspas se não for decimal */
+    CLEANED,
+    /** Regra do CsvNormalizer para o header: sem aspas e espaços, sempre entre aspas */
+    CLEANED_ALWAYS_QUOTED
+  }
+
+  private final Sink sink;
+  private final String delimiter;
+  private final byte[] delimiterBytes;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int count;
+
+  public CsvWriter(Sink sink, String delimiter) {
+    this.sink = sink;
+    this.delimiter = delimiter;
+    this.delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Grava no arquivo (substituindo o conteúdo), criando os diretórios necessários */
+  public static CsvWriter toFile(Path file, String delimiter) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+
+    return new CsvWriter(
+        new Sink() {
+          @Override
+          public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer source = ByteBuffer.wrap(bytes, offset, length);
+            while (source.hasRemaining()) {
+              channel.write(source);
+            }
+          }
+
+          @Override
+          public void close() throws IOException {
+            channel.close();
+          }
+        },
+        delimiter);
+  }
+
+  /** Grava no arquivo compactado com gzip */
+  public static CsvWriter toGzip(Path file, String delimiter) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    return new CsvWriter(
+        stream(new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), true), delimiter);
+  }
+
+  /** Grava em uma nova entrada do ZIP; close() fecha só a entrada, não o ZIP */
+  public static CsvWriter toZipEntry(ZipOutputStream zip, String entryName, String delimiter)
+      throws IOException {
+    zip.putNextEntry(new ZipEntry(entryName));
+    return new CsvWriter(
+        new Sink() {
+          @Override
+          public void write(byte[] bytes, int offset, int length) throws IOException {
+            zip.write(bytes, offset, length);
+          }
+
+          @Override
+          public void close() throws IOException {
+            zip.closeEntry();
+          }
+        },
+        delimiter);
+  }
+
+  /** Grava no OutputStream, fechando-o em close() quando closeStream for true */
+  public static Sink stream(OutputStream out, boolean closeStream) {
+    return new Sink() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        out.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (closeStream) out.close();
+      }
+    };
+  }
+
+  /** Grava a linha inteira sem formatação */
+  public void writeRow(String[] row) throws IOException {
+    writeRow(row, row.length, Quoting.NONE);
+  }
+
+  /** Grava as primeiras length posições da linha com a regra de aspas informada */
+  public void writeRow(String[] row, int length, Quoting quoting) throws IOException {
+    for (int i = 0; i < length; i++) {
+      if (i > 0) writeDelimiter();
+      writeField(row[i], quoting);
+    }
+    writeBytes(LINE_SEPARATOR);
+  }
+
+  /** Grava bytes já codificados (por exemplo, um bloco formatado por outro CsvWriter) */
+  public void writeBytes(byte[] bytes) throws IOException {
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    sink.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try (sink) {
+      flushBuffer();
+    }
+  }
+
+  private void writeField(String field, Quoting quoting) throws IOException {
+    switch (quoting) {
+      case NONE -> {
+        if (field != null) writeChars(field, 0, field.length(), false);
+      }
+      case NON_NUMERIC, NON_NUMERIC_OR_SPECIAL -> {
+        if (field != null) writeFormatted(field, quoting);
+      }
+      case CLEANED, CLEANED_ALWAYS_QUOTED -> writeCleaned(field == null ? "" : field, quoting);
+    }
+  }
+
+  /** Regras NON_NUMERIC e NON_NUMERIC_OR_SPECIAL sobre o campo sem espaços nas pontas */
+  private void writeFormatted(String field, Quoting quoting) throws IOException {
+    int end = field.length();
+    while (end > 0 && field.charAt(end - 1) <= ' ') end--;
+    int start = 0;
+    while (start < end && field.charAt(start) <= ' ') start++;
+
+    // Já entre aspas: gravado como está (um único caractere de aspas também conta)
+    if (start < end && field.charAt(start) == '"' && field.charAt(end - 1) == '"') {
+      writeChars(field, start, end, false);
+      return;
+    }
+
+    boolean quote = false;
+    for (int i = start; i < end && !quote; i++) {
+      char c = field.charAt(i);
+      quote = quoting == Quoting.NON_NUMERIC ? c == ',' : c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote && quoting == Quoting.NON_NUMERIC_OR_SPECIAL) {
+      int found = field.indexOf(delimiter, start);
+      quote = found >= 0 && found + delimiter.length() <= end;
+    }
+    // isDouble() ignora os mesmos espaços nas pontas, então dispensa o recorte do campo
+    if (!quote) quote = !NumericText.isDouble(field, true);
+
+    if (quote) {
+      writeByte('"');
+      writeChars(field, start, end, true);
+      writeByte('"');
+    } else {
+      writeChars(field, start, end, false);
+    }
+  }
+
+  /** Regras CLEANED e CLEANED_ALWAYS_QUOTED: aspas removidas e espaços das pontas ignorados */
+  private void writeCleaned(String field, Quoting quoting) throws IOException {
+    int end = field.length();
+    while (end > 0 && isCleaned(field.charAt(end - 1))) end--;
+    int start = 0;
+    while (start < end && isCleaned(field.charAt(start))) start++;
+
+    boolean quote =
+        quoting == Quoting.CLEANED_ALWAYS_QUOTED || !NumericText.isStrictDecimal(field);
+    if (quote) writeByte('"');
+    int segment = start; // trecho atual sem aspas
+    for (int i = start; i < end; i++) {
+      if (field.charAt(i) == '"') {
+        writeChars(field, segment, i, false);
+        segment = i + 1;
+      }
+    }
+    writeChars(field, segment, end, false);
+    if (quote) writeByte('"');
+  }
+
+  /** Caracteres removidos das pontas por replace("\"", "").trim() */
+  private static boolean isCleaned(char c) {
+    return c <= ' ' || c == '"';
+  }
+
+  /**
+   * Codifica value[start, end) em trechos que cabem no buffer: cada char ocupa no máximo 3 bytes
+   * (aspas escapadas ocupam 2 e um par de surrogates, 4 bytes para 2 chars), então a capacidade é
+   * conferida uma vez por trecho e não a cada caractere.
+   */
+  private void writeChars(String value, int start, int end, boolean escapeQuotes)
+      throws IOException {
+    int i = start;
+    while (i < end) {
+      int limit = Math.min(end, i + MAX_CHARS_PER_CHUNK);
+      if (count + (limit - i) * 3 + 1 > buffer.length) flushBuffer();
+      i = encode(value, i, limit, end, escapeQuotes);
+    }
+  }
+
+  /** Codifica até limit (um par de surrogates pode avançar um char além) e retorna a posição */
+  private int encode(String value, int start, int limit, int end, boolean escapeQuotes)
+      throws MalformedInputException {
+    byte[] bytes = buffer;
+    int k = count;
+    int i = start;
+    while (i < limit) {
+      char c = value.charAt(i++);
+      if (c < 0x80) {
+        if (escapeQuotes && c == '"') bytes[k++] = '"';
+        bytes[k++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[k++] = (byte) (0xC0 | (c >> 6));
+        bytes[k++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        bytes[k++] = (byte) (0xE0 | (c >> 12));
+        bytes[k++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[k++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i < end
+          && Character.isLowSurrogate(value.charAt(i))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(i++));
+        bytes[k++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[k++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[k++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[k++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        // Surrogate sem par: falha como o encoder UTF-8 dos writers do JDK (REPORT)
+        throw new MalformedInputException(1);
+      }
+    }
+    count = k;
+    return i;
+  }
+
+  private void writeDelimiter() throws IOException {
+    if (delimiterBytes.length == 1) {
+      if (count == buffer.length) flushBuffer();
+      buffer[count++] = delimiterBytes[0];
+    } else {
+      writeBytes(delimiterBytes);
+    }
+  }
+
+  private void writeByte(char c) throws IOException {
+    if (count == buffer.length) flushBuffer();
+    buffer[count++] = (byte) c;
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+    if (length > buffer.length - count) {
+      flushBuffer();
+      if (length > buffer.length) {
+        sink.write(bytes, offset, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, offset, buffer, count, length);
+    count += length;
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      sink.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.support;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Modo com memória limitada do CsvTransformer.mergeByKey(), para arquivos que não cabem no heap
+ * (usado pelo CsvTransformer.mergeByKey() de arquivo para arquivo). Os dois lados são ordenados
+ * pela chave em runs no disco (ExternalSorter) e combinados em uma única passada; o resultado volta
+ * para a ordem original das linhas da esquerda com mais uma ordenação externa. O arquivo gerado é o
+ * mesmo do mergeByKey() seguido de save(): mesmas colunas, a última ocorrência de uma chave na
+ * direita prevalece e linhas sem correspondência ficam com OBSERVACAO = DADOS_NAO_ENCONTRADOS.
+ */
+public class ExternalMergeJoin {
+
+  private static final Comparator<ExternalSorter.Entry> BY_KEY =
+      Comparator.comparing(ExternalSorter.Entry::key).thenComparingLong(ExternalSorter.Entry::seq);
+  private static final Comparator<ExternalSorter.Entry> BY_SEQ =
+      Comparator.comparingLong(ExternalSorter.Entry::seq);
+
+  private final String delimiter;
+  private final long memoryBudget;
+  private final Path tempDir;
+
+  /**
+   * O orçamento (bytes estimados de linhas em memória) é dividido entre as três ordenações; os
+   * arquivos temporários ficam em tempDir e são removidos ao final.
+   */
+  public ExternalMergeJoin(String delimiter, long memoryBudget, Path tempDir) {
+    if (memoryBudget < 3) {
+      throw new IllegalArgumentException("Orçamento de memória inválido: " + memoryBudget);
+    }
+    this.delimiter = delimiter;
+    this.memoryBudget = memoryBudget;
+    this.tempDir = tempDir;
+  }
+
+  /** Mescla leftFile com rightFile pelas chaves e grava o resultado em outputFile */
+  public void join(Path leftFile, Path rightFile, String leftKey, String rightKey, Path outputFile)
+      throws IOException {
+    long budget = memoryBudget / 3;
+
+    try (ExternalSorter left = new ExternalSorter(tempDir, budget, BY_KEY);
+        ExternalSorter right = new ExternalSorter(tempDir, budget, BY_KEY);
+        ExternalSorter joined = new ExternalSorter(tempDir, budget, BY_SEQ)) {
+
+      Side rightSide = load(rightFile, rightKey, right, "direita");
+      Side leftSide = load(leftFile, leftKey, left, "esquerda");
+      int leftWidth = leftSide.width();
+      int rightWidth = rightSide.width();
+      int width = leftWidth + rightWidth + 1;
+
+      // Passada única sobre os dois lados ordenados por chave
+      try (ExternalSorter.Cursor leftRows = left.sorted();
+          ExternalSorter.Cursor rightRows = right.sorted()) {
+
+        ExternalSorter.Entry nextRight = rightRows.next();
+        String groupKey = null;
+        String[] groupValues = null; // última ocorrência da chave na direita
+
+        ExternalSorter.Entry row;
+        while ((row = leftRows.next()) != null) {
+          if (!row.key().equals(groupKey)) {
+            while (nextRight != null && nextRight.key().compareTo(row.key()) < 0) {
+              nextRight = rightRows.next();
+            }
+            groupKey = row.key();
+            groupValues = null;
+            while (nextRight != null && nextRight.key().equals(groupKey)) {
+              groupValues = nextRight.values();
+              nextRight = rightRows.next();
+            }
+          }
+
+          String[] merged = Arrays.copyOf(row.values(), width);
+          if (groupValues != null) {
+            System.arraycopy(
+                groupValues, 0, merged, leftWidth, Math.min(groupValues.length, rightWidth));
+          }
+          for (int i = leftWidth; i < width - 1; i++) {
+            if (merged[i] == null) merged[i] = "";
+          }
+          merged[width - 1] = groupValues != null ? "" : "DADOS_NAO_ENCONTRADOS";
+          joined.add(new ExternalSorter.Entry(null, row.seq(), merged));
+        }
+      }
+
+      // Header do mergeByKey: esquerda, direita e OBSERVACAO (colunas sem nome ficam "")
+      String[] header = new String[width];
+      Arrays.fill(header, "");
+      for (int i = 0; i < leftSide.header().length; i++) {
+        header[i] = Helpers.columnName(leftSide.header()[i]);
+      }
+      for (int i = 0; i < rightSide.header().length; i++) {
+        header[leftWidth + i] = Helpers.columnName(rightSide.header()[i]);
+      }
+      header[width - 1] = "OBSERVACAO";
+
+      write(outputFile, header, joined);
+    }
+  }
+
+  /** Header e largura máxima de um lado (linhas maiores que o header criam colunas sem nome) */
+  private record Side(String[] header, int width) {}
+
+  /** Lê um lado inteiro para o sorter, com a chave de junção de cada linha */
+  private Side load(Path file, String key, ExternalSorter sorter, String side)
+      throws IOException {
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(file, delimiter)) {
+      String[] header = tokenizer.next() ? tokenizer.toArray() : new String[0];
+      int keyIndex =
+          Arrays.stream(header).map(Helpers::columnName).toList().indexOf(key.toUpperCase());
+      if (keyIndex == -1) {
+        throw new IllegalArgumentException("Chave não encontrada no CSV da " + side + ": " + key);
+      }
+
+      int width = header.length;
+      long seq = 0;
+      while (tokenizer.next()) {
+        String[] values = tokenizer.toArray();
+        width = Math.max(width, values.length);
+        String rawKey = keyIndex < values.length ? values[keyIndex] : null;
+        sorter.add(new ExternalSorter.Entry(Helpers.clean(rawKey), seq++, values));
+      }
+      return new Side(header, width);
+    }
+  }
+
+  /** Grava o header e as linhas na ordem original da esquerda */
+  private void write(Path outputFile, String[] header, ExternalSorter rows) throws IOException {
+    try (CsvWriter writer = CsvWriter.toFile(outputFile, delimiter);
+        ExternalSorter.Cursor cursor = rows.sorted()) {
+
+      writer.writeRow(header);
+      ExternalSorter.Entry row;
+      while ((row = cursor.next()) != null) {
+        writer.writeRow(row.values());
+      }
+    }
+  }
+}
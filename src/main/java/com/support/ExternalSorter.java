@@ -0,0 +1,344 @@
+package com.support;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Ordenação externa de linhas com memória limitada. As entradas se acumulam em memória até o
+ * orçamento; cada lote é ordenado e gravado em um arquivo temporário (run), e sorted() intercala
+ * os runs em uma única sequência ordenada. Quando há mais runs do que MAX_FAN_IN, eles são
+ * intercalados em passadas intermediárias. Um conjunto que cabe no orçamento não toca o disco.
+ *
+ * <p>Com parallelism maior que 1, cada lote cheio é dividido em partes ordenadas e gravadas como
+ * runs em paralelo, e um conjunto que cabe no orçamento é ordenado com Arrays.parallelSort().
+ */
+final class ExternalSorter implements Closeable {
+
+  private static final int MAX_FAN_IN = 64; // runs abertos ao mesmo tempo em uma intercalação
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Linha com a chave de ordenação e a posição original (desempate estável) */
+  record Entry(String key, long seq, String[] values) {}
+
+  /** Leitura sequencial das entradas ordenadas; next() retorna null no fim */
+  interface Cursor extends Closeable {
+    Entry next() throws IOException;
+  }
+
+  private final Path tempDir;
+  private final long memoryBudget;
+  private final Comparator<Entry> order;
+  private final int parallelism;
+  private final List<Run> runs = new ArrayList<>();
+  private List<Entry> buffer = new ArrayList<>();
+  private long bufferedBytes;
+  private Path spillDir; // criado no primeiro run
+  private ExecutorService spillPool; // criada no primeiro lote gravado em paralelo
+
+  ExternalSorter(Path tempDir, long memoryBudget, Comparator<Entry> order) {
+    this(tempDir, memoryBudget, order, 1);
+  }
+
+  ExternalSorter(Path tempDir, long memoryBudget, Comparator<Entry> order, int parallelism) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("Orçamento de memória inválido: " + memoryBudget);
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
+    }
+    this.tempDir = tempDir;
+    this.memoryBudget = memoryBudget;
+    this.order = order;
+    this.parallelism = parallelism;
+  }
+
+  void add(Entry entry) throws IOException {
+    buffer.add(entry);
+    bufferedBytes += estimateBytes(entry);
+    if (bufferedBytes >= memoryBudget) {
+      spill();
+    }
+  }
+
+  /** Entradas na ordem do comparador; o sorter não aceita novas entradas depois disso */
+  Cursor sorted() throws IOException {
+    if (runs.isEmpty()) {
+      List<Entry> entries = sortBuffer();
+      buffer = List.of();
+      return new Cursor() {
+        private int next;
+
+        @Override
+        public Entry next() {
+          return next < entries.size() ? entries.get(next++) : null;
+        }
+
+        @Override
+        public void close() {}
+      };
+    }
+
+    spill();
+    while (runs.size() > MAX_FAN_IN) {
+      mergePass();
+    }
+    return merge(new ArrayList<>(runs));
+  }
+
+  /** Remove os arquivos temporários */
+  @Override
+  public void close() throws IOException {
+    if (spillPool != null) spillPool.shutdownNow();
+    for (Run run : runs) {
+      Files.deleteIfExists(run.file());
+    }
+    runs.clear();
+    if (spillDir != null) {
+      // runs incompletos de uma gravação ou intercalação que falhou
+      try (Stream<Path> leftovers = Files.list(spillDir)) {
+        for (Path file : leftovers.toList()) {
+          Files.deleteIfExists(file);
+        }
+      }
+      Files.deleteIfExists(spillDir);
+      spillDir = null;
+    }
+  }
+
+  /** Tamanho estimado em memória de uma linha (objetos, referências e caracteres) */
+  static long estimateBytes(String[] values) {
+    long bytes = 16L + 4L * values.length;
+    for (String value : values) {
+      if (value != null) bytes += 40 + value.length();
+    }
+    return bytes;
+  }
+
+  private static long estimateBytes(Entry entry) {
+    long bytes = 48 + estimateBytes(entry.values());
+    return entry.key() == null ? bytes : bytes + 40 + entry.key().length();
+  }
+
+  /** Lote em memória ordenado, em paralelo quando parallelism > 1 */
+  private List<Entry> sortBuffer() {
+    if (parallelism == 1) {
+      buffer.sort(order);
+      return buffer;
+    }
+    Entry[] entries = buffer.toArray(Entry[]::new);
+    Arrays.parallelSort(entries, order);
+    return Arrays.asList(entries);
+  }
+
+  /** Ordena o lote em memória e grava como novos runs, um por parte do lote */
+  private void spill() throws IOException {
+    if (buffer.isEmpty()) return;
+
+    int parts = Math.min(parallelism, buffer.size());
+    if (parts == 1) {
+      buffer.sort(order);
+      runs.add(writeRun(buffer, newRunFile()));
+    } else {
+      spillParallel(parts);
+    }
+    buffer = new ArrayList<>();
+    bufferedBytes = 0;
+  }
+
+  /** Divide o lote em partes contíguas, ordenadas e gravadas cada uma em uma thread */
+  private void spillParallel(int parts) throws IOException {
+    if (spillPool == null) {
+      spillPool = Executors.newFixedThreadPool(parallelism, Helpers.daemonThreads("external-sort"));
+    }
+
+    List<Future<Run>> futures = new ArrayList<>(parts);
+    for (int p = 0; p < parts; p++) {
+      List<Entry> part =
+          buffer.subList(
+              (int) ((long) buffer.size() * p / parts),
+              (int) ((long) buffer.size() * (p + 1) / parts));
+      Path file = newRunFile();
+      futures.add(
+          spillPool.submit(
+              () -> {
+                part.sort(order);
+                return writeRun(part, file);
+              }));
+    }
+    // Aguarda todas as partes antes de liberar o lote
+    for (Future<Run> future : futures) {
+      runs.add(Helpers.await(future, "Ordenação interrompida"));
+    }
+  }
+
+  /** Grava as entradas já ordenadas em um run */
+  private static Run writeRun(List<Entry> entries, Path file) throws IOException {
+    try (DataOutputStream out = openOutput(file)) {
+      for (Entry entry : entries) {
+        write(out, entry);
+      }
+    }
+    return new Run(file, entries.size());
+  }
+
+  /** Intercala grupos de MAX_FAN_IN runs, reduzindo a quantidade de runs */
+  private void mergePass() throws IOException {
+    List<Run> merged = new ArrayList<>();
+    for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+      List<Run> group = runs.subList(from, Math.min(from + MAX_FAN_IN, runs.size()));
+      Path file = newRunFile();
+      long count = 0;
+      try (Cursor cursor = merge(group);
+          DataOutputStream out = openOutput(file)) {
+        Entry entry;
+        while ((entry = cursor.next()) != null) {
+          write(out, entry);
+          count++;
+        }
+      }
+      for (Run run : group) {
+        Files.delete(run.file());
+      }
+      merged.add(new Run(file, count));
+    }
+    runs.clear();
+    runs.addAll(merged);
+  }
+
+  /** Intercalação de k runs com uma fila de prioridade sobre a entrada atual de cada um */
+  private Cursor merge(List<Run> group) throws IOException {
+    List<RunReader> readers = new ArrayList<>(group.size());
+    PriorityQueue<RunReader> heads =
+        new PriorityQueue<>(
+            Math.max(1, group.size()), (a, b) -> order.compare(a.current, b.current));
+    try {
+      for (Run run : group) {
+        RunReader reader = new RunReader(run);
+        readers.add(reader);
+        if (reader.advance()) heads.add(reader);
+      }
+    } catch (IOException e) {
+      closeAll(readers);
+      throw e;
+    }
+
+    return new Cursor() {
+      @Override
+      public Entry next() throws IOException {
+        RunReader head = heads.poll();
+        if (head == null) return null;
+
+        Entry entry = head.current;
+        if (head.advance()) heads.add(head);
+        return entry;
+      }
+
+      @Override
+      public void close() throws IOException {
+        closeAll(readers);
+      }
+    };
+  }
+
+  private Path newRunFile() throws IOException {
+    if (spillDir == null) {
+      Files.createDirectories(tempDir);
+      spillDir = Files.createTempDirectory(tempDir, "external-sort");
+    }
+    return Files.createTempFile(spillDir, "run", ".bin");
+  }
+
+  private static DataOutputStream openOutput(Path file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+  }
+
+  private static void write(DataOutputStream out, Entry entry) throws IOException {
+    out.writeLong(entry.seq());
+    writeString(out, entry.key());
+    out.writeInt(entry.values().length);
+    for (String value : entry.values()) {
+      writeString(out, value);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void closeAll(List<RunReader> readers) throws IOException {
+    IOException failure = null;
+    for (RunReader reader : readers) {
+      try {
+        reader.in.close();
+      } catch (IOException e) {
+        if (failure == null) failure = e;
+      }
+    }
+    if (failure != null) throw failure;
+  }
+
+  /** Arquivo de um run e a quantidade de entradas gravadas */
+  private record Run(Path file, long count) {}
+
+  /** Leitura sequencial de um run, mantendo a entrada atual */
+  private static final class RunReader {
+
+    private final DataInputStream in;
+    private long remaining;
+    private Entry current;
+
+    RunReader(Run run) throws IOException {
+      this.in =
+          new DataInputStream(
+              new BufferedInputStream(Files.newInputStream(run.file()), BUFFER_SIZE));
+      this.remaining = run.count();
+    }
+
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        current = null;
+        return false;
+      }
+      remaining--;
+
+      long seq = in.readLong();
+      String key = readString(in);
+      String[] values = new String[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = readString(in);
+      }
+      current = new Entry(key, seq, values);
+      return true;
+    }
+  }
+}
@@ -1,11 +1,27 @@
 package com.support;
 
+import com.support.enums.CompressionPreset;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class Helpers {
   public static void deleteDirectoryFromProjectRoot(String folderName) throws IOException {
@@ -26,7 +42,16 @@ public class Helpers {
             });
   }
 
+  // Compacta o arquivo ou diretório em <nome>.zip ao lado dele, com o nível padrão e em paralelo
   public static void zipFiles(Path sourcePath) throws IOException {
+    zipFiles(sourcePath, CompressionPreset.DEFAULT, Runtime.getRuntime().availableProcessors());
+  }
+
+  // Compacta com o preset informado, comprimindo blocos de cada arquivo em até threads threads.
+  // O ZIP é gravado em <nome>.zip.tmp e só substitui o destino depois de finalizado; se a leitura
+  // ou a compressão falhar, o temporário é descartado e um ZIP anterior continua intacto
+  public static void zipFiles(Path sourcePath, CompressionPreset preset, int threads)
+      throws IOException {
 
     if (!Files.exists(sourcePath)) {
       throw new IllegalArgumentException("Caminho não existe: " + sourcePath);
@@ -35,33 +60,145 @@ public class Helpers {
     String baseName = sourcePath.getFileName().toString().replace(".csv", "");
 
     Path zipPath = sourcePath.getParent().resolve(baseName + ".zip");
+    Path tempPath = zipPath.resolveSibling(zipPath.getFileName() + ".tmp");
 
-    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
-
+    ParallelZipOutputStream zos =
+        new ParallelZipOutputStream(Files.newOutputStream(tempPath), preset.level(), threads);
+    try {
       if (Files.isDirectory(sourcePath)) {
 
-        Files.walk(sourcePath)
-            .filter(Files::isRegularFile)
-            .forEach(
-                path -> {
-                  try {
-                    Path relative = sourcePath.relativize(path);
-                    ZipEntry entry = new ZipEntry(sourcePath.getFileName() + "/" + relative);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(sourcePath)) {
+          files = paths.filter(Files::isRegularFile).toList();
+        }
+        for (Path path : files) {
+          Path relative = sourcePath.relativize(path);
+          zipFile(zos, path, sourcePath.getFileName() + "/" + relative);
+        }
+
+      } else {
+        zipFile(zos, sourcePath, sourcePath.getFileName().toString());
+      }
+      zos.close();
+    } catch (IOException | RuntimeException e) {
+      zos.abort(); // sem efeito se a falha foi no próprio close()
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    moveAtomically(tempPath, zipPath);
+  }
 
-                    zos.putNextEntry(entry);
-                    Files.copy(path, zos);
-                    zos.closeEntry();
+  private static void zipFile(ParallelZipOutputStream zos, Path file, String entryName)
+      throws IOException {
+    zos.putNextEntry(entryName, Files.getLastModifiedTime(file).toMillis());
+    Files.copy(file, zos);
+    zos.closeEntry();
+  }
 
-                  } catch (IOException e) {
-                    throw new RuntimeException(e);
-                  }
-                });
+  // SHA-256 (hexadecimal) do conteúdo do arquivo
+  public static String sha256(Path file) throws IOException {
+    MessageDigest digest = sha256Digest();
 
-      } else {
-        zos.putNextEntry(new ZipEntry(sourcePath.getFileName().toString()));
-        Files.copy(sourcePath, zos);
-        zos.closeEntry();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  // SHA-256 (hexadecimal) de um texto em UTF-8
+  public static String sha256(String text) {
+    return HexFormat.of().formatHex(sha256Digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  // Threads daemon (não impedem o fim da JVM) numeradas como <prefixo>-1, <prefixo>-2...
+  public static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  // Aguarda a tarefa repassando a exceção original; interrupção vira InterruptedIOException
+  public static <T> T await(Future<T> future, String interruptedMessage) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(interruptedMessage);
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  // Relança a falha de uma tarefa com o tipo original (IOException de UncheckedIOException
+  // desembrulhada); retorna a RuntimeException para o chamador usar em "throw rethrow(...)"
+  public static RuntimeException rethrow(Throwable failure) throws IOException {
+    if (failure instanceof IOException io) throw io;
+    if (failure instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+    if (failure instanceof RuntimeException re) return re;
+    if (failure instanceof Error err) throw err;
+    return new IllegalStateException(failure);
+  }
+
+  // Renomeia o temporário para o destino; usa movimento atômico quando o sistema suporta
+  public static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  // Valor sem aspas e sem espaços nas pontas; null vira ""
+  static String clean(String value) {
+    return value == null ? "" : value.replace("\"", "").trim();
+  }
+
+  // Nome de coluna como os processadores comparam: clean() em maiúsculas
+  static String columnName(String value) {
+    return clean(value).toUpperCase();
+  }
+
+  // Mapa columnName -> posição do header, como os processadores consultam as colunas; nomes
+  // repetidos ficam com a última ocorrência e colunas sem nome (null) são ignoradas
+  static Map<String, Integer> headerIndex(String[] header) {
+    Map<String, Integer> map = new HashMap<>();
+    for (int i = 0; i < header.length; i++) {
+      if (header[i] != null) map.put(columnName(header[i]), i);
+    }
+    return map;
+  }
+
+  // Posição de cada coluna (já em columnName) no header; nomes repetidos usam a primeira ocorrência
+  static int[] columnIndexes(String[] header, List<String> columns) {
+    Map<String, Integer> index = new HashMap<>();
+    for (int i = 0; i < header.length; i++) {
+      index.putIfAbsent(columnName(header[i]), i);
+    }
+
+    int[] result = new int[columns.size()];
+    for (int i = 0; i < result.length; i++) {
+      Integer colIndex = index.get(columns.get(i));
+      if (colIndex == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + columns.get(i));
       }
+      result[i] = colIndex;
+    }
+    return result;
+  }
+
+  private static MessageDigest sha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // obrigatório em toda JVM
     }
   }
 }
@@ -0,0 +1,140 @@
+package com.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice de junção chave -> linha do CSV da direita. A chave é o valor sem aspas e sem espaços nas
+ * pontas; chaves que são inteiros na forma canônica (como REG_ANS) ficam em uma tabela de
+ * endereçamento aberto sobre long, convertidas sem alocação, e as demais em um HashMap de Strings.
+ * Cada chave cai sempre na mesma tabela, então as duas nunca precisam ser consultadas juntas.
+ *
+ * <p>Depois de montado, o índice só é lido e pode ser consultado por várias threads.
+ */
+final class JoinIndex {
+
+  static final int NOT_FOUND = -1;
+
+  /** Valor de parseKey() para chaves que não são inteiros canônicos */
+  static final long NOT_INTEGER = Long.MIN_VALUE;
+
+  private static final int MAX_DIGITS = 18; // sempre cabe em um long
+  static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private long[] keys;
+  private int[] rows; // NOT_FOUND marca posição livre
+  private int shift; // 64 - log2(capacidade)
+  private int size;
+  private final Map<String, Integer> textKeys = new HashMap<>();
+
+  JoinIndex(int expectedKeys) {
+    int capacity = Integer.highestOneBit(Math.max(expectedKeys, 8) * 2 - 1) << 1;
+    allocate(capacity);
+  }
+
+  /** Associa a chave à linha; a última ocorrência de uma chave prevalece */
+  void put(String rawKey, int row) {
+    long key = parseKey(rawKey);
+    if (key == NOT_INTEGER) {
+      textKeys.put(Helpers.clean(rawKey), row);
+      return;
+    }
+
+    if ((size + 1) * 2 > rows.length) {
+      grow();
+    }
+    int slot = slot(key);
+    if (rows[slot] == NOT_FOUND) size++;
+    keys[slot] = key;
+    rows[slot] = row;
+  }
+
+  /** Linha associada à chave, ou NOT_FOUND */
+  int get(String rawKey) {
+    long key = parseKey(rawKey);
+    return key == NOT_INTEGER ? getText(rawKey) : get(key);
+  }
+
+  /** Linha associada a uma chave inteira já convertida por parseKey() */
+  int get(long key) {
+    return rows[slot(key)];
+  }
+
+  /** Linha associada à célula da tabela, sem montar o texto quando a coluna é numérica */
+  int get(ColumnarTable table, int row, int column) {
+    long key = table.integerKey(row, column);
+    return key == NOT_INTEGER ? getText(table.get(row, column)) : get(key);
+  }
+
+  private int getText(String rawKey) {
+    return textKeys.getOrDefault(Helpers.clean(rawKey), NOT_FOUND);
+  }
+
+  /**
+   * Converte a chave (ignorando aspas e espaços nas pontas) para long quando ela é um inteiro na
+   * forma canônica: sem zeros à esquerda, sem "+" ou "-0" e com até 18 dígitos. Assim duas chaves
+   * convertidas são iguais exatamente quando os textos são iguais. Caso contrário, NOT_INTEGER.
+   */
+  static long parseKey(CharSequence rawKey) {
+    if (rawKey == null) return NOT_INTEGER;
+
+    int start = 0;
+    int end = rawKey.length();
+    while (start < end && isTrimmed(rawKey.charAt(start))) start++;
+    while (end > start && isTrimmed(rawKey.charAt(end - 1))) end--;
+
+    long value = 0;
+    int digits = 0;
+    boolean negative = false;
+    for (int i = start; i < end; i++) {
+      char c = rawKey.charAt(i);
+      if (c == '"') continue; // aspas são removidas em qualquer posição
+      if (c == '-' && digits == 0 && !negative) {
+        negative = true;
+        continue;
+      }
+      if (c < '0' || c > '9') return NOT_INTEGER;
+      if (digits == 1 && value == 0) return NOT_INTEGER; // zero à esquerda
+      if (++digits > MAX_DIGITS) return NOT_INTEGER;
+      value = value * 10 + (c - '0');
+    }
+
+    if (digits == 0 || (negative && value == 0)) return NOT_INTEGER;
+    return negative ? -value : value;
+  }
+
+  private static boolean isTrimmed(char c) {
+    return c <= ' ' || c == '"';
+  }
+
+  /** Posição da chave, ou a posição livre onde ela entraria (sondagem linear) */
+  private int slot(long key) {
+    int mask = rows.length - 1;
+    int slot = (int) ((key * HASH_MULTIPLIER) >>> shift);
+    while (rows[slot] != NOT_FOUND && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    rows = new int[capacity];
+    Arrays.fill(rows, NOT_FOUND);
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldRows = rows;
+    allocate(rows.length * 2);
+    for (int i = 0; i < oldRows.length; i++) {
+      if (oldRows[i] != NOT_FOUND) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        rows[slot] = oldRows[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package com.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Leitor de CSV mapeado em memória (FileChannel.map) que divide o arquivo em blocos alinhados a
+ * quebras de linha e processa os blocos em paralelo em uma ForkJoinPool. Os limites dos blocos
+ * respeitam aspas: a paridade de aspas de cada região é contada em paralelo e acumulada, de modo que
+ * uma quebra de linha dentro de um campo entre aspas nunca é usada como corte. Os resultados são
+ * entregues na ordem do arquivo, igual a uma leitura sequencial.
+ */
+public final class MappedCsvReader {
+
+  private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+  private static final int SCAN_WINDOW = 64 * 1024;
+
+  // Buffer de caracteres reaproveitado por thread para decodificar os blocos
+  private static final ThreadLocal<CharBuffer> CHARS = new ThreadLocal<>();
+
+  private final Path file;
+  private final String delimiter;
+  private final int parallelism;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  public MappedCsvReader(Path file, String delimiter, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Paralelismo deve ser positivo: " + parallelism);
+    }
+    this.file = file;
+    this.delimiter = delimiter;
+    this.parallelism = parallelism;
+  }
+
+  /** Define o tamanho alvo (em bytes) de cada bloco */
+  public MappedCsvReader chunkSize(int bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Tamanho de bloco inválido: " + bytes);
+    }
+    this.chunkSize = bytes;
+    return this;
+  }
+
+  /** Processa um bloco de registros; roda em paralelo, fora da ordem do arquivo */
+  @FunctionalInterface
+  public interface ChunkMapper<R> {
+    R map(CsvTokenizer records) throws IOException;
+  }
+
+  /** Cria o processador dos blocos a partir do header; chamado uma vez, antes dos blocos */
+  @FunctionalInterface
+  public interface ChunkMapperFactory<R> {
+    ChunkMapper<R> create(String[] header) throws IOException;
+  }
+
+  /** Recebe o resultado de cada bloco, sempre na ordem do arquivo */
+  @FunctionalInterface
+  public interface ChunkSink<R> {
+    void accept(R result) throws IOException;
+  }
+
+  /**
+   * Lê o header (primeiro registro), entrega-o à fábrica e processa os registros restantes em
+   * blocos paralelos. Arquivos vazios não geram chamadas. Mantém no máximo 2x paralelismo blocos em
+   * voo para limitar o uso de memória.
+   */
+  public <R> void read(ChunkMapperFactory<R> factory, ChunkSink<R> sink) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) return;
+
+      long dataStart = findRecordEnd(channel, 0, false);
+      CsvTokenizer headerTokenizer = CsvTokenizer.of(map(channel, 0, dataStart), delimiter);
+      headerTokenizer.next();
+      ChunkMapper<R> mapper = factory.create(headerTokenizer.toArray());
+
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        long[] bounds = chunkBounds(channel, pool, dataStart, size);
+        Deque<ForkJoinTask<R>> inFlight = new ArrayDeque<>();
+        int next = 0;
+
+        while (next < bounds.length - 1 || !inFlight.isEmpty()) {
+          while (next < bounds.length - 1 && inFlight.size() < parallelism * 2) {
+            long from = bounds[next];
+            long to = bounds[next + 1];
+            inFlight.add(
+                pool.submit(() -> mapper.map(decode(map(channel, from, to)))));
+            next++;
+          }
+          sink.accept(join(inFlight.poll()));
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Calcula os limites dos blocos: divide [dataStart, size) em regiões, conta a paridade de aspas de
+   * cada região em paralelo e, a partir da paridade acumulada, avança cada corte até a primeira
+   * quebra de linha fora de aspas.
+   */
+  private long[] chunkBounds(FileChannel channel, ForkJoinPool pool, long dataStart, long size)
+      throws IOException {
+    int regions = (int) Math.max(1, (size - dataStart + chunkSize - 1) / chunkSize);
+
+    List<ForkJoinTask<Boolean>> parities = new ArrayList<>(regions);
+    for (int i = 0; i < regions; i++) {
+      long from = dataStart + (long) i * chunkSize;
+      long to = Math.min(size, from + chunkSize);
+      parities.add(pool.submit(() -> countQuotesOdd(channel, from, to)));
+    }
+
+    List<ForkJoinTask<Long>> cuts = new ArrayList<>(regions);
+    boolean inQuotes = join(parities.get(0));
+    for (int i = 1; i < regions; i++) {
+      long from = dataStart + (long) i * chunkSize;
+      boolean startsInQuotes = inQuotes;
+      cuts.add(pool.submit(() -> findRecordEnd(channel, from, startsInQuotes)));
+      inQuotes ^= join(parities.get(i));
+    }
+
+    long[] bounds = new long[regions + 1];
+    int count = 0;
+    bounds[count++] = dataStart;
+    for (ForkJoinTask<Long> cut : cuts) {
+      long bound = join(cut);
+      // Um campo entre aspas maior que a região faz cortes vizinhos coincidirem
+      if (bound > bounds[count - 1]) {
+        bounds[count++] = bound;
+      }
+    }
+    if (bounds[count - 1] < size) {
+      bounds[count++] = size;
+    }
+    return Arrays.copyOf(bounds, count);
+  }
+
+  /** Conta as aspas em [from, to) e retorna true se a quantidade for ímpar */
+  private static boolean countQuotesOdd(FileChannel channel, long from, long to)
+      throws IOException {
+    MappedByteBuffer region = map(channel, from, to);
+    boolean odd = false;
+    for (int i = 0, n = region.limit(); i < n; i++) {
+      if (region.get(i) == '"') odd = !odd;
+    }
+    return odd;
+  }
+
+  /**
+   * Retorna a posição logo após a primeira quebra de linha ('\n') fora de aspas a partir de from,
+   * ou o tamanho do arquivo se não houver.
+   */
+  private static long findRecordEnd(FileChannel channel, long from, boolean inQuotes)
+      throws IOException {
+    long size = channel.size();
+    for (long offset = from; offset < size; offset += SCAN_WINDOW) {
+      MappedByteBuffer window = map(channel, offset, Math.min(size, offset + SCAN_WINDOW));
+      for (int i = 0, n = window.limit(); i < n; i++) {
+        byte b = window.get(i);
+        if (b == '"') {
+          inQuotes = !inQuotes;
+        } else if (b == '\n' && !inQuotes) {
+          return offset + i + 1;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Decodifica o bloco (UTF-8) no buffer da thread atual. O tokenizador só é usado dentro do
+   * mapper, antes que a mesma thread decodifique outro bloco.
+   */
+  private CsvTokenizer decode(ByteBuffer bytes) {
+    CharBuffer chars = CHARS.get();
+    if (chars == null || chars.capacity() < bytes.remaining()) {
+      chars = CharBuffer.allocate(Math.max(bytes.remaining(), chunkSize));
+      CHARS.set(chars);
+    }
+    chars.clear();
+
+    CharsetDecoder decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    decoder.decode(bytes, chars, true);
+    decoder.flush(chars);
+
+    return new CsvTokenizer(chars.array(), 0, chars.position(), delimiter);
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+  }
+
+  /** Aguarda a tarefa repassando IOException sem o embrulho da ForkJoinPool */
+  private static <T> T join(ForkJoinTask<T> task) throws IOException {
+    return Helpers.await(task, "Leitura interrompida");
+  }
+}
@@ -0,0 +1,322 @@
+package com.support;
+
+/**
+ * Reconhecimento e conversão de números em texto (formatos brasileiro e americano) em uma única
+ * varredura dos caracteres, sem expressões regulares, sem alocação e sem exceções. Substitui os
+ * usos de String.matches() e de Double.parseDouble() com captura de NumberFormatException nos
+ * processadores de CSV, mantendo exatamente as mesmas regras de aceitação.
+ */
+public final class NumericText {
+
+  // Potências de 10 exatas em double (até 10^22)
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private NumericText() {}
+
+  /**
+   * Equivale a clean(value).matches("-?\\d+[.,]?\\d*"): aspas são ignoradas e espaços nas pontas
+   * descartados, como no clean() dos processadores.
+   */
+  public static boolean isPlainDecimal(CharSequence value) {
+    if (value == null) return false;
+
+    int end = trimmedEnd(value, true);
+    int i = trimmedStart(value, end, true);
+    if (i >= end) return false;
+
+    if (value.charAt(i) == '-') i = skipQuotes(value, i + 1, end);
+
+    int digits = 0;
+    while (i < end && isDigit(value.charAt(i))) {
+      digits++;
+      i = skipQuotes(value, i + 1, end);
+    }
+    if (digits == 0) return false;
+
+    if (i < end && (value.charAt(i) == '.' || value.charAt(i) == ',')) {
+      i = skipQuotes(value, i + 1, end);
+    }
+    while (i < end && isDigit(value.charAt(i))) {
+      i = skipQuotes(value, i + 1, end);
+    }
+    return i == end;
+  }
+
+  /** Equivale a clean(value).matches("-?\\d+(\\.\\d+)?") */
+  public static boolean isStrictDecimal(CharSequence value) {
+    if (value == null) return false;
+
+    int end = trimmedEnd(value, true);
+    int i = trimmedStart(value, end, true);
+    if (i >= end) return false;
+
+    if (value.charAt(i) == '-') i = skipQuotes(value, i + 1, end);
+
+    int digits = 0;
+    while (i < end && isDigit(value.charAt(i))) {
+      digits++;
+      i = skipQuotes(value, i + 1, end);
+    }
+    if (digits == 0) return false;
+    if (i == end) return true;
+    if (value.charAt(i) != '.') return false;
+
+    i = skipQuotes(value, i + 1, end);
+    int fraction = 0;
+    while (i < end && isDigit(value.charAt(i))) {
+      fraction++;
+      i = skipQuotes(value, i + 1, end);
+    }
+    return fraction > 0 && i == end;
+  }
+
+  /**
+   * Equivale a Double.parseDouble(commaDecimal ? value.replace(",", ".") : value) não lançar
+   * exceção. Aspas não são ignoradas.
+   */
+  public static boolean isDouble(CharSequence value, boolean commaDecimal) {
+    if (value == null) return false;
+    return scan(value, false, commaDecimal, null);
+  }
+
+  /**
+   * Converte o texto em double com as mesmas regras de Double.parseDouble, ignorando aspas e
+   * aceitando vírgula como separador decimal quando commaDecimal for true. Retorna fallback quando
+   * o texto não é numérico. Valores com até 15 dígitos significativos são convertidos sem alocação;
+   * os demais recorrem ao Double.parseDouble para manter o arredondamento exato.
+   */
+  public static double parseDouble(CharSequence value, boolean commaDecimal, double fallback) {
+    if (value == null) return fallback;
+
+    double[] result = {fallback};
+    return scan(value, true, commaDecimal, result) ? result[0] : fallback;
+  }
+
+  /**
+   * Texto limpo do número (sem aspas e espaços nas pontas) com vírgula trocada por ponto. Devolve a
+   * própria String quando ela já está nesse formato.
+   */
+  public static String normalizeDecimal(String value) {
+    int end = trimmedEnd(value, true);
+    int start = trimmedStart(value, end, true);
+
+    boolean unchanged = start == 0 && end == value.length();
+    for (int i = start; unchanged && i < end; i++) {
+      char c = value.charAt(i);
+      unchanged = c != '"' && c != ',';
+    }
+    if (unchanged) return value;
+
+    StringBuilder sb = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == '"') continue;
+      sb.append(c == ',' ? '.' : c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Valor de unscaled / 10^scale com o mesmo arredondamento de Double.parseDouble, ou Double.NaN
+   * quando a conversão direta não é exata (mantissa acima de 2^53 ou escala acima de 22).
+   */
+  static double exactDecimal(long unscaled, int scale) {
+    if (Math.abs(unscaled) >= MAX_EXACT_MANTISSA || scale > 22) return Double.NaN;
+    return unscaled / POW10[scale];
+  }
+
+  /**
+   * Varre o texto seguindo a gramática de Double.parseDouble (sinal, NaN, Infinity, decimal com
+   * expoente, hexadecimal e sufixo f/d). Quando result não é nulo, grava o valor convertido.
+   */
+  private static boolean scan(
+      CharSequence s, boolean ignoreQuotes, boolean commaDecimal, double[] result) {
+
+    int end = trimmedEnd(s, ignoreQuotes);
+    int i = trimmedStart(s, end, ignoreQuotes);
+    if (i >= end) return false;
+
+    boolean negative = false;
+    char c = s.charAt(i);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      i = next(s, i, end, ignoreQuotes);
+      if (i >= end) return false;
+      c = s.charAt(i);
+    }
+
+    if (c == 'N' || c == 'I') {
+      String word = c == 'N' ? "NaN" : "Infinity";
+      for (int k = 0; k < word.length(); k++) {
+        if (i >= end || s.charAt(i) != word.charAt(k)) return false;
+        i = next(s, i, end, ignoreQuotes);
+      }
+      if (i != end) return false;
+      if (result != null) {
+        double infinity = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        result[0] = c == 'N' ? Double.NaN : infinity;
+      }
+      return true;
+    }
+
+    if (c == '0') {
+      int x = next(s, i, end, ignoreQuotes);
+      if (x < end && (s.charAt(x) == 'x' || s.charAt(x) == 'X')) {
+        if (!scanHex(s, next(s, x, end, ignoreQuotes), end, ignoreQuotes, commaDecimal)) {
+          return false;
+        }
+        if (result != null) result[0] = slowParse(s, ignoreQuotes, commaDecimal);
+        return true;
+      }
+    }
+
+    long mantissa = 0;
+    int significant = 0; // dígitos acumulados na mantissa (sem zeros à esquerda)
+    int dropped = 0; // dígitos inteiros que não couberam na mantissa
+    int fractionDigits = 0; // dígitos acumulados após o separador
+    int digits = 0;
+    boolean separator = false;
+
+    for (; i < end; i = next(s, i, end, ignoreQuotes)) {
+      c = s.charAt(i);
+      if (isDigit(c)) {
+        digits++;
+        if (significant < 18) {
+          if (mantissa != 0 || c != '0') {
+            mantissa = mantissa * 10 + (c - '0');
+            significant++;
+          }
+          if (separator) fractionDigits++;
+        } else if (!separator) {
+          dropped++;
+        }
+      } else if (c == '.' || (commaDecimal && c == ',')) {
+        if (separator) return false;
+        separator = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) return false;
+
+    int exponent = 0;
+    if (i < end && (c == 'e' || c == 'E')) {
+      i = next(s, i, end, ignoreQuotes);
+      if (i >= end) return false;
+
+      boolean negativeExponent = false;
+      c = s.charAt(i);
+      if (c == '-' || c == '+') {
+        negativeExponent = c == '-';
+        i = next(s, i, end, ignoreQuotes);
+      }
+
+      int expDigits = 0;
+      for (; i < end && isDigit(c = s.charAt(i)); i = next(s, i, end, ignoreQuotes)) {
+        if (exponent < 100_000) exponent = exponent * 10 + (c - '0');
+        expDigits++;
+      }
+      if (expDigits == 0) return false;
+      if (negativeExponent) exponent = -exponent;
+    }
+
+    if (i < end) {
+      c = s.charAt(i);
+      if (c != 'f' && c != 'F' && c != 'd' && c != 'D') return false;
+      if (next(s, i, end, ignoreQuotes) != end) return false;
+    }
+
+    if (result != null) {
+      int scale = exponent - fractionDigits + dropped;
+      if (significant <= 15 && mantissa < MAX_EXACT_MANTISSA && Math.abs(scale) <= 22) {
+        double value = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+        result[0] = negative ? -value : value;
+      } else {
+        result[0] = slowParse(s, ignoreQuotes, commaDecimal);
+      }
+    }
+    return true;
+  }
+
+  /** Parte hexadecimal de Double.parseDouble: dígitos hex, ponto opcional e expoente p/P */
+  private static boolean scanHex(
+      CharSequence s, int i, int end, boolean ignoreQuotes, boolean commaDecimal) {
+    int digits = 0;
+    boolean separator = false;
+    char c = 0;
+
+    for (; i < end; i = next(s, i, end, ignoreQuotes)) {
+      c = s.charAt(i);
+      if (Character.digit(c, 16) >= 0) {
+        digits++;
+      } else if (c == '.' || (commaDecimal && c == ',')) {
+        if (separator) return false;
+        separator = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0 || i >= end || (c != 'p' && c != 'P')) return false;
+
+    i = next(s, i, end, ignoreQuotes);
+    if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) i = next(s, i, end, ignoreQuotes);
+
+    int expDigits = 0;
+    for (; i < end && isDigit(s.charAt(i)); i = next(s, i, end, ignoreQuotes)) expDigits++;
+    if (expDigits == 0) return false;
+
+    if (i < end) {
+      c = s.charAt(i);
+      if (c != 'f' && c != 'F' && c != 'd' && c != 'D') return false;
+      return next(s, i, end, ignoreQuotes) == end;
+    }
+    return true;
+  }
+
+  /** Caminho lento (números longos ou hexadecimais): monta o texto limpo e usa o parser do JDK */
+  private static double slowParse(CharSequence s, boolean ignoreQuotes, boolean commaDecimal) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (ignoreQuotes && c == '"') continue;
+      sb.append(commaDecimal && c == ',' ? '.' : c);
+    }
+    return Double.parseDouble(sb.toString());
+  }
+
+  /** Próxima posição após i, pulando aspas quando ignoradas */
+  private static int next(CharSequence s, int i, int end, boolean ignoreQuotes) {
+    i++;
+    return ignoreQuotes ? skipQuotes(s, i, end) : i;
+  }
+
+  private static int skipQuotes(CharSequence s, int i, int end) {
+    while (i < end && s.charAt(i) == '"') i++;
+    return i;
+  }
+
+  /** Início do conteúdo após espaços (e aspas, quando ignoradas) */
+  private static int trimmedStart(CharSequence s, int end, boolean ignoreQuotes) {
+    int i = 0;
+    while (i < end && (s.charAt(i) <= ' ' || (ignoreQuotes && s.charAt(i) == '"'))) i++;
+    return i;
+  }
+
+  /** Fim do conteúdo antes de espaços (e aspas, quando ignoradas) */
+  private static int trimmedEnd(CharSequence s, boolean ignoreQuotes) {
+    int end = s.length();
+    while (end > 0 && (s.charAt(end - 1) <= ' ' || (ignoreQuotes && s.charAt(end - 1) == '"'))) {
+      end--;
+    }
+    return end;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,389 @@
+package com.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ZIP com compressão deflate em paralelo, no estilo do pigz. Os dados de cada entrada são divididos
+ * em blocos comprimidos de forma independente em várias threads; cada bloco usa os últimos 32 KB do
+ * bloco anterior como dicionário e termina com um SYNC_FLUSH (alinhado em byte, sem marcar o fim do
+ * fluxo), de modo que os blocos concatenados na ordem formam um único fluxo deflate válido. Só o
+ * último bloco da entrada é finalizado.
+ *
+ * <p>O arquivo segue o formato ZIP padrão, com as entradas gravadas em fluxo (tamanhos e CRC no
+ * data descriptor) e registros ZIP64 quando tamanhos, offsets ou a quantidade de entradas passam
+ * dos limites do formato original, como o ZipOutputStream.
+ *
+ * <p>Depois de uma falha na gravação ou na compressão de um bloco o fluxo recusa novas operações,
+ * inclusive finish(): close() só fecha a saída, sem gravar o diretório central, para que um ZIP com
+ * a entrada truncada não pareça válido. Use abort() para descartar o ZIP depois de uma falha de
+ * quem grava os dados.
+ */
+public final class ParallelZipOutputStream extends OutputStream {
+
+  private static final int BLOCK_SIZE = 128 * 1024;
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+  private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+  private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+  private static final int FLAGS = 0x0808; // data descriptor e nome em UTF-8
+  private static final int DEFLATED = 8;
+
+  private final OutputStream out;
+  private final int level;
+  private final int threads;
+  private final ExecutorService executor;
+  private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+  private final List<Entry> entries = new ArrayList<>();
+  private final CRC32 crc = new CRC32();
+  private final byte[] single = new byte[1];
+  private long written; // bytes gravados no arquivo
+
+  private Entry current;
+  private byte[] block = new byte[BLOCK_SIZE];
+  private int blockLength;
+  private byte[] previousBlock; // fonte do dicionário do próximo bloco
+  private boolean closed;
+  private boolean failed; // um bloco ou a saída falhou; o ZIP não pode mais ser finalizado
+
+  /** Compacta com o nível informado (ver Deflater) usando até threads threads */
+  public ParallelZipOutputStream(OutputStream out, int level, int threads) {
+    if (level < 0 || level > 9) {
+      throw new IllegalArgumentException("Nível de compressão inválido: " + level);
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Quantidade de threads inválida: " + threads);
+    }
+    this.out = out;
+    this.level = level;
+    this.threads = threads;
+
+    this.executor = Executors.newFixedThreadPool(threads, Helpers.daemonThreads("zip-deflate"));
+  }
+
+  /** Inicia uma nova entrada, fechando a anterior */
+  public void putNextEntry(String name, long lastModifiedMillis) throws IOException {
+    ensureOpen();
+    closeEntry();
+
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    current = new Entry(nameBytes, dosTime(lastModifiedMillis), written);
+    crc.reset();
+    blockLength = 0;
+    previousBlock = null;
+
+    ByteBuffer header = littleEndian(30 + nameBytes.length);
+    header.putInt(0x04034b50);
+    header.putShort((short) 20); // versão necessária
+    header.putShort((short) FLAGS);
+    header.putShort((short) DEFLATED);
+    header.putInt(current.dosTime);
+    header.putInt(0); // CRC e tamanhos vão no data descriptor
+    header.putInt(0);
+    header.putInt(0);
+    header.putShort((short) nameBytes.length);
+    header.putShort((short) 0);
+    header.put(nameBytes);
+    writeRaw(header);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    if (current == null) {
+      throw new IllegalStateException("Nenhuma entrada aberta: chame putNextEntry()");
+    }
+
+    crc.update(bytes, offset, length);
+    current.size += length;
+    while (length > 0) {
+      int copied = Math.min(length, BLOCK_SIZE - blockLength);
+      System.arraycopy(bytes, offset, block, blockLength, copied);
+      blockLength += copied;
+      offset += copied;
+      length -= copied;
+
+      if (blockLength == BLOCK_SIZE) {
+        submitBlock(false);
+      }
+    }
+  }
+
+  /** Comprime o último bloco, grava os blocos pendentes e o data descriptor da entrada */
+  public void closeEntry() throws IOException {
+    ensureOpen();
+    if (current == null) return;
+
+    submitBlock(true);
+    while (!inFlight.isEmpty()) {
+      writeBlock(inFlight.poll());
+    }
+
+    current.crc = crc.getValue();
+    boolean zip64 = current.size >= ZIP64_LIMIT || current.compressedSize >= ZIP64_LIMIT;
+    ByteBuffer descriptor = littleEndian(zip64 ? 24 : 16);
+    descriptor.putInt(0x08074b50);
+    descriptor.putInt((int) current.crc);
+    if (zip64) {
+      descriptor.putLong(current.compressedSize);
+      descriptor.putLong(current.size);
+    } else {
+      descriptor.putInt((int) current.compressedSize);
+      descriptor.putInt((int) current.size);
+    }
+    writeRaw(descriptor);
+
+    entries.add(current);
+    current = null;
+  }
+
+  /** Fecha a entrada aberta e grava o diretório central, sem fechar o fluxo de saída */
+  public void finish() throws IOException {
+    ensureOpen();
+    closeEntry();
+
+    long directoryOffset = written;
+    for (Entry entry : entries) {
+      writeCentralHeader(entry);
+    }
+    long directorySize = written - directoryOffset;
+    writeEnd(directoryOffset, directorySize);
+    out.flush();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Finaliza o ZIP (ver finish()) e fecha o fluxo de saída */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    try (out) {
+      finish();
+    } finally {
+      closed = true;
+      executor.shutdownNow();
+    }
+  }
+
+  /** Descarta o ZIP em construção: cancela os blocos em voo e fecha a saída sem finalizá-lo */
+  public void abort() throws IOException {
+    if (closed) return;
+    closed = true;
+
+    for (Future<byte[]> future : inFlight) {
+      future.cancel(true);
+    }
+    inFlight.clear();
+    try (out) {
+      // só fecha a saída
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Envia o bloco atual para compressão, limitando os blocos em voo a 2x as threads */
+  private void submitBlock(boolean last) throws IOException {
+    byte[] input = block;
+    int length = blockLength;
+    byte[] dictionary = previousBlock;
+    inFlight.add(executor.submit(() -> deflate(input, length, dictionary, last)));
+
+    previousBlock = input;
+    block = new byte[BLOCK_SIZE];
+    blockLength = 0;
+
+    while (inFlight.size() > threads * 2) {
+      writeBlock(inFlight.poll());
+    }
+  }
+
+  /** Comprime um bloco; termina com SYNC_FLUSH, ou finaliza o fluxo quando é o último */
+  private byte[] deflate(byte[] input, int length, byte[] dictionary, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary, BLOCK_SIZE - DICTIONARY_SIZE, DICTIONARY_SIZE);
+      }
+      deflater.setInput(input, 0, length);
+      if (last) deflater.finish();
+
+      byte[] buffer = new byte[Math.max(1024, length + length / 8 + 64)];
+      int size = 0;
+      while (true) {
+        if (size == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        int n =
+            deflater.deflate(
+                buffer, size, buffer.length - size, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        size += n;
+        // SYNC_FLUSH terminou quando sobrou espaço na saída; o último bloco, quando finalizado
+        if (last ? deflater.finished() : size < buffer.length) break;
+      }
+      return Arrays.copyOf(buffer, size);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private void writeBlock(Future<byte[]> future) throws IOException {
+    try {
+      byte[] compressed = Helpers.await(future, "Compressão interrompida");
+      out.write(compressed);
+      written += compressed.length;
+      current.compressedSize += compressed.length;
+    } catch (Throwable e) {
+      failed = true;
+      throw e;
+    }
+  }
+
+  private void writeCentralHeader(Entry entry) throws IOException {
+    boolean sizes64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+    boolean offset64 = entry.offset >= ZIP64_LIMIT;
+    int extraLength = sizes64 || offset64 ? 4 + (sizes64 ? 16 : 0) + (offset64 ? 8 : 0) : 0;
+    short version = (short) (extraLength > 0 ? 45 : 20);
+
+    ByteBuffer header = littleEndian(46 + entry.name.length + extraLength);
+    header.putInt(0x02014b50);
+    header.putShort(version); // versão que gerou
+    header.putShort(version); // versão necessária
+    header.putShort((short) FLAGS);
+    header.putShort((short) DEFLATED);
+    header.putInt(entry.dosTime);
+    header.putInt((int) entry.crc);
+    header.putInt(sizes64 ? (int) ZIP64_LIMIT : (int) entry.compressedSize);
+    header.putInt(sizes64 ? (int) ZIP64_LIMIT : (int) entry.size);
+    header.putShort((short) entry.name.length);
+    header.putShort((short) extraLength);
+    header.putShort((short) 0); // comentário
+    header.putShort((short) 0); // disco
+    header.putShort((short) 0); // atributos internos
+    header.putInt(0); // atributos externos
+    header.putInt(offset64 ? (int) ZIP64_LIMIT : (int) entry.offset);
+    header.put(entry.name);
+    if (extraLength > 0) {
+      header.putShort((short) 0x0001); // campo extra ZIP64
+      header.putShort((short) (extraLength - 4));
+      if (sizes64) {
+        header.putLong(entry.size);
+        header.putLong(entry.compressedSize);
+      }
+      if (offset64) header.putLong(entry.offset);
+    }
+    writeRaw(header);
+  }
+
+  private void writeEnd(long directoryOffset, long directorySize) throws IOException {
+    boolean zip64 =
+        entries.size() >= ZIP64_ENTRY_LIMIT
+            || directoryOffset >= ZIP64_LIMIT
+            || directorySize >= ZIP64_LIMIT;
+
+    if (zip64) {
+      long zip64EndOffset = written;
+      ByteBuffer end64 = littleEndian(56 + 20);
+      end64.putInt(0x06064b50);
+      end64.putLong(44); // tamanho do registro após este campo
+      end64.putShort((short) 45);
+      end64.putShort((short) 45);
+      end64.putInt(0); // disco
+      end64.putInt(0); // disco do diretório
+      end64.putLong(entries.size());
+      end64.putLong(entries.size());
+      end64.putLong(directorySize);
+      end64.putLong(directoryOffset);
+
+      end64.putInt(0x07064b50); // localizador do registro ZIP64
+      end64.putInt(0);
+      end64.putLong(zip64EndOffset);
+      end64.putInt(1); // total de discos
+      writeRaw(end64);
+    }
+
+    int entryCount = Math.min(entries.size(), ZIP64_ENTRY_LIMIT);
+    ByteBuffer end = littleEndian(22);
+    end.putInt(0x06054b50);
+    end.putShort((short) 0);
+    end.putShort((short) 0);
+    end.putShort((short) entryCount);
+    end.putShort((short) entryCount);
+    end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) directorySize);
+    end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) directoryOffset);
+    end.putShort((short) 0); // comentário
+    writeRaw(end);
+  }
+
+  private void writeRaw(ByteBuffer buffer) throws IOException {
+    try {
+      out.write(buffer.array(), 0, buffer.position());
+    } catch (Throwable e) {
+      failed = true;
+      throw e;
+    }
+    written += buffer.position();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Fluxo já fechado");
+    if (failed) throw new IOException("ZIP incompleto: a gravação de um bloco anterior falhou");
+  }
+
+  private static ByteBuffer littleEndian(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Data e hora no formato do MS-DOS usado pelo ZIP (resolução de 2 segundos, a partir de 1980) */
+  private static int dosTime(long millis) {
+    LocalDateTime time =
+        LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    if (time.getYear() < 1980) {
+      return (1 << 21) | (1 << 16); // 1980-01-01
+    }
+    return (time.getYear() - 1980) << 25
+        | time.getMonthValue() << 21
+        | time.getDayOfMonth() << 16
+        | time.getHour() << 11
+        | time.getMinute() << 5
+        | time.getSecond() >> 1;
+  }
+
+  /** Dados de uma entrada gravada, usados no diretório central */
+  private static final class Entry {
+
+    private final byte[] name;
+    private final int dosTime;
+    private final long offset; // posição do header local
+    private long crc;
+    private long size;
+    private long compressedSize;
+
+    Entry(byte[] name, int dosTime, long offset) {
+      this.name = name;
+      this.dosTime = dosTime;
+      this.offset = offset;
+    }
+  }
+}
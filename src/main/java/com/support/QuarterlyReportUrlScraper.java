@@ -1,7 +1,20 @@
 package com.support;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jsoup.Jsoup;
@@ -16,34 +29,64 @@ public class QuarterlyReportUrlScraper {
   // Padrão de nome longo: 2024_1_trimestre.zip
   private static final Pattern LONG_NAME_PATTERN = Pattern.compile("\\d{4}_(\\d)_trimestre\\.zip");
 
-  // Retorna as URLs dos relatórios trimestrais mais recentes
-  public List<String> fetchLatestQuarterReportUrls(String baseUrl, int maxResults)
-      throws IOException {
+  // Separador dos links gravados no cache
+  private static final String LINK_SEPARATOR = "\n";
 
-    // Busca os anos disponíveis no índice principal
-    List<String> availableYears = fetchAvailableYearsFromIndex(baseUrl);
+  // Cliente HTTP compartilhado (HTTP/2 quando o servidor suporta, conexões reaproveitadas)
+  private final HttpClient client;
 
-    // Obtém o ano mais recente disponível
-    int currentYear = findMostRecentYear(availableYears);
+  // Diretório do cache das listagens; null desativa o cache
+  private final Path cacheDir;
 
-    // Mapa ordenado por trimestre em ordem decrescente
-    Map<Integer, String> quarterToReportMap = new TreeMap<>(Collections.reverseOrder());
+  public QuarterlyReportUrlScraper() {
+    this(
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build(),
+        Path.of(System.getProperty("user.dir"), "cache", "listings"));
+  }
 
-    while (quarterToReportMap.size() < maxResults) {
+  // Permite informar o cliente HTTP e o diretório do cache (null para não usar cache)
+  public QuarterlyReportUrlScraper(HttpClient client, Path cacheDir) {
+    this.client = client;
+    this.cacheDir = cacheDir;
+  }
 
-      // Interrompe se o ano não existir no índice
-      if (!availableYears.contains(String.valueOf(currentYear))) {
-        break;
-      }
+  // Retorna as URLs dos relatórios trimestrais mais recentes
+  public List<String> fetchLatestQuarterReportUrls(String baseUrl, int maxResults)
+      throws IOException {
 
-      // Busca os arquivos ZIP do ano atual
-      List<String> zipFiles = fetchZipFilesFromYearPage(baseUrl + currentYear);
+    // Busca os anos disponíveis no índice principal, do mais recente para o mais antigo
+    List<Integer> availableYears = fetchAvailableYearsFromIndex(baseUrl);
 
-      // Coleta os relatórios trimestrais válidos
-      collectLatestQuarterReports(zipFiles, currentYear, quarterToReportMap);
+    // Mapa ordenado por ano e trimestre (ano * 10 + trimestre) em ordem decrescente
+    Map<Integer, String> quarterToReportMap = new TreeMap<>(Collections.reverseOrder());
 
-      // Retrocede para o ano anterior
-      currentYear--;
+    int next = 0;
+    while (quarterToReportMap.size() < maxResults && next < availableYears.size()) {
+
+      // Busca em paralelo os anos que ainda devem bastar (4 trimestres por ano, mais o ano
+      // corrente, que pode estar incompleto)
+      int missing = maxResults - quarterToReportMap.size();
+      int batch = Math.min((missing + 3) / 4 + 1, availableYears.size() - next);
+      List<Integer> years = availableYears.subList(next, next + batch);
+      List<CompletableFuture<List<String>>> pages = new ArrayList<>();
+      for (int year : years) {
+        pages.add(fetchLinksAsync(baseUrl + year + "/"));
+      }
+      next += batch;
+
+      // Consome os anos em ordem, parando assim que houver trimestres suficientes
+      for (int i = 0; i < years.size(); i++) {
+        if (quarterToReportMap.size() >= maxResults) {
+          pages.get(i).cancel(true);
+          continue;
+        }
+        List<String> zipFiles = zipFiles(join(pages.get(i)));
+        collectLatestQuarterReports(zipFiles, years.get(i), quarterToReportMap);
+      }
     }
 
     // Retorna apenas a quantidade solicitada
@@ -51,13 +94,11 @@ public class QuarterlyReportUrlScraper {
   }
 
   // Extrai os anos disponíveis a partir da página índice
-  private List<String> fetchAvailableYearsFromIndex(String url) throws IOException {
+  private List<Integer> fetchAvailableYearsFromIndex(String url) throws IOException {
 
-    Document doc = fetchDocument(url);
-    List<String> years = new ArrayList<>();
+    List<Integer> years = new ArrayList<>();
 
-    for (Element link : doc.select("a")) {
-      String href = link.attr("href");
+    for (String href : join(fetchLinksAsync(url))) {
 
       // Ignora navegação para diretório pai
       if ("../".equals(href)) continue;
@@ -67,22 +108,21 @@ public class QuarterlyReportUrlScraper {
 
       // Adiciona apenas valores numéricos válidos
       try {
-        Integer.parseInt(href);
-        years.add(href);
+        years.add(Integer.parseInt(href));
       } catch (NumberFormatException ignored) {
       }
     }
+
+    years.sort(Collections.reverseOrder());
     return years;
   }
 
-  // Obtém os nomes dos arquivos ZIP disponíveis em um ano específico
-  private List<String> fetchZipFilesFromYearPage(String url) throws IOException {
+  // Obtém os nomes dos arquivos ZIP entre os links da página de um ano
+  private static List<String> zipFiles(List<String> links) {
 
-    Document doc = fetchDocument(url);
     List<String> zipFiles = new ArrayList<>();
 
-    for (Element link : doc.select("a")) {
-      String href = link.attr("href");
+    for (String href : links) {
 
       // Ignora diretório pai e arquivos não ZIP
       if ("../".equals(href)) continue;
@@ -105,7 +145,7 @@ public class QuarterlyReportUrlScraper {
       if (quarter == null) continue;
 
       // Adiciona apenas se o trimestre ainda não existir
-      quarterToReportMap.putIfAbsent(quarter, year + "/" + filename);
+      quarterToReportMap.putIfAbsent(year * 10 + quarter, year + "/" + filename);
     }
   }
 
@@ -125,21 +165,104 @@ public class QuarterlyReportUrlScraper {
     return null;
   }
 
-  // Encontra o ano mais recente a partir da lista de anos disponíveis
-  private static int findMostRecentYear(List<String> years) {
-    int mostRecent = Integer.parseInt(years.get(0));
+  // Busca os links (href) da página, revalidando a listagem em cache com uma requisição
+  // condicional; 304 reaproveita os links já extraídos sem baixar nem analisar o HTML
+  private CompletableFuture<List<String>> fetchLinksAsync(String url) {
+
+    Properties cached = readCache(url);
+
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+    if (cached != null && cached.getProperty("etag") != null) {
+      request.header("If-None-Match", cached.getProperty("etag"));
+    }
+    if (cached != null && cached.getProperty("lastModified") != null) {
+      request.header("If-Modified-Since", cached.getProperty("lastModified"));
+    }
+
+    return client
+        .sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+        .thenApply(
+            response -> {
+              if (response.statusCode() == 304 && cached != null) {
+                return splitLinks(cached.getProperty("links"));
+              }
+              if (response.statusCode() != 200) {
+                throw new UncheckedIOException(
+                    new IOException(
+                        "Falha ao acessar " + url + ". Status: " + response.statusCode()));
+              }
+
+              List<String> links = parseLinks(response.body(), url);
+              writeCache(
+                  url,
+                  response.headers().firstValue("ETag").orElse(null),
+                  response.headers().firstValue("Last-Modified").orElse(null),
+                  links);
+              return links;
+            });
+  }
+
+  // Faz o parse do HTML da página e retorna os links
+  private static List<String> parseLinks(String html, String url) {
+    Document doc = Jsoup.parse(html, url);
+    List<String> links = new ArrayList<>();
+
+    for (Element link : doc.select("a")) {
+      links.add(link.attr("href"));
+    }
+    return links;
+  }
+
+  private static List<String> splitLinks(String links) {
+    if (links == null || links.isEmpty()) return List.of();
+    return List.of(links.split(LINK_SEPARATOR));
+  }
+
+  // Lê a listagem em cache; null se não existir ou estiver corrompida
+  private Properties readCache(String url) {
+    if (cacheDir == null) return null;
 
-    for (String year : years) {
-      int value = Integer.parseInt(year);
-      if (value > mostRecent) {
-        mostRecent = value;
+    Path file = cacheFile(url);
+    if (!Files.exists(file)) return null;
+
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      props.load(reader);
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+    return url.equals(props.getProperty("url")) ? props : null;
+  }
+
+  // Grava a listagem no cache; falhas só fazem a próxima execução baixar a página de novo
+  private void writeCache(String url, String etag, String lastModified, List<String> links) {
+    if (cacheDir == null || (etag == null && lastModified == null)) return;
+
+    Properties props = new Properties();
+    props.setProperty("url", url);
+    if (etag != null) props.setProperty("etag", etag);
+    if (lastModified != null) props.setProperty("lastModified", lastModified);
+    props.setProperty("links", String.join(LINK_SEPARATOR, links));
+
+    try {
+      Files.createDirectories(cacheDir);
+      Path file = cacheFile(url);
+      Path tempFile = Files.createTempFile(cacheDir, file.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        props.store(writer, null);
       }
+      Helpers.moveAtomically(tempFile, file);
+    } catch (IOException e) {
+      System.out.println("Erro ao gravar cache de " + url + ": " + e.getMessage());
     }
-    return mostRecent;
   }
 
-  // Faz o download e parse do HTML da página
-  private static Document fetchDocument(String url) throws IOException {
-    return Jsoup.connect(url).get();
+  private Path cacheFile(String url) {
+    return cacheDir.resolve(URLEncoder.encode(url, StandardCharsets.UTF_8) + ".properties");
+  }
+
+  // Aguarda a página repassando a exceção original
+  private static List<String> join(CompletableFuture<List<String>> page) throws IOException {
+    return Helpers.await(page, "Consulta das páginas interrompida");
   }
 }
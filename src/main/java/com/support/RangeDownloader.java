@@ -0,0 +1,462 @@
+package com.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Download de arquivos com requisições HTTP Range. Arquivos grandes são divididos em segmentos
+ * baixados em paralelo e gravados direto nas suas posições de um arquivo temporário (.part). O
+ * progresso de cada segmento fica em um arquivo de estado (.part.state), de modo que uma falha ou
+ * interrupção é retomada do último byte gravado, inclusive em uma nova execução. O destino só passa
+ * a existir, por renomeação, quando o download está completo. Servidores sem suporte a Range
+ * recebem um GET simples.
+ */
+public class RangeDownloader {
+
+  private static final int DEFAULT_SEGMENTS = 4;
+  private static final long DEFAULT_MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+  private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024; // progresso salvo a cada 4 MB
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_ATTEMPTS = 3; // tentativas por segmento antes de desistir
+  private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(30); // até os cabeçalhos
+
+  private final HttpClient client;
+  private int segments = DEFAULT_SEGMENTS;
+  private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+  public RangeDownloader(HttpClient client) {
+    this.client = client;
+  }
+
+  /** Quantidade máxima de segmentos paralelos por arquivo */
+  public RangeDownloader segments(int segments) {
+    if (segments < 1) {
+      throw new IllegalArgumentException("Quantidade de segmentos inválida: " + segments);
+    }
+    this.segments = segments;
+    return this;
+  }
+
+  /** Tamanho mínimo (em bytes) de cada segmento; arquivos menores usam menos segmentos */
+  public RangeDownloader minSegmentSize(long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Tamanho de segmento inválido: " + bytes);
+    }
+    this.minSegmentSize = bytes;
+    return this;
+  }
+
+  /** Baixa a URI para o destino, retomando um download anterior incompleto quando possível */
+  public void download(URI uri, Path destination) throws IOException {
+    download(uri, destination, null);
+  }
+
+  /**
+   * Baixa a URI para o destino só se ela mudou desde a versão em cache (If-None-Match /
+   * If-Modified-Since). Retorna null quando o servidor responde 304 e o destino fica como está;
+   * caso contrário, o tamanho e os validadores da versão baixada.
+   */
+  public RemoteFile download(URI uri, Path destination, RemoteFile cached) throws IOException {
+    Path partFile = destination.resolveSibling(destination.getFileName() + ".part");
+    Path stateFile = destination.resolveSibling(destination.getFileName() + ".part.state");
+
+    HttpRequest head =
+        conditional(request(uri), cached)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+    HttpResponse<Void> response = send(head, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() == 304) return null;
+
+    RemoteFile remote = response.statusCode() == 200 ? RemoteFile.of(response.headers()) : null;
+    if (remote == null || remote.size() <= 0 || !acceptsRanges(response.headers())) {
+      // Sem Range (ou sem HEAD): o próprio GET é condicional
+      remote = downloadWhole(uri, partFile, cached);
+      if (remote == null) return null;
+    } else {
+      try {
+        downloadSegments(uri, partFile, stateFile, remote);
+      } catch (RangeNotHonoredException e) {
+        // O servidor ignorou o Range ou o arquivo mudou no meio do caminho: recomeça inteiro
+        Files.deleteIfExists(stateFile);
+        remote = downloadWhole(uri, partFile, null);
+      }
+    }
+
+    Helpers.moveAtomically(partFile, destination);
+    Files.deleteIfExists(stateFile);
+    return remote;
+  }
+
+  /**
+   * Tamanho e validadores da versão atual no servidor, por um HEAD sem condições. Retorna null se
+   * o servidor não responde 200 com o tamanho.
+   */
+  public RemoteFile head(URI uri) throws IOException {
+    HttpRequest head = request(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+    HttpResponse<Void> response = send(head, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() != 200) return null;
+
+    RemoteFile remote = RemoteFile.of(response.headers());
+    return remote.size() < 0 ? null : remote;
+  }
+
+  /** Requisição com limite de espera, para que um servidor parado conte como falha do segmento */
+  private static HttpRequest.Builder request(URI uri) {
+    return HttpRequest.newBuilder(uri).timeout(RESPONSE_TIMEOUT);
+  }
+
+  /** Acrescenta os validadores da versão em cache, se houver */
+  private static HttpRequest.Builder conditional(HttpRequest.Builder builder, RemoteFile cached) {
+    if (cached != null && cached.etag() != null) {
+      builder.header("If-None-Match", cached.etag());
+    }
+    if (cached != null && cached.lastModified() != null) {
+      builder.header("If-Modified-Since", cached.lastModified());
+    }
+    return builder;
+  }
+
+  private static boolean acceptsRanges(HttpHeaders headers) {
+    return headers.allValues("Accept-Ranges").stream()
+        .anyMatch(value -> value.toLowerCase().contains("bytes"));
+  }
+
+  /** GET simples, sem retomada, gravando no arquivo temporário; null se não mudou (304) */
+  private RemoteFile downloadWhole(URI uri, Path partFile, RemoteFile cached) throws IOException {
+    HttpRequest request = conditional(request(uri), cached).GET().build();
+    HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+    try (InputStream body = response.body()) {
+      if (response.statusCode() == 304) return null;
+      if (response.statusCode() != 200) {
+        throw new IOException("Falha no download. Status: " + response.statusCode());
+      }
+      long size = Files.copy(body, partFile, StandardCopyOption.REPLACE_EXISTING);
+      RemoteFile remote = RemoteFile.of(response.headers());
+      return new RemoteFile(size, remote.etag(), remote.lastModified());
+    }
+  }
+
+  /** Baixa os segmentos pendentes em paralelo, salvando o progresso mesmo em caso de falha */
+  private void downloadSegments(URI uri, Path partFile, Path stateFile, RemoteFile remote)
+      throws IOException {
+
+    DownloadState state = DownloadState.load(stateFile, remote);
+    if (state == null || !Files.exists(partFile)) {
+      state = DownloadState.plan(remote, segmentCount(remote.size()));
+      Files.deleteIfExists(partFile);
+    } else {
+      System.out.println("Retomando download: " + partFile.getFileName());
+    }
+
+    FileChannel channel =
+        FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    ExecutorService pool =
+        Executors.newFixedThreadPool(state.segmentCount(), Helpers.daemonThreads("range-download"));
+
+    DownloadState current = state;
+    List<Future<Void>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < current.segmentCount(); i++) {
+        int segment = i;
+        futures.add(
+            pool.submit(
+                () -> {
+                  downloadSegment(uri, channel, current, segment, stateFile);
+                  return null;
+                }));
+      }
+
+      for (Future<Void> future : futures) {
+        Helpers.await(future, "Download interrompido");
+      }
+    } finally {
+      // Cancela os demais segmentos quando um deles falha e espera todos encerrarem, para que
+      // nenhum grave no .part depois do estado final, da renomeação ou da remoção do estado
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      pool.shutdownNow();
+      finish(pool, channel, partFile, current, stateFile);
+    }
+  }
+
+  /**
+   * Espera as threads dos segmentos cancelados e salva o estado final. A interrupção da thread fica
+   * suspensa até o fim, já que o FileChannel falha quando usado por uma thread interrompida.
+   */
+  private static void finish(
+      ExecutorService pool,
+      FileChannel channel,
+      Path partFile,
+      DownloadState state,
+      Path stateFile)
+      throws IOException {
+
+    boolean interrupted = Thread.interrupted();
+    try {
+      boolean terminated = false;
+      while (!terminated) {
+        try {
+          terminated = pool.awaitTermination(RESPONSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+          if (!terminated) {
+            throw new IOException("Segmentos do download não encerraram após o cancelamento");
+          }
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      try {
+        channel.close();
+        // Reabre o .part: a interrupção de um segmento cancelado fecha o canal compartilhado
+        try (FileChannel sync = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+          state.save(stateFile, sync);
+        }
+      } finally {
+        if (interrupted) Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Baixa um segmento a partir do último byte gravado, com novas tentativas em caso de erro */
+  private void downloadSegment(
+      URI uri, FileChannel channel, DownloadState state, int segment, Path stateFile)
+      throws IOException {
+
+    for (int attempt = 1; ; attempt++) {
+      long position = state.position(segment);
+      long end = state.end(segment);
+      if (position >= end) return;
+
+      try {
+        transferRange(uri, channel, state, segment, position, end, stateFile);
+        return;
+      } catch (RangeNotHonoredException | InterruptedIOException e) {
+        throw e;
+      } catch (IOException e) {
+        // Sem nova tentativa quando o download inteiro está sendo cancelado
+        boolean cancelled = !channel.isOpen() || Thread.currentThread().isInterrupted();
+        if (attempt >= MAX_ATTEMPTS || cancelled) throw e;
+        System.out.println("Retomando segmento " + segment + " após erro: " + e.getMessage());
+      }
+    }
+  }
+
+  private void transferRange(
+      URI uri,
+      FileChannel channel,
+      DownloadState state,
+      int segment,
+      long position,
+      long end,
+      Path stateFile)
+      throws IOException {
+
+    HttpRequest.Builder builder =
+        request(uri).header("Range", "bytes=" + position + "-" + (end - 1));
+    RemoteFile remote = state.remote();
+    String validator = remote.etag() != null ? remote.etag() : remote.lastModified();
+    if (validator != null) {
+      builder.header("If-Range", validator); // arquivo alterado responde 200 com o conteúdo novo
+    }
+
+    HttpResponse<InputStream> response =
+        send(builder.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+
+    try (InputStream body = response.body()) {
+      String contentRange = response.headers().firstValue("Content-Range").orElse("");
+      if (response.statusCode() != 206 || !contentRange.startsWith("bytes " + position + "-")) {
+        throw new RangeNotHonoredException();
+      }
+
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long sinceCheckpoint = 0;
+      while (position < end) {
+        int n = body.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+        if (n < 0) {
+          throw new IOException("Conexão encerrada antes do fim do segmento " + segment);
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, n);
+        while (bytes.hasRemaining()) {
+          position += channel.write(bytes, position);
+        }
+        state.advance(segment, n);
+
+        sinceCheckpoint += n;
+        if (sinceCheckpoint >= CHECKPOINT_BYTES) {
+          state.save(stateFile, channel);
+          sinceCheckpoint = 0;
+        }
+      }
+    }
+  }
+
+  private int segmentCount(long size) {
+    long bySize = Math.max(1, size / minSegmentSize);
+    return (int) Math.min(segments, bySize);
+  }
+
+  private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+      throws IOException {
+    try {
+      return client.send(request, handler);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Download interrompido: " + request.uri());
+    }
+  }
+
+  /** Tamanho e validadores (ETag, Last-Modified) de uma versão do arquivo remoto */
+  public record RemoteFile(long size, String etag, String lastModified) {
+
+    static RemoteFile of(HttpHeaders headers) {
+      return new RemoteFile(
+          headers.firstValueAsLong("Content-Length").orElse(-1),
+          headers.firstValue("ETag").orElse(null),
+          headers.firstValue("Last-Modified").orElse(null));
+    }
+  }
+
+  /** O servidor respondeu sem o intervalo pedido (Range ignorado ou arquivo alterado) */
+  private static final class RangeNotHonoredException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    RangeNotHonoredException() {
+      super("Servidor não respeitou o Range solicitado");
+    }
+  }
+
+  /**
+   * Segmentos do download e bytes já gravados em cada um, persistidos em um arquivo de propriedades
+   * ao lado do .part.
+   */
+  private static final class DownloadState {
+
+    private final RemoteFile remote;
+    private final long[] starts;
+    private final long[] ends;
+    private final AtomicLongArray done;
+
+    private DownloadState(RemoteFile remote, long[] starts, long[] ends, long[] done) {
+      this.remote = remote;
+      this.starts = starts;
+      this.ends = ends;
+      this.done = new AtomicLongArray(done);
+    }
+
+    /** Divide o arquivo em segmentos de tamanhos iguais */
+    static DownloadState plan(RemoteFile remote, int count) {
+      long[] starts = new long[count];
+      long[] ends = new long[count];
+      long size = remote.size();
+      for (int i = 0; i < count; i++) {
+        starts[i] = size * i / count;
+        ends[i] = size * (i + 1) / count;
+      }
+      return new DownloadState(remote, starts, ends, new long[count]);
+    }
+
+    /** Carrega o estado salvo; null se não existir ou se o arquivo remoto mudou */
+    static DownloadState load(Path stateFile, RemoteFile remote) throws IOException {
+      if (!Files.exists(stateFile)) return null;
+
+      Properties props = new Properties();
+      try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+        props.load(reader);
+      } catch (IllegalArgumentException e) {
+        return null; // arquivo de estado corrompido
+      }
+
+      boolean sameFile =
+          String.valueOf(remote.size()).equals(props.getProperty("size"))
+              && String.valueOf(remote.etag()).equals(props.getProperty("etag"))
+              && String.valueOf(remote.lastModified()).equals(props.getProperty("lastModified"));
+      if (!sameFile) return null;
+
+      try {
+        int count = Integer.parseInt(props.getProperty("segments"));
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        long[] done = new long[count];
+        for (int i = 0; i < count; i++) {
+          starts[i] = Long.parseLong(props.getProperty("segment." + i + ".start"));
+          ends[i] = Long.parseLong(props.getProperty("segment." + i + ".end"));
+          done[i] = Long.parseLong(props.getProperty("segment." + i + ".done"));
+        }
+        return new DownloadState(remote, starts, ends, done);
+      } catch (RuntimeException e) {
+        return null; // estado incompleto: recomeça
+      }
+    }
+
+    /**
+     * Grava o progresso. Os bytes registrados são levados ao disco (force) antes da gravação, para
+     * que uma retomada após queda do sistema nunca pule trechos que ficaram só no cache.
+     */
+    synchronized void save(Path stateFile, FileChannel channel) throws IOException {
+      Properties props = new Properties();
+      props.setProperty("size", String.valueOf(remote.size()));
+      props.setProperty("etag", String.valueOf(remote.etag()));
+      props.setProperty("lastModified", String.valueOf(remote.lastModified()));
+      props.setProperty("segments", String.valueOf(starts.length));
+      for (int i = 0; i < starts.length; i++) {
+        props.setProperty("segment." + i + ".start", String.valueOf(starts[i]));
+        props.setProperty("segment." + i + ".end", String.valueOf(ends[i]));
+        props.setProperty("segment." + i + ".done", String.valueOf(done.get(i)));
+      }
+      channel.force(false); // depois de ler o progresso: cobre tudo o que ele registra
+
+      Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        props.store(writer, null);
+      }
+      Helpers.moveAtomically(tempFile, stateFile);
+    }
+
+    RemoteFile remote() {
+      return remote;
+    }
+
+    int segmentCount() {
+      return starts.length;
+    }
+
+    long position(int segment) {
+      return starts[segment] + done.get(segment);
+    }
+
+    long end(int segment) {
+      return ends[segment];
+    }
+
+    void advance(int segment, long bytes) {
+      done.addAndGet(segment, bytes);
+    }
+  }
+}
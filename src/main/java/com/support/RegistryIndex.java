@@ -0,0 +1,477 @@
+package com.support;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Índice binário de um CSV de cadastro (como o de operadoras), gravado uma vez em disco e mapeado
+ * em memória nas execuções seguintes: as consultas leem direto do arquivo mapeado, sem reler o CSV.
+ * O índice guarda o hash do CSV de origem e é reconstruído sozinho quando o arquivo muda.
+ *
+ * <p>Cada coluna-chave tem sua tabela, com as mesmas regras de chave do JoinIndex: inteiros
+ * canônicos em uma tabela de endereçamento aberto sobre long e as demais chaves em uma tabela
+ * ordenada consultada por busca binária. A última ocorrência de uma chave prevalece, como no
+ * mergeByKey(). Depois de aberto, o índice só é lido e pode ser consultado por várias threads.
+ *
+ * <p>Layout do arquivo: MAGIC, VERSION, hash da origem, delimitador, header, offsets das linhas, as
+ * tabelas de cada coluna-chave, as linhas (campos com tamanho em bytes, -1 para ausente) e o texto
+ * das chaves não inteiras, os dois últimos precedidos do tamanho em bytes.
+ */
+public final class RegistryIndex implements Closeable {
+
+  static final int NOT_FOUND = JoinIndex.NOT_FOUND;
+
+  private static final int MAGIC = 0x52474958; // "RGIX"
+  private static final int VERSION = 1;
+  private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+  private static final int TEXT_ENTRY_BYTES = 3 * Integer.BYTES;
+
+  private final Path source;
+  private final String sourceHash;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final String[] header;
+  private final int rowCount;
+  private final int rowOffsetsStart;
+  private final int dataStart;
+  private final Map<String, KeyTable> keyTables = new HashMap<>();
+  private final AtomicReferenceArray<String[]> decodedRows; // linhas já decodificadas
+
+  private RegistryIndex(Path source, String sourceHash, FileChannel channel) throws IOException {
+    this.source = source;
+    this.sourceHash = sourceHash;
+    this.channel = channel;
+    if (channel.size() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Índice maior que 2 GB: " + channel.size());
+    }
+    this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+    Reader in = new Reader(buffer, 0);
+    in.skip(2 * Integer.BYTES); // MAGIC e VERSION, conferidos em isCurrent()
+    in.string(); // hash da origem
+    in.string(); // delimitador
+
+    header = new String[in.readInt()];
+    for (int i = 0; i < header.length; i++) {
+      header[i] = in.string();
+    }
+
+    rowCount = in.readInt();
+    rowOffsetsStart = in.position();
+    in.skip(rowCount * Integer.BYTES);
+
+    int keyColumns = in.readInt();
+    List<KeyTable> tables = new ArrayList<>(keyColumns);
+    for (int k = 0; k < keyColumns; k++) {
+      String column = in.string();
+      int capacity = in.readInt();
+      int slotsStart = in.position();
+      in.skip(capacity * SLOT_BYTES);
+      int textCount = in.readInt();
+      int textStart = in.position();
+      in.skip(textCount * TEXT_ENTRY_BYTES);
+      tables.add(new KeyTable(capacity, slotsStart, textCount, textStart));
+      keyTables.put(column, tables.get(k));
+    }
+
+    int dataLength = in.readInt();
+    dataStart = in.position();
+    in.skip(dataLength);
+    in.readInt(); // tamanho do texto das chaves
+    int poolStart = in.position();
+    for (KeyTable table : tables) {
+      table.poolStart = poolStart;
+    }
+    decodedRows = new AtomicReferenceArray<>(rowCount);
+  }
+
+  /**
+   * Abre o índice de csvFile em indexFile, reconstruindo-o quando ele não existe, está corrompido
+   * ou foi gerado a partir de outro conteúdo, delimitador ou colunas-chave.
+   */
+  public static RegistryIndex open(
+      Path csvFile, String delimiter, Path indexFile, String... keyColumns) throws IOException {
+    if (keyColumns.length == 0) {
+      throw new IllegalArgumentException("Informe ao menos uma coluna-chave");
+    }
+    String[] keys = Arrays.stream(keyColumns).map(Helpers::columnName).toArray(String[]::new);
+    String sourceHash = Helpers.sha256(csvFile);
+
+    if (!isCurrent(indexFile, sourceHash, delimiter, keys)) {
+      build(csvFile, delimiter, indexFile, sourceHash, keys);
+    }
+    return new RegistryIndex(
+        csvFile, sourceHash, FileChannel.open(indexFile, StandardOpenOption.READ));
+  }
+
+  /** CSV a partir do qual o índice foi gerado */
+  public Path source() {
+    return source;
+  }
+
+  /** Hash SHA-256 do conteúdo do CSV de origem */
+  public String sourceHash() {
+    return sourceHash;
+  }
+
+  /** Header do CSV de origem, sem tratamento */
+  public String[] header() {
+    return header.clone();
+  }
+
+  public int rowCount() {
+    return rowCount;
+  }
+
+  /** Linha da última ocorrência da chave na coluna-chave, ou -1 */
+  public int find(String keyColumn, String rawKey) {
+    KeyTable table = keyTables.get(Helpers.columnName(keyColumn));
+    if (table == null) {
+      throw new IllegalArgumentException("Coluna não indexada: " + keyColumn);
+    }
+    return table.find(rawKey);
+  }
+
+  /** Indica se a coluna foi indexada como coluna-chave */
+  public boolean isIndexed(String column) {
+    return keyTables.containsKey(Helpers.columnName(column));
+  }
+
+  /** Valores da linha, como lidos do CSV de origem */
+  public String[] row(int row) {
+    return values(row).clone();
+  }
+
+  /** Valor da coluna na linha da chave (ex.: CNPJ -> RAZAO_SOCIAL), ou null se não encontrada */
+  public String lookup(String keyColumn, String rawKey, String valueColumn) {
+    int column =
+        Arrays.stream(header)
+            .map(Helpers::columnName)
+            .toList()
+            .indexOf(Helpers.columnName(valueColumn));
+    if (column == -1) {
+      throw new IllegalArgumentException("Coluna não encontrada: " + valueColumn);
+    }
+    int row = find(keyColumn, rawKey);
+    if (row == NOT_FOUND) return null;
+
+    String[] values = values(row);
+    return column < values.length ? values[column] : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** Valores da linha compartilhados entre as consultas; não devem ser alterados */
+  String[] values(int row) {
+    String[] values = decodedRows.get(row);
+    if (values == null) {
+      values = decodeRow(row);
+      decodedRows.set(row, values);
+    }
+    return values;
+  }
+
+  private String[] decodeRow(int row) {
+    int offset = buffer.getInt(rowOffsetsStart + row * Integer.BYTES);
+    Reader in = new Reader(buffer, dataStart + offset);
+    String[] values = new String[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.nullableString();
+    }
+    return values;
+  }
+
+  /** Confere se o índice existente foi gerado a partir da mesma origem e configuração */
+  private static boolean isCurrent(
+      Path indexFile, String sourceHash, String delimiter, String[] keys) throws IOException {
+    if (!Files.isRegularFile(indexFile)) return false;
+
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) return false;
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      Reader in = new Reader(buffer, 0);
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+      if (!in.string().equals(sourceHash) || !in.string().equals(delimiter)) return false;
+
+      in.skipStrings(in.readInt()); // header
+      int rowCount = in.readInt();
+      in.skip(rowCount * Integer.BYTES);
+
+      if (in.readInt() != keys.length) return false;
+      for (String key : keys) {
+        if (!in.string().equals(key)) return false;
+        in.skip(in.readInt() * SLOT_BYTES);
+        in.skip(in.readInt() * TEXT_ENTRY_BYTES);
+      }
+      in.skip(in.readInt()); // linhas
+      in.skip(in.readInt()); // texto das chaves
+      return in.position() == buffer.limit(); // arquivo truncado é reconstruído
+    } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+      return false; // arquivo corrompido
+    }
+  }
+
+  /** Lê o CSV e grava o índice em um arquivo temporário, publicado com uma troca atômica */
+  private static void build(
+      Path csvFile, String delimiter, Path indexFile, String sourceHash, String[] keys)
+      throws IOException {
+    String[] header;
+    List<String[]> rows = new ArrayList<>();
+    try (CsvTokenizer tokenizer = CsvTokenizer.open(csvFile, delimiter)) {
+      header = tokenizer.next() ? tokenizer.toArray() : new String[0];
+      while (tokenizer.next()) {
+        rows.add(tokenizer.toArray());
+      }
+    }
+
+    List<String> cleanHeader = Arrays.stream(header).map(Helpers::columnName).toList();
+    int[] keyIndexes = new int[keys.length];
+    for (int k = 0; k < keys.length; k++) {
+      keyIndexes[k] = cleanHeader.indexOf(keys[k]);
+      if (keyIndexes[k] == -1) {
+        throw new IllegalArgumentException("Coluna-chave não encontrada no CSV: " + keys[k]);
+      }
+    }
+
+    // Linhas: quantidade de campos e cada campo com o tamanho em bytes
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    DataOutputStream dataOut = new DataOutputStream(data);
+    int[] rowOffsets = new int[rows.size()];
+    for (int r = 0; r < rows.size(); r++) {
+      rowOffsets[r] = dataOut.size();
+      String[] values = rows.get(r);
+      dataOut.writeInt(values.length);
+      for (String value : values) {
+        writeNullableString(dataOut, value);
+      }
+    }
+
+    ByteArrayOutputStream pool = new ByteArrayOutputStream(); // texto das chaves não inteiras
+    Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    Files.createDirectories(indexFile.toAbsolutePath().getParent());
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, sourceHash);
+      writeString(out, delimiter);
+      out.writeInt(header.length);
+      for (String column : header) {
+        writeString(out, column == null ? "" : column);
+      }
+
+      out.writeInt(rows.size());
+      for (int offset : rowOffsets) {
+        out.writeInt(offset);
+      }
+
+      out.writeInt(keys.length);
+      for (int k = 0; k < keys.length; k++) {
+        writeString(out, keys[k]);
+        writeKeyTable(out, pool, rows, keyIndexes[k]);
+      }
+
+      out.writeInt(data.size());
+      data.writeTo(out);
+      out.writeInt(pool.size());
+      pool.writeTo(out);
+    }
+    Helpers.moveAtomically(tempFile, indexFile);
+  }
+
+  /** Grava as tabelas de uma coluna-chave: inteiros por hash e texto ordenado por bytes */
+  private static void writeKeyTable(
+      DataOutputStream out, ByteArrayOutputStream pool, List<String[]> rows, int keyIndex)
+      throws IOException {
+    Map<Long, Integer> integerKeys = new HashMap<>();
+    Map<String, Integer> textKeys = new HashMap<>();
+    for (int r = 0; r < rows.size(); r++) {
+      String[] values = rows.get(r);
+      String rawKey = keyIndex < values.length ? values[keyIndex] : null;
+      long key = JoinIndex.parseKey(rawKey);
+      if (key == JoinIndex.NOT_INTEGER) {
+        textKeys.put(Helpers.clean(rawKey), r);
+      } else {
+        integerKeys.put(key, r);
+      }
+    }
+
+    // Endereçamento aberto com sondagem linear, como no JoinIndex
+    int capacity = Integer.highestOneBit(Math.max(integerKeys.size(), 4) * 2 - 1) << 1;
+    long[] slotKeys = new long[capacity];
+    int[] slotRows = new int[capacity];
+    Arrays.fill(slotRows, NOT_FOUND);
+    int shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    for (Map.Entry<Long, Integer> entry : integerKeys.entrySet()) {
+      int slot = (int) ((entry.getKey() * JoinIndex.HASH_MULTIPLIER) >>> shift);
+      while (slotRows[slot] != NOT_FOUND) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      slotKeys[slot] = entry.getKey();
+      slotRows[slot] = entry.getValue();
+    }
+    out.writeInt(capacity);
+    for (int i = 0; i < capacity; i++) {
+      out.writeLong(slotKeys[i]);
+      out.writeInt(slotRows[i]);
+    }
+
+    List<byte[]> texts =
+        textKeys.keySet().stream()
+            .map(key -> key.getBytes(StandardCharsets.UTF_8))
+            .sorted(Arrays::compareUnsigned)
+            .toList();
+    out.writeInt(texts.size());
+    for (byte[] text : texts) {
+      out.writeInt(pool.size());
+      out.writeInt(text.length);
+      out.writeInt(textKeys.get(new String(text, StandardCharsets.UTF_8)));
+      pool.write(text);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      writeString(out, value);
+    }
+  }
+
+  /** Tabelas de uma coluna-chave dentro do arquivo mapeado */
+  private final class KeyTable {
+
+    private final int capacity;
+    private final int slotsStart;
+    private final int shift;
+    private final int textCount;
+    private final int textStart;
+    private int poolStart;
+
+    KeyTable(int capacity, int slotsStart, int textCount, int textStart) {
+      this.capacity = capacity;
+      this.slotsStart = slotsStart;
+      this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+      this.textCount = textCount;
+      this.textStart = textStart;
+    }
+
+    int find(String rawKey) {
+      long key = JoinIndex.parseKey(rawKey);
+      return key == JoinIndex.NOT_INTEGER ? findText(Helpers.clean(rawKey)) : find(key);
+    }
+
+    private int find(long key) {
+      int slot = (int) ((key * JoinIndex.HASH_MULTIPLIER) >>> shift);
+      while (true) {
+        int position = slotsStart + slot * SLOT_BYTES;
+        int row = buffer.getInt(position + Long.BYTES);
+        if (row == NOT_FOUND || buffer.getLong(position) == key) return row;
+        slot = (slot + 1) & (capacity - 1);
+      }
+    }
+
+    private int findText(String key) {
+      byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+      int low = 0;
+      int high = textCount - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int position = textStart + middle * TEXT_ENTRY_BYTES;
+        int comparison =
+            compare(poolStart + buffer.getInt(position), buffer.getInt(position + 4), bytes);
+        if (comparison == 0) return buffer.getInt(position + 8);
+        if (comparison < 0) {
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return NOT_FOUND;
+    }
+
+    /** Compara os bytes gravados no arquivo com a chave, sem sinal, como na ordenação */
+    private int compare(int position, int length, byte[] key) {
+      int common = Math.min(length, key.length);
+      for (int i = 0; i < common; i++) {
+        int comparison = Integer.compare(buffer.get(position + i) & 0xFF, key[i] & 0xFF);
+        if (comparison != 0) return comparison;
+      }
+      return Integer.compare(length, key.length);
+    }
+  }
+
+  /** Leitura sequencial com posições absolutas, sem alterar o estado do buffer compartilhado */
+  private static final class Reader {
+
+    private final MappedByteBuffer buffer;
+    private int position;
+
+    Reader(MappedByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    int position() {
+      return position;
+    }
+
+    void skip(int bytes) {
+      if (bytes < 0) throw new IllegalArgumentException("Tamanho inválido: " + bytes);
+      position += bytes;
+    }
+
+    void skipStrings(int strings) {
+      for (int i = 0; i < strings; i++) {
+        string();
+      }
+    }
+
+    int readInt() {
+      int value = buffer.getInt(position);
+      position += Integer.BYTES;
+      return value;
+    }
+
+    String string() {
+      String value = nullableString();
+      if (value == null) throw new IllegalArgumentException("Texto ausente no índice");
+      return value;
+    }
+
+    String nullableString() {
+      int length = readInt();
+      if (length < 0) return null;
+      byte[] bytes = new byte[length];
+      buffer.get(position, bytes);
+      position += length;
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
+
+/**
+ * Etapa de processamento linha a linha. Recebe o header atual e devolve o header resultante junto
+ * com a transformação aplicada a cada linha de dados.
+ */
+@FunctionalInterface
+interface RowStep {
+
+  Bound bind(String[] header);
+
+  /**
+   * Header resultante e transformação das linhas (retornar null descarta a linha). Etapas que
+   * filtram podem informar também um rawFilter, avaliado sobre as visões dos campos do tokenizador
+   * antes de a linha ser materializada; rawSafe indica que a etapa não reordena colunas e só altera
+   * valores numéricos simples (NumericText.isPlainDecimal), o que mantém válidos os rawFilters das
+   * etapas seguintes.
+   */
+  record Bound(
+      String[] header, UnaryOperator<String[]> rows, RawFilter rawFilter, boolean rawSafe) {
+
+    Bound(String[] header, UnaryOperator<String[]> rows) {
+      this(header, rows, null, false);
+    }
+
+    /**
+     * Materializa o registro atual do tokenizador e aplica a transformação; retorna null sem
+     * alocar os campos quando o rawFilter já descarta a linha
+     */
+    String[] apply(CsvTokenizer record) {
+      if (rawFilter != null && !rawFilter.mayKeep(record)) return null;
+      return rows.apply(record.toArray());
+    }
+  }
+
+  /**
+   * Teste sobre os campos brutos do registro (com aspas, antes das etapas). false garante que a
+   * transformação descartaria a linha; true não garante nada. Deve responder true para campos em
+   * que NumericText.isPlainDecimal() é verdadeiro, que podem ter sido alterados por etapas
+   * anteriores.
+   */
+  @FunctionalInterface
+  interface RawFilter {
+    boolean mayKeep(CsvTokenizer record);
+  }
+
+  /**
+   * Liga as etapas em sequência a partir do header e compõe uma única transformação. Quando as
+   * etapas adicionam colunas, cada linha é redimensionada uma única vez (para a maior largura da
+   * cadeia) antes da primeira etapa, e as etapas seguintes escrevem as novas colunas no lugar. Os
+   * rawFilters das etapas precedidas apenas por etapas rawSafe são combinados no resultado.
+   */
+  static Bound compile(String[] header, List<RowStep> steps) {
+    int initialWidth = header.length;
+    int maxWidth = initialWidth;
+    List<UnaryOperator<String[]>> ops = new ArrayList<>(steps.size());
+    List<RawFilter> rawFilters = new ArrayList<>();
+    boolean rawSafe = true;
+
+    for (RowStep step : steps) {
+      Bound bound = step.bind(header);
+      header = bound.header();
+      maxWidth = Math.max(maxWidth, header.length);
+      ops.add(bound.rows());
+      if (rawSafe && bound.rawFilter() != null) rawFilters.add(bound.rawFilter());
+      rawSafe &= bound.rawSafe();
+    }
+
+    int width = maxWidth;
+    boolean grows = width > initialWidth;
+
+    return new Bound(
+        header,
+        row -> {
+          if (grows && row.length < width) {
+            row = Arrays.copyOf(row, width);
+          }
+          for (UnaryOperator<String[]> op : ops) {
+            row = op.apply(row);
+            if (row == null) return null;
+          }
+          return row;
+        },
+        combine(rawFilters),
+        rawSafe);
+  }
+
+  private static RawFilter combine(List<RawFilter> filters) {
+    if (filters.isEmpty()) return null;
+    if (filters.size() == 1) return filters.get(0);
+    RawFilter[] all = filters.toArray(new RawFilter[0]);
+    return record -> {
+      for (RawFilter filter : all) {
+        if (!filter.mayKeep(record)) return false;
+      }
+      return true;
+    };
+  }
+
+  /**
+   * Garante que a linha comporte width colunas. Etapas que adicionam colunas chamam este método e
+   * escrevem nas posições do header; dentro de uma cadeia compilada a linha já chega com espaço.
+   */
+  static String[] ensureWidth(String[] row, int width) {
+    return row.length >= width ? row : Arrays.copyOf(row, width);
+  }
+
+  /** Aplica a transformação às linhas em memória (a posição 0 é o header) */
+  static List<String[]> run(List<String[]> rows, Bound bound) {
+    List<String[]> out = new ArrayList<>(rows.size());
+    out.add(bound.header());
+
+    for (int i = 1; i < rows.size(); i++) {
+      String[] row = bound.rows().apply(rows.get(i));
+      if (row != null) out.add(row);
+    }
+    return out;
+  }
+
+  /**
+   * Igual a run(), com as linhas divididas em faixas contíguas transformadas por até parallelism
+   * threads. As etapas não podem depender da ordem das linhas; a saída mantém a ordem original.
+   */
+  static List<String[]> runParallel(List<String[]> rows, Bound bound, int parallelism) {
+    int count = rows.size() - 1;
+    if (parallelism <= 1 || count < 2) return run(rows, bound);
+
+    String[][] results = new String[count][];
+    int partitions = Math.min(count, parallelism * 4);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+      for (int p = 0; p < partitions; p++) {
+        int from = (int) ((long) count * p / partitions);
+        int to = (int) ((long) count * (p + 1) / partitions);
+        tasks.add(
+            pool.submit(
+                () -> {
+                  for (int i = from; i < to; i++) {
+                    results[i] = bound.rows().apply(rows.get(i + 1));
+                  }
+                }));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    List<String[]> out = new ArrayList<>(count + 1);
+    out.add(bound.header());
+    for (String[] row : results) {
+      if (row != null) out.add(row);
+    }
+    return out;
+  }
+}
@@ -0,0 +1,103 @@
+package com.support;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Coluna de ordenação do sortBy() do CsvTransformer e do CsvPipeline, com o tipo da comparação:
+ * text() compara o texto sem aspas e espaços nas pontas (ordem de String.compareTo) e number()
+ * compara o valor numérico, aceitando vírgula decimal, com as células vazias ou não numéricas por
+ * último também na ordem decrescente.
+ *
+ * <p>As chaves de uma linha são codificadas uma única vez em uma String cuja ordem lexicográfica é
+ * a ordem pedida, o que permite ordenar e intercalar runs no disco (ver ExternalSorter) sem
+ * converter as células a cada comparação.
+ */
+public record SortKey(String column, boolean numeric, boolean descending) {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** Ordem crescente do texto da coluna */
+  public static SortKey text(String column) {
+    return new SortKey(column, false, false);
+  }
+
+  /** Ordem crescente do valor numérico da coluna */
+  public static SortKey number(String column) {
+    return new SortKey(column, true, false);
+  }
+
+  /** Mesma coluna e tipo, em ordem decrescente */
+  public SortKey reversed() {
+    return new SortKey(column, numeric, !descending);
+  }
+
+  /** Codificador das chaves para linhas com o header informado */
+  static Function<String[], String> encoder(String[] header, List<SortKey> keys) {
+    if (keys.isEmpty()) {
+      throw new IllegalArgumentException("Nenhuma coluna de ordenação informada");
+    }
+
+    Map<String, Integer> index = new HashMap<>();
+    for (int i = 0; i < header.length; i++) {
+      if (header[i] != null) index.putIfAbsent(Helpers.columnName(header[i]), i);
+    }
+
+    int[] positions = new int[keys.size()];
+    for (int k = 0; k < positions.length; k++) {
+      Integer position = index.get(Helpers.columnName(keys.get(k).column()));
+      if (position == null) {
+        throw new IllegalArgumentException("Coluna não encontrada: " + keys.get(k).column());
+      }
+      positions[k] = position;
+    }
+
+    SortKey[] sortKeys = keys.toArray(SortKey[]::new);
+    return row -> {
+      StringBuilder key = new StringBuilder();
+      for (int k = 0; k < sortKeys.length; k++) {
+        String cell = positions[k] < row.length ? row[positions[k]] : null;
+        sortKeys[k].append(key, cell);
+      }
+      return key.toString();
+    };
+  }
+
+  /**
+   * Números: '0' e 16 dígitos hexadecimais dos bits do double ajustados para ordem sem sinal, ou
+   * apenas '1' sem valor. Texto crescente: os caracteres e '\0'; decrescente: cada caractere
+   * invertido em 4 dígitos hexadecimais e '~', que fica depois de qualquer dígito.
+   */
+  private void append(StringBuilder key, String cell) {
+    if (numeric) {
+      double value = NumericText.parseDouble(cell, true, Double.NaN);
+      if (Double.isNaN(value)) {
+        key.append('1');
+        return;
+      }
+      long bits = Double.doubleToLongBits(value + 0.0); // -0.0 igual a 0.0
+      bits ^= (bits >> 63) | Long.MIN_VALUE;
+      if (descending) bits = ~bits;
+      key.append('0');
+      for (int shift = 60; shift >= 0; shift -= 4) {
+        key.append(HEX[(int) (bits >>> shift) & 0xF]);
+      }
+      return;
+    }
+
+    String text = Helpers.clean(cell);
+    if (!descending) {
+      key.append(text).append('\0');
+      return;
+    }
+    for (int i = 0; i < text.length(); i++) {
+      int inverted = 0xFFFF - text.charAt(i);
+      for (int shift = 12; shift >= 0; shift -= 4) {
+        key.append(HEX[(inverted >>> shift) & 0xF]);
+      }
+    }
+    key.append('~');
+  }
+}
@@ -1,10 +1,18 @@
 package com.support;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -16,15 +24,27 @@ import java.util.zip.ZipInputStream;
 
 public class ZipArchiveService {
 
+  // Registro de downloads e extrações, salvo em compress/
+  private static final String MANIFEST_FILE = "manifest.properties";
+
   // URL base onde os arquivos ZIP estão hospedados
   private final String baseUrl;
 
   // Caminhos relativos dos arquivos ZIP a serem processados
   private final List<String> archivePaths;
 
+  // Cliente HTTP usado em todos os downloads
+  private final HttpClient client;
+
   public ZipArchiveService(String baseUrl, List<String> archivePaths) {
+    this(baseUrl, archivePaths, HttpClient.newHttpClient());
+  }
+
+  // Permite informar o cliente HTTP (por exemplo, apontando para um servidor local de testes)
+  public ZipArchiveService(String baseUrl, List<String> archivePaths, HttpClient client) {
     this.baseUrl = baseUrl;
     this.archivePaths = archivePaths;
+    this.client = client;
   }
 
   // Cria um diretório no diretório raiz do projeto
@@ -49,8 +69,16 @@ public class ZipArchiveService {
     // Diretório onde os arquivos serão extraídos
     Path extractDir = createDirectory("extract");
 
-    // Cliente HTTP para realizar os downloads
-    HttpClient client = HttpClient.newHttpClient();
+    // Downloads com Range: segmentos paralelos, retomada e gravação atômica
+    RangeDownloader downloader = new RangeDownloader(client);
+
+    // Registro das versões baixadas e extraídas em execuções anteriores
+    ArchiveManifest manifest;
+    try {
+      manifest = ArchiveManifest.load(downloadDir.resolve(MANIFEST_FILE));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Erro ao ler " + MANIFEST_FILE, e);
+    }
 
     // Lista de futures para controle das execuções assíncronas
     List<CompletableFuture<Void>> futures = new ArrayList<>();
@@ -66,24 +94,34 @@ public class ZipArchiveService {
       // Caminho final do arquivo ZIP
       Path destination = downloadDir.resolve(fileName);
 
-      // Ignora o download se o arquivo já existir
-      if (Files.exists(destination)) continue;
-
-      // Cria a requisição HTTP
-      HttpRequest request = HttpRequest.newBuilder().uri(URI.create(fullUrl)).GET().build();
-
-      // Executa o download de forma assíncrona
+      // Baixa só se o arquivo mudou no servidor e extrai só se a versão atual não foi extraída
       CompletableFuture<Void> future =
-          client
-              .sendAsync(request, HttpResponse.BodyHandlers.ofFile(destination))
-              .thenAccept(
-                  response -> {
-                    // Verifica se o download foi bem-sucedido
-                    if (response.statusCode() == 200) {
-                      System.out.println("Download concluído: " + destination);
-                      extractZip(destination, extractDir);
-                    } else {
-                      System.out.println("Falha no download. Status: " + response.statusCode());
+          CompletableFuture.runAsync(
+                  () -> {
+                    try {
+                      boolean adopted =
+                          adoptUnregistered(downloader, manifest, fileName, fullUrl, destination);
+                      RangeDownloader.RemoteFile remote = null;
+                      if (!adopted) {
+                        remote =
+                            downloader.download(
+                                URI.create(fullUrl),
+                                destination,
+                                manifest.cached(fileName, destination));
+                      }
+                      if (remote != null) {
+                        manifest.downloaded(
+                            fileName, fullUrl, remote, Helpers.sha256(destination));
+                        System.out.println("Download concluído: " + destination);
+                      } else {
+                        System.out.println("Sem alterações: " + destination);
+                      }
+
+                      if (!manifest.isExtracted(fileName, extractDir)) {
+                        manifest.extracted(fileName, extractZip(destination, extractDir));
+                      }
+                    } catch (IOException e) {
+                      throw new UncheckedIOException(e);
                     }
                   })
               .exceptionally(
@@ -100,11 +138,32 @@ public class ZipArchiveService {
     CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
   }
 
-  // Extrai o conteúdo de um arquivo ZIP para o diretório alvo
-  private void extractZip(Path zipFile, Path targetDir) {
+  // ZIP local sem registro (baixado antes do manifesto, possivelmente incompleto): passa a ser
+  // registrado com a versão do servidor só se tiver o tamanho informado por um HEAD sem condições.
+  // Retorna false quando o ZIP deve ser baixado de novo.
+  private static boolean adoptUnregistered(
+      RangeDownloader downloader,
+      ArchiveManifest manifest,
+      String fileName,
+      String fullUrl,
+      Path destination)
+      throws IOException {
+    if (manifest.contains(fileName) || !Files.exists(destination)) return false;
+
+    RangeDownloader.RemoteFile remote = downloader.head(URI.create(fullUrl));
+    if (remote == null || remote.size() != Files.size(destination)) return false;
+
+    manifest.downloaded(fileName, fullUrl, remote, Helpers.sha256(destination));
+    return true;
+  }
+
+  // Extrai o conteúdo de um arquivo ZIP para o diretório alvo, retornando os arquivos gerados
+  private List<String> extractZip(Path zipFile, Path targetDir) {
 
     System.out.println("Extraindo: " + zipFile.getFileName());
 
+    List<String> extracted = new ArrayList<>();
+
     try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(zipFile))) {
 
       ZipEntry entry;
@@ -121,6 +180,7 @@ public class ZipArchiveService {
         } else {
           Files.createDirectories(newPath.getParent());
           Files.copy(zip, newPath, StandardCopyOption.REPLACE_EXISTING);
+          extracted.add(targetDir.relativize(newPath).toString());
         }
 
         zip.closeEntry();
@@ -129,5 +189,198 @@ public class ZipArchiveService {
     } catch (IOException e) {
       throw new RuntimeException("Erro ao extrair arquivo: " + zipFile, e);
     }
+
+    return extracted;
+  }
+
+  /**
+   * Modo streaming: cria uma origem de CSV por arquivo ZIP. Ao ser percorrida, a origem baixa o ZIP
+   * e entrega cada entrada como uma origem própria, descompactada direto do corpo da resposta HTTP,
+   * sem gravar compress/ nem extract/. Com archiveDir, o ZIP recebido também é salvo nesse
+   * diretório (opcional).
+   */
+  public List<CsvSource> streamSources(Path archiveDir) {
+    List<CsvSource> sources = new ArrayList<>();
+
+    for (String archivePath : archivePaths) {
+      URI uri = URI.create(baseUrl + archivePath);
+      String fileName = Path.of(uri.getPath()).getFileName().toString();
+      sources.add(new StreamingZipArchive(client, uri, fileName, archiveDir));
+    }
+    return sources;
+  }
+
+  // ZIP lido enquanto é baixado; cada entrada só pode ser lida durante forEachEntry()
+  private static final class StreamingZipArchive implements CsvSource {
+
+    private final HttpClient client;
+    private final URI uri;
+    private final String fileName;
+    private final Path archiveDir; // null quando o ZIP não deve ser salvo
+
+    StreamingZipArchive(HttpClient client, URI uri, String fileName, Path archiveDir) {
+      this.client = client;
+      this.uri = uri;
+      this.fileName = fileName;
+      this.archiveDir = archiveDir;
+    }
+
+    // Nome do ZIP; as entradas entregues por forEachEntry() têm os próprios nomes
+    @Override
+    public String name() {
+      return fileName;
+    }
+
+    @Override
+    public Reader open() {
+      throw new UnsupportedOperationException("ZIP em fluxo é lido por forEachEntry(): " + uri);
+    }
+
+    @Override
+    public void forEachEntry(EntryAction action) throws IOException {
+      HttpRequest request = HttpRequest.newBuilder().uri(uri).GET().build();
+      HttpResponse<InputStream> response;
+      try {
+        response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Download interrompido: " + uri);
+      }
+
+      if (response.statusCode() != 200) {
+        response.body().close();
+        throw new IOException("Falha no download. Status: " + response.statusCode() + " " + uri);
+      }
+
+      System.out.println("Download em fluxo: " + fileName);
+      ArchiveCopy copy = archiveDir == null ? null : new ArchiveCopy(archiveDir, fileName);
+      InputStream body = copy == null ? response.body() : copy.tee(response.body());
+      boolean complete = false;
+
+      try (ZipInputStream zip = new ZipInputStream(body)) {
+        int entries = 0;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+          if (entry.isDirectory()) continue;
+
+          // Mesmo nome do arquivo extraído no modo em disco; o restante da entrada que não for
+          // lido é descartado por getNextEntry()
+          String name = Path.of(entry.getName()).getFileName().toString();
+          action.accept(new StreamingZipSource(zip, name, uri));
+          entries++;
+        }
+
+        if (entries == 0) {
+          throw new IOException("Nenhum arquivo encontrado no ZIP: " + fileName);
+        }
+        if (copy != null) copy.commit();
+        complete = true;
+      } finally {
+        if (copy != null && !complete) copy.discard();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return uri.toString();
+    }
+  }
+
+  // Entrada do ZIP em fluxo; fechar o conteúdo não fecha o ZIP, que segue para a próxima entrada
+  private static final class StreamingZipSource implements CsvSource {
+
+    private final ZipInputStream zip;
+    private final String name;
+    private final URI uri;
+
+    StreamingZipSource(ZipInputStream zip, String name, URI uri) {
+      this.zip = zip;
+      this.name = name;
+      this.uri = uri;
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public Reader open() {
+      InputStream entry =
+          new FilterInputStream(zip) {
+            @Override
+            public void close() {
+              // O ZIP é fechado por StreamingZipArchive depois da última entrada
+            }
+          };
+      return new InputStreamReader(entry, StandardCharsets.UTF_8.newDecoder());
+    }
+
+    @Override
+    public String toString() {
+      return uri + "!" + name;
+    }
+  }
+
+  // Cópia opcional do ZIP recebido: grava em arquivo temporário e renomeia ao concluir
+  private static final class ArchiveCopy {
+
+    private final Path destination;
+    private final Path tempFile;
+    private InputStream source;
+    private OutputStream out;
+
+    ArchiveCopy(Path dir, String fileName) throws IOException {
+      Files.createDirectories(dir);
+      this.destination = dir.resolve(fileName);
+      this.tempFile = dir.resolve(fileName + ".part");
+      this.out = Files.newOutputStream(tempFile);
+    }
+
+    // Repassa os bytes lidos do corpo da resposta também para o arquivo
+    InputStream tee(InputStream body) {
+      this.source = body;
+      return new FilterInputStream(body) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b >= 0) out.write(b);
+          return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int n = super.read(buffer, offset, length);
+          if (n > 0) out.write(buffer, offset, n);
+          return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+          // Lê em vez de pular para que os bytes também sejam copiados
+          byte[] buffer = new byte[8192];
+          long skipped = 0;
+          while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) break;
+            skipped += read;
+          }
+          return skipped;
+        }
+      };
+    }
+
+    // Lê o restante do corpo (diretório central do ZIP) e move o arquivo para o destino
+    void commit() throws IOException {
+      source.transferTo(out);
+      out.close();
+      Files.move(tempFile, destination, StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("ZIP salvo em: " + destination);
+    }
+
+    void discard() throws IOException {
+      out.close();
+      Files.deleteIfExists(tempFile);
+    }
   }
 }
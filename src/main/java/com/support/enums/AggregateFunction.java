@@ -0,0 +1,11 @@
+package com.support.enums;
+
+public enum AggregateFunction {
+  // Funções de agregação do CsvAggregator
+  SUM, // soma
+  COUNT, // quantidade de valores numéricos
+  MIN,
+  MAX,
+  AVG, // média
+  STDDEV, // desvio padrão amostral
+}
@@ -0,0 +1,9 @@
+package com.support.enums;
+
+public enum ColumnType {
+  // Tipos de coluna do formato colunar (ColumnarWriter)
+  DOUBLE, // valores numéricos; vazios ou não numéricos viram NaN
+  INT, // inteiros; vazios ou não inteiros viram ColumnarReader.NULL_INT
+  DICTIONARY, // texto com poucos valores distintos, gravado como códigos de um dicionário
+  STRING, // texto livre
+}
@@ -0,0 +1,18 @@
+package com.support.enums;
+
+/** Presets de compressão dos ZIPs gerados (nível do deflate: 1 = mais rápido, 9 = menor arquivo) */
+public enum CompressionPreset {
+  FASTEST(1), // prioriza velocidade
+  DEFAULT(6), // mesmo nível padrão do ZipOutputStream
+  SMALLEST(9); // prioriza tamanho
+
+  private final int level;
+
+  CompressionPreset(int level) {
+    this.level = level;
+  }
+
+  public int level() {
+    return level;
+  }
+}
@@ -0,0 +1,75 @@
+package com.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa os benchmarks de com.perf.benchmarks com o GCProfiler (alocação por operação em
+ * gc.alloc.rate.norm) e grava os resultados em JSON, com o nome formado pela revisão do git e
+ * pelo horário, para comparar execuções entre commits.
+ *
+ * <p>Uso: mvn -Pperf package && java -jar target/benchmarks.jar [regex dos benchmarks...]
+ *
+ * <p>Propriedades: -Dperf.rows=10000,100000 (tamanhos dos arquivos), -Dperf.results=dir (padrão:
+ * target/jmh-results), -Dperf.label=nome (padrão: revisão do git) e -Dperf.data=dir (arquivos
+ * sintéticos, padrão: target/perf-data).
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws IOException, RunnerException {
+    Path resultDir = Path.of(System.getProperty("perf.results", "target/jmh-results"));
+    String label = System.getProperty("perf.label", gitRevision());
+    String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    Path resultFile = resultDir.resolve(label + "-" + timestamp + ".json");
+    Files.createDirectories(resultDir);
+
+    ChainedOptionsBuilder options =
+        new OptionsBuilder()
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(resultFile.toString());
+
+    // Sem argumentos, executa todos os benchmarks do projeto
+    if (args.length == 0) {
+      options.include("com\\.perf\\.benchmarks\\..*");
+    }
+    for (String pattern : args) {
+      options.include(pattern);
+    }
+
+    String rows = System.getProperty("perf.rows");
+    if (rows != null) {
+      options.param("rows", rows.split(","));
+    }
+
+    new Runner(options.build()).run();
+    System.out.println("Resultados salvos em: " + resultFile.toAbsolutePath());
+  }
+
+  // Revisão atual do git, ou "local" fora de um repositório
+  private static String gitRevision() {
+    try {
+      Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").start();
+      try (InputStream out = process.getInputStream()) {
+        String revision = new String(out.readAllBytes(), StandardCharsets.UTF_8).trim();
+        return process.waitFor() == 0 && !revision.isEmpty() ? revision : "local";
+      }
+    } catch (IOException e) {
+      return "local";
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "local";
+    }
+  }
+}
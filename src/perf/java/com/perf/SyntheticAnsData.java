@@ -0,0 +1,224 @@
+package com.perf;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Gera dados sintéticos no formato dos arquivos da ANS: as demonstrações contábeis trimestrais
+ * (data;reg_ans;cd_conta_contabil;descricao;vl_saldo_inicial;vl_saldo_final, com aspas e vírgula
+ * decimal) e o cadastro de operadoras (REGISTRO_OPERADORA;CNPJ;RAZAO_SOCIAL;MODALIDADE;UF).
+ *
+ * <p>O resultado depende apenas dos parâmetros, então os arquivos podem ser guardados e comparados
+ * entre execuções. Cada operadora tem atributos fixos (CNPJ, razão social, modalidade e UF); uma
+ * fração das operadoras tem CNPJ com dígito verificador errado e outra fração não aparece no
+ * cadastro, o que gera linhas sem correspondência no mergeByKey().
+ */
+public final class SyntheticAnsData {
+
+  /** Registro ANS da primeira operadora; as demais seguem em sequência */
+  public static final int FIRST_REGISTRY = 300000;
+
+  /** Tamanho médio aproximado de uma linha trimestral, em bytes */
+  public static final int ROW_BYTES = 88;
+
+  private static final String QUARTER_HEADER =
+      "\"data\";\"reg_ans\";\"cd_conta_contabil\";\"descricao\";\"vl_saldo_inicial\";"
+          + "\"vl_saldo_final\"";
+  private static final String OPERATORS_HEADER =
+      "\"REGISTRO_OPERADORA\";\"CNPJ\";\"RAZAO_SOCIAL\";\"MODALIDADE\";\"UF\"";
+
+  // Contas contábeis e descrições; a primeira é a filtrada pelo fluxo (1 em cada 4 linhas)
+  private static final String[][] ACCOUNTS = {
+    {"41", "Despesas com Eventos/Sinistros"},
+    {"31", "Contraprestações Efetivas de Plano de Assistência à Saúde"},
+    {"311", "Receitas com Operações de Assistência à Saúde"},
+    {"46", "Despesas Administrativas"},
+    {"43", "Despesas de Comercialização"},
+    {"44", "Outras Despesas Operacionais com Plano de Assistência à Saúde"},
+    {"35", "Receitas Financeiras"},
+    {"45", "Despesas Financeiras"},
+  };
+
+  private static final String[] MODALITIES = {
+    "Medicina de Grupo", "Cooperativa Médica", "Odontologia de Grupo", "Autogestão", "Seguradora"
+  };
+
+  // UFs com peso aproximado do número de operadoras
+  private static final String[] STATES = {
+    "SP", "SP", "SP", "SP", "MG", "MG", "RJ", "RJ", "PR", "RS", "SC", "BA", "GO", "PE", "CE", "DF",
+    "ES", "MT", "MS", "PA"
+  };
+
+  private static final int REGISTRY_STREAM = 0; // ausência, razão social, modalidade e UF
+  private static final int CNPJ_STREAM = 1; // validade, formatação e dígitos do CNPJ
+
+  private final long seed;
+  private final int operators;
+  private final double validCnpjRate;
+  private final double missingOperatorRate;
+
+  /**
+   * @param operators quantidade de operadoras que aparecem nos arquivos trimestrais
+   * @param validCnpjRate fração das operadoras com CNPJ válido
+   * @param missingOperatorRate fração das operadoras ausentes do cadastro
+   */
+  public SyntheticAnsData(
+      long seed, int operators, double validCnpjRate, double missingOperatorRate) {
+    if (operators < 1 || operators > 699_999) {
+      throw new IllegalArgumentException("Quantidade de operadoras inválida: " + operators);
+    }
+    if (validCnpjRate < 0 || validCnpjRate > 1) {
+      throw new IllegalArgumentException("Taxa de CNPJs válidos inválida: " + validCnpjRate);
+    }
+    if (missingOperatorRate < 0 || missingOperatorRate > 1) {
+      throw new IllegalArgumentException(
+          "Taxa de operadoras ausentes inválida: " + missingOperatorRate);
+    }
+    this.seed = seed;
+    this.operators = operators;
+    this.validCnpjRate = validCnpjRate;
+    this.missingOperatorRate = missingOperatorRate;
+  }
+
+  /** Perfil próximo ao dos arquivos reais: ~1.100 operadoras, 95% de CNPJs válidos, 2% ausentes */
+  public static SyntheticAnsData defaults() {
+    return new SyntheticAnsData(42, 1100, 0.95, 0.02);
+  }
+
+  public int operators() {
+    return operators;
+  }
+
+  /** Grava o arquivo trimestral com a quantidade de linhas informada (além do header) */
+  public Path writeQuarter(Path file, int year, int quarter, long rows) throws IOException {
+    createParent(file);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writeQuarter(out, year, quarter, rows);
+    }
+    return file;
+  }
+
+  /** Grava header e linhas do trimestre; todas as linhas têm a data do início do trimestre */
+  public void writeQuarter(Writer out, int year, int quarter, long rows) throws IOException {
+    if (quarter < 1 || quarter > 4) {
+      throw new IllegalArgumentException("Trimestre inválido: " + quarter);
+    }
+
+    SplittableRandom random = new SplittableRandom(seed * 31 + year * 4L + quarter);
+    String date = year + "-" + (quarter < 4 ? "0" : "") + (quarter * 3 - 2) + "-01";
+    StringBuilder line = new StringBuilder(128);
+
+    out.write(QUARTER_HEADER);
+    out.write('\n');
+    for (long r = 0; r < rows; r++) {
+      String[] account =
+          random.nextInt(4) == 0 ? ACCOUNTS[0] : ACCOUNTS[1 + random.nextInt(ACCOUNTS.length - 1)];
+      long initial = (long) (Math.exp(random.nextDouble() * 18) * 100); // centavos, até ~R$ 65 mi
+      long movement = (long) (initial * (random.nextDouble() * 1.2 - 0.1)); // ~8% negativos
+
+      line.setLength(0);
+      line.append('"').append(date).append("\";\"");
+      line.append(FIRST_REGISTRY + random.nextInt(operators)).append("\";\"");
+      line.append(account[0]).append("\";\"").append(account[1]).append("\";\"");
+      appendMoney(line, initial).append("\";\"");
+      appendMoney(line, initial + movement).append("\"\n");
+      out.append(line);
+    }
+  }
+
+  /** Grava o cadastro de operadoras, sem as operadoras sorteadas como ausentes */
+  public Path writeOperators(Path file) throws IOException {
+    createParent(file);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writeOperators(out);
+    }
+    return file;
+  }
+
+  public void writeOperators(Writer out) throws IOException {
+    out.write(OPERATORS_HEADER);
+    out.write('\n');
+    for (int i = 0; i < operators; i++) {
+      SplittableRandom random = operatorRandom(i, REGISTRY_STREAM);
+      if (random.nextDouble() < missingOperatorRate) continue;
+
+      int registry = FIRST_REGISTRY + i;
+      String name = random.nextInt(50) == 0 ? "" : "OPERADORA " + registry + " LTDA";
+      out.write('"' + Integer.toString(registry) + "\";\"" + cnpj(i) + "\";\"" + name + "\";\"");
+      out.write(MODALITIES[random.nextInt(MODALITIES.length)]);
+      out.write("\";\"" + STATES[random.nextInt(STATES.length)] + "\"\n");
+    }
+  }
+
+  /**
+   * CNPJ da operadora: 14 dígitos, formatado como 00.000.000/0000-00 em 1 de cada 5 operadoras e
+   * com o último dígito trocado nas operadoras sorteadas como inválidas.
+   */
+  public String cnpj(int operator) {
+    SplittableRandom random = operatorRandom(operator, CNPJ_STREAM);
+    boolean valid = random.nextDouble() < validCnpjRate;
+    boolean formatted = random.nextInt(5) == 0;
+
+    int[] digits = new int[14];
+    for (int i = 0; i < 8; i++) {
+      digits[i] = random.nextInt(10);
+    }
+    digits[11] = 1; // matriz: 0001
+    digits[12] = checkDigit(digits, 12);
+    digits[13] = checkDigit(digits, 13);
+    if (!valid) digits[13] = (digits[13] + 1) % 10;
+
+    StringBuilder cnpj = new StringBuilder(18);
+    for (int i = 0; i < 14; i++) {
+      if (formatted && (i == 2 || i == 5)) cnpj.append('.');
+      if (formatted && i == 8) cnpj.append('/');
+      if (formatted && i == 12) cnpj.append('-');
+      cnpj.append(digits[i]);
+    }
+    return cnpj.toString();
+  }
+
+  /**
+   * Atributos de cada operadora vêm de sequências próprias (cadastro e CNPJ), independentes da
+   * ordem de geração e entre si.
+   */
+  private SplittableRandom operatorRandom(int operator, int stream) {
+    return new SplittableRandom((seed * 1_000_003L + operator) * 2 + stream);
+  }
+
+  /** Dígito verificador da posição length (12 ou 13) com os pesos do CNPJ */
+  private static int checkDigit(int[] digits, int length) {
+    int sum = 0;
+    int weight = length - 7;
+    for (int i = 0; i < length; i++) {
+      sum += digits[i] * weight;
+      weight = weight == 2 ? 9 : weight - 1;
+    }
+    int rest = sum % 11;
+    return rest < 2 ? 0 : 11 - rest;
+  }
+
+  /** Valor em centavos com vírgula decimal, sem zeros finais nos centavos (como nos arquivos) */
+  private static StringBuilder appendMoney(StringBuilder line, long cents) {
+    if (cents < 0) {
+      line.append('-');
+      cents = -cents;
+    }
+    line.append(cents / 100);
+    long fraction = cents % 100;
+    if (fraction == 0) return line;
+    line.append(',').append(fraction / 10);
+    if (fraction % 10 != 0) line.append(fraction % 10);
+    return line;
+  }
+
+  private static void createParent(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) Files.createDirectories(parent);
+  }
+}
@@ -0,0 +1,51 @@
+package com.perf.benchmarks;
+
+import com.perf.SyntheticAnsData;
+import com.support.CsvTransformer;
+import com.support.enums.MathOperation;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Arquivos sintéticos usados pelos benchmarks, gerados uma vez por tamanho em target/perf-data
+ * (ou -Dperf.data) e reaproveitados nas execuções seguintes: um trimestre com rows linhas, o
+ * cadastro de operadoras e o trimestre já transformado e mesclado, entrada do CsvValidator.
+ */
+@State(Scope.Benchmark)
+public class AnsFiles {
+
+  @Param({"10000", "100000", "1000000"})
+  public int rows;
+
+  public Path quarter;
+  public Path operators;
+  public Path consolidated;
+
+  @Setup(Level.Trial)
+  public void generate() throws IOException {
+    Path dir = Path.of(System.getProperty("perf.data", "target/perf-data"));
+    SyntheticAnsData data = SyntheticAnsData.defaults();
+
+    operators = dir.resolve("operadoras.csv");
+    if (!Files.exists(operators)) data.writeOperators(operators);
+
+    quarter = dir.resolve("1T2025-" + rows + ".csv");
+    if (!Files.exists(quarter)) data.writeQuarter(quarter, 2025, 1, rows);
+
+    consolidated = dir.resolve("consolidado-" + rows + ".csv");
+    if (!Files.exists(consolidated)) {
+      new CsvTransformer(quarter, ";")
+          .calculateNewColumn(
+              "VL_SALDO_FINAL", "VL_SALDO_INICIAL", "VALOR_DESPESAS", MathOperation.SUBTRACT)
+          .addYearAndQuarterColumns("DATA")
+          .mergeByKey(operators, "REG_ANS", "REGISTRO_OPERADORA")
+          .save(consolidated);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.perf.benchmarks;
+
+import com.perf.SyntheticAnsData;
+import com.support.CnpjValidator;
+import com.support.CsvValidator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Validação de CNPJs sobre os CNPJs do cadastro sintético, repetidos como nas linhas de despesas:
+ * só dígitos e formatados, válidos e inválidos nas proporções do SyntheticAnsData. O tempo é por
+ * CNPJ. regex() é a implementação anterior (replaceAll e regex com retrorreferência), referência
+ * para os ganhos do cálculo sem alocação (isCnpjValido) e do cache usado pelo validateCnpj()
+ * (cached). A validação em paralelo por faixas de linhas está no ValidatorBenchmark.validateCnpj.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CnpjBenchmark {
+
+  private static final int BATCH = 4096;
+
+  private String[] cnpjs;
+  private CnpjValidator validator;
+
+  @Setup
+  public void generate() {
+    SyntheticAnsData data = SyntheticAnsData.defaults();
+    cnpjs = new String[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      cnpjs[i] = data.cnpj(i % data.operators()); // instâncias diferentes, como nas linhas lidas
+    }
+    validator = new CnpjValidator(CnpjValidator.DEFAULT_CACHE_SIZE);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void regex(Blackhole blackhole) {
+    for (String cnpj : cnpjs) {
+      blackhole.consume(isCnpjValidoRegex(cnpj));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void isCnpjValido(Blackhole blackhole) {
+    for (String cnpj : cnpjs) {
+      blackhole.consume(CsvValidator.isCnpjValido(cnpj));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void cached(Blackhole blackhole) {
+    for (String cnpj : cnpjs) {
+      blackhole.consume(validator.isValid(cnpj));
+    }
+  }
+
+  // Implementação anterior do CsvValidator.isCnpjValido(), mantida só como referência
+  private static boolean isCnpjValidoRegex(String cnpj) {
+    if (cnpj == null) return false;
+
+    cnpj = cnpj.replaceAll("[^0-9]", "");
+    if (cnpj.length() != 14) return false;
+    if (cnpj.matches("(\\d)\\1{13}")) return false;
+
+    int sm = 0;
+    int peso = 2;
+    for (int i = 11; i >= 0; i--) {
+      sm += (cnpj.charAt(i) - '0') * peso;
+      peso = peso == 9 ? 2 : peso + 1;
+    }
+    int r = sm % 11;
+    char dig13 = (r < 2) ? '0' : (char) ((11 - r) + '0');
+
+    sm = 0;
+    peso = 2;
+    for (int i = 12; i >= 0; i--) {
+      sm += (cnpj.charAt(i) - '0') * peso;
+      peso = peso == 9 ? 2 : peso + 1;
+    }
+    r = sm % 11;
+    char dig14 = (r < 2) ? '0' : (char) ((11 - r) + '0');
+
+    return dig13 == cnpj.charAt(12) && dig14 == cnpj.charAt(13);
+  }
+}
@@ -0,0 +1,40 @@
+package com.perf.benchmarks;
+
+import com.support.CsvNormalizer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações do CsvNormalizer em memória. Cada operação consome as linhas carregadas, então os
+ * benchmarks medem carga + operação; o custo da operação é a diferença para load().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class NormalizerBenchmark {
+
+  @Benchmark
+  public CsvNormalizer load(AnsFiles files) throws IOException {
+    return new CsvNormalizer(files.quarter, ";");
+  }
+
+  @Benchmark
+  public CsvNormalizer normalizeNumbers(AnsFiles files) throws IOException {
+    return new CsvNormalizer(files.quarter, ";").normalizeNumbers();
+  }
+
+  @Benchmark
+  public CsvNormalizer filterByColumnValue(AnsFiles files) throws IOException {
+    return new CsvNormalizer(files.quarter, ";")
+        .filterByColumnValue("DESCRICAO", "Despesas com Eventos/Sinistros");
+  }
+}
@@ -0,0 +1,40 @@
+package com.perf.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Diretório temporário para os arquivos gravados pelos benchmarks, criado no início de cada
+ * trial e apagado no fim, para não deixar saídas no diretório de execução.
+ */
+@State(Scope.Benchmark)
+public class OutputDir {
+
+  public Path dir;
+
+  @Setup(Level.Trial)
+  public void create() throws IOException {
+    dir = Files.createTempDirectory("perf-output-");
+  }
+
+  @TearDown(Level.Trial)
+  public void delete() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  public Path resolve(String fileName) {
+    return dir.resolve(fileName);
+  }
+}
@@ -0,0 +1,55 @@
+package com.perf.benchmarks;
+
+import com.support.CsvTransformer;
+import com.support.enums.MathOperation;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações do CsvTransformer sobre um trimestre. Como no NormalizerBenchmark, cada benchmark
+ * inclui a carga do arquivo; o custo da operação é a diferença para load(). saveFormatted() grava
+ * no diretório temporário do OutputDir.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class TransformerBenchmark {
+
+  @Benchmark
+  public CsvTransformer load(AnsFiles files) throws IOException {
+    return new CsvTransformer(files.quarter, ";");
+  }
+
+  @Benchmark
+  public CsvTransformer calculateNewColumn(AnsFiles files) throws IOException {
+    return new CsvTransformer(files.quarter, ";")
+        .calculateNewColumn(
+            "VL_SALDO_FINAL", "VL_SALDO_INICIAL", "VALOR_DESPESAS", MathOperation.SUBTRACT);
+  }
+
+  @Benchmark
+  public CsvTransformer addYearAndQuarterColumns(AnsFiles files) throws IOException {
+    return new CsvTransformer(files.quarter, ";").addYearAndQuarterColumns("DATA");
+  }
+
+  @Benchmark
+  public CsvTransformer mergeByKey(AnsFiles files) throws IOException {
+    return new CsvTransformer(files.quarter, ";")
+        .mergeByKey(files.operators, "REG_ANS", "REGISTRO_OPERADORA");
+  }
+
+  @Benchmark
+  public void saveFormatted(AnsFiles files, OutputDir output) throws IOException {
+    new CsvTransformer(files.consolidated, ";")
+        .saveFormatted(output.resolve("perf_transformer.csv"));
+  }
+}
@@ -0,0 +1,61 @@
+package com.perf.benchmarks;
+
+import com.support.CsvValidator;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações do CsvValidator sobre o trimestre transformado e mesclado. As regras só são aplicadas
+ * na gravação, então validateCnpj() é medido com save(); o custo da validação é a diferença para
+ * save(), e o de cada gravação, a diferença para load(). validateCnpj() roda com 1 e 4 threads.
+ * As gravações vão para o diretório temporário do OutputDir.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ValidatorBenchmark {
+
+  @Benchmark
+  public CsvValidator load(AnsFiles files) throws IOException {
+    return new CsvValidator(files.consolidated, ";");
+  }
+
+  @Benchmark
+  public void save(AnsFiles files, OutputDir output) throws IOException {
+    new CsvValidator(files.consolidated, ";").save(output.resolve("perf_validator.csv"));
+  }
+
+  @Benchmark
+  public void validateCnpj(AnsFiles files, OutputDir output, Threads threads) throws IOException {
+    new CsvValidator(files.consolidated, ";")
+        .parallelism(threads.parallelism)
+        .validateCnpj("CNPJ")
+        .save(output.resolve("perf_validator.csv"));
+  }
+
+  @Benchmark
+  public void saveFormatted(AnsFiles files, OutputDir output) throws IOException {
+    new CsvValidator(files.consolidated, ";")
+        .saveFormatted(output.resolve("perf_validator_formatado.csv"));
+  }
+
+  /** Threads que aplicam as regras no validateCnpj(), por faixas de linhas */
+  @State(Scope.Benchmark)
+  public static class Threads {
+
+    @Param({"1", "4"})
+    public int parallelism;
+  }
+}
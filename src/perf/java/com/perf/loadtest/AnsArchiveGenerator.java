@@ -0,0 +1,206 @@
+package com.perf.loadtest;
+
+import com.perf.SyntheticAnsData;
+import com.support.ParallelZipOutputStream;
+import com.support.enums.CompressionPreset;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Gera os ZIPs trimestrais e o cadastro de operadoras de um teste de carga. Os ZIPs ficam em www/,
+ * na estrutura de diretórios do servidor da ANS (FTP/PDA/demonstracoes_contabeis/ano/1T2025.zip),
+ * cada um com um CSV de mesmo nome. O volume total de CSV (descompactado) é dividido igualmente
+ * entre os trimestres, que terminam no trimestre informado.
+ *
+ * <p>Um conjunto gerado é descrito em dataset.properties e reaproveitado quando os parâmetros são
+ * os mesmos, já que os volumes maiores levam vários minutos para serem gerados.
+ */
+public final class AnsArchiveGenerator {
+
+  /** Caminho da listagem dos trimestres no servidor, relativo à raiz do conjunto */
+  public static final String LISTING_PATH = "FTP/PDA/demonstracoes_contabeis/";
+
+  private static final String DESCRIPTION_FILE = "dataset.properties";
+
+  private final SyntheticAnsData data;
+  private final long csvBytes;
+  private final int quarters;
+  private final int lastYear;
+  private final int lastQuarter;
+  private final String description;
+
+  /** Conjunto gerado: raiz servida por HTTP, ZIPs, cadastro de operadoras e tamanhos */
+  public record Dataset(
+      Path root, List<Path> archives, Path operators, long rows, long csvBytes, long zipBytes) {}
+
+  public AnsArchiveGenerator(
+      SyntheticAnsData data,
+      String description,
+      long csvBytes,
+      int quarters,
+      int lastYear,
+      int lastQuarter) {
+    if (csvBytes < 1) {
+      throw new IllegalArgumentException("Volume inválido: " + csvBytes);
+    }
+    if (quarters < 1) {
+      throw new IllegalArgumentException("Quantidade de trimestres inválida: " + quarters);
+    }
+    if (lastQuarter < 1 || lastQuarter > 4) {
+      throw new IllegalArgumentException("Trimestre inválido: " + lastQuarter);
+    }
+    this.data = data;
+    this.description = description;
+    this.csvBytes = csvBytes;
+    this.quarters = quarters;
+    this.lastYear = lastYear;
+    this.lastQuarter = lastQuarter;
+  }
+
+  /** Gera o conjunto em dir, ou reaproveita o conjunto existente com os mesmos parâmetros */
+  public Dataset generate(Path dir) throws IOException {
+    Properties expected = new Properties();
+    expected.setProperty("data", description);
+    expected.setProperty("csvBytes", Long.toString(csvBytes));
+    expected.setProperty("quarters", Integer.toString(quarters));
+    expected.setProperty("last", lastQuarter + "T" + lastYear);
+
+    Path descriptionFile = dir.resolve(DESCRIPTION_FILE);
+    Properties existing = readDescription(descriptionFile);
+    if (existing != null && existing.entrySet().containsAll(expected.entrySet())) {
+      Dataset dataset = dataset(dir, existing);
+      if (dataset != null) {
+        System.out.println("Reaproveitando dados gerados em: " + dir.toAbsolutePath());
+        return dataset;
+      }
+    }
+
+    Files.deleteIfExists(descriptionFile); // conjunto incompleto até a descrição ser regravada
+    long rowsPerQuarter = Math.max(1, csvBytes / quarters / SyntheticAnsData.ROW_BYTES);
+    long writtenBytes = 0;
+    List<Path> archives = archives(dir);
+    for (int i = 0; i < archives.size(); i++) {
+      Path archive = archives.get(i);
+      int year = year(i);
+      int quarter = quarter(i);
+      System.out.println("Gerando " + archive.getFileName() + " (" + rowsPerQuarter + " linhas)");
+      writtenBytes += writeArchive(archive, year, quarter, rowsPerQuarter);
+    }
+    data.writeOperators(dir.resolve("operadoras.csv"));
+
+    Properties generated = new Properties();
+    generated.putAll(expected);
+    generated.setProperty("rows", Long.toString(rowsPerQuarter * quarters));
+    generated.setProperty("writtenBytes", Long.toString(writtenBytes));
+    try (Writer writer = Files.newBufferedWriter(descriptionFile, StandardCharsets.UTF_8)) {
+      generated.store(writer, null);
+    }
+    return dataset(dir, generated);
+  }
+
+  /** ZIP com o CSV do trimestre; retorna o tamanho do CSV */
+  private long writeArchive(Path archive, int year, int quarter, long rows) throws IOException {
+    Files.createDirectories(archive.getParent());
+    String csvName = archive.getFileName().toString().replace(".zip", ".csv");
+
+    ParallelZipOutputStream zip =
+        new ParallelZipOutputStream(
+            Files.newOutputStream(archive),
+            CompressionPreset.FASTEST.level(),
+            Runtime.getRuntime().availableProcessors());
+    CountingOutputStream counter = new CountingOutputStream(zip);
+    try (Writer writer =
+        new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), 1 << 16)) {
+      zip.putNextEntry(csvName, System.currentTimeMillis());
+      data.writeQuarter(writer, year, quarter, rows);
+    }
+    return counter.count;
+  }
+
+  private Dataset dataset(Path dir, Properties description) throws IOException {
+    List<Path> archives = archives(dir);
+    Path operators = dir.resolve("operadoras.csv");
+    long zipBytes = 0;
+    for (Path archive : archives) {
+      if (!Files.isRegularFile(archive)) return null;
+      zipBytes += Files.size(archive);
+    }
+    if (!Files.isRegularFile(operators)) return null;
+
+    return new Dataset(
+        dir.resolve("www"),
+        archives,
+        operators,
+        Long.parseLong(description.getProperty("rows")),
+        Long.parseLong(description.getProperty("writtenBytes")),
+        zipBytes);
+  }
+
+  /** Caminhos dos ZIPs, do trimestre mais antigo ao mais recente */
+  private List<Path> archives(Path dir) {
+    List<Path> archives = new ArrayList<>();
+    Path listing = dir.resolve("www").resolve(LISTING_PATH);
+    for (int i = 0; i < quarters; i++) {
+      String year = Integer.toString(year(i));
+      archives.add(listing.resolve(year).resolve(quarter(i) + "T" + year + ".zip"));
+    }
+    return archives;
+  }
+
+  // Ano e trimestre do i-ésimo arquivo, contando do mais antigo
+  private int year(int i) {
+    return Math.floorDiv(index(i), 4);
+  }
+
+  private int quarter(int i) {
+    return Math.floorMod(index(i), 4) + 1;
+  }
+
+  private int index(int i) {
+    return lastYear * 4 + (lastQuarter - 1) - (quarters - 1 - i);
+  }
+
+  private static Properties readDescription(Path file) {
+    if (!Files.exists(file)) return null;
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      props.load(reader);
+      return props;
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Conta os bytes do CSV antes da compressão */
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+      count += length;
+    }
+  }
+}
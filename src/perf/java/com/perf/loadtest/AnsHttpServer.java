@@ -0,0 +1,279 @@
+package com.perf.loadtest;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.support.Helpers;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Servidor HTTP local que substitui o dadosabertos.ans.gov.br no teste de carga. Serve um
+ * diretório com listagens no formato do Apache ("Index of", usado pelo QuarterlyReportUrlScraper)
+ * e arquivos com HEAD, Range/If-Range, ETag, Last-Modified e respostas 304, como o servidor real.
+ *
+ * <p>Só atende em 127.0.0.1; o total de bytes enviados fica em {@link #bytesServed()}.
+ */
+public final class AnsHttpServer implements AutoCloseable {
+
+  private static final DateTimeFormatter HTTP_DATE =
+      DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter LISTING_DATE =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.ROOT).withZone(ZoneOffset.UTC);
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+  private final Path root;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final AtomicLong bytesServed = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+
+  /** Inicia o servidor na porta informada (0 escolhe uma porta livre) */
+  public AnsHttpServer(Path root, int port, int threads) throws IOException {
+    if (!Files.isDirectory(root)) {
+      throw new IllegalArgumentException("Diretório não encontrado: " + root);
+    }
+    this.root = root.toAbsolutePath().normalize();
+    this.server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    this.executor = Executors.newFixedThreadPool(threads, Helpers.daemonThreads("ans-http"));
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /** Endereço base de um caminho servido, por exemplo FTP/PDA/demonstracoes_contabeis/ */
+  public String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + path;
+  }
+
+  public long bytesServed() {
+    return bytesServed.get();
+  }
+
+  public long requests() {
+    return requests.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    try (exchange) {
+      String method = exchange.getRequestMethod();
+      if (!"GET".equals(method) && !"HEAD".equals(method)) {
+        sendEmpty(exchange, 405);
+        return;
+      }
+
+      String path = exchange.getRequestURI().getPath();
+      Path target = root.resolve(path.substring(1)).normalize();
+      if (!target.startsWith(root) || !Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+        sendEmpty(exchange, 404);
+        return;
+      }
+
+      if (Files.isDirectory(target)) {
+        // Como o Apache: diretórios sem barra final são redirecionados
+        if (!path.endsWith("/")) {
+          exchange.getResponseHeaders().set("Location", path + "/");
+          sendEmpty(exchange, 301);
+          return;
+        }
+        serveListing(exchange, path, target);
+      } else {
+        serveFile(exchange, target);
+      }
+    }
+  }
+
+  // Listagem HTML do diretório, com os links relativos do mod_autoindex
+  private void serveListing(HttpExchange exchange, String path, Path dir) throws IOException {
+    List<Path> entries;
+    try (Stream<Path> children = Files.list(dir)) {
+      entries = children.filter(child -> !isHidden(child)).sorted().toList();
+    }
+
+    long lastModified = Files.getLastModifiedTime(dir).toMillis();
+    for (Path entry : entries) {
+      lastModified = Math.max(lastModified, Files.getLastModifiedTime(entry).toMillis());
+    }
+    String etag = "\"d-" + Long.toHexString(lastModified) + "-" + entries.size() + "\"";
+    if (notModified(exchange, etag, lastModified)) return;
+
+    StringBuilder html = new StringBuilder(1024);
+    html.append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 3.2 Final//EN\">\n<html>\n <head>\n");
+    html.append("  <title>Index of ").append(path).append("</title>\n </head>\n <body>\n");
+    html.append("<h1>Index of ").append(path).append("</h1>\n<pre>");
+    html.append("<a href=\"?C=N;O=D\">Name</a> <a href=\"?C=M;O=A\">Last modified</a> ");
+    html.append("<a href=\"?C=S;O=A\">Size</a><hr>");
+    html.append("<a href=\"../\">Parent Directory</a>\n");
+    for (Path entry : entries) {
+      boolean directory = Files.isDirectory(entry);
+      String name = entry.getFileName() + (directory ? "/" : "");
+      String size = directory ? "-" : humanSize(Files.size(entry));
+      String modified = LISTING_DATE.format(Files.getLastModifiedTime(entry).toInstant());
+      html.append("<a href=\"").append(name).append("\">").append(name).append("</a>");
+      html.append(" ".repeat(Math.max(1, 50 - name.length())));
+      html.append(modified).append(' ').append(String.format("%5s", size)).append('\n');
+    }
+    html.append("<hr></pre>\n</body></html>\n");
+
+    byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+    Headers headers = exchange.getResponseHeaders();
+    headers.set("Content-Type", "text/html;charset=UTF-8");
+    headers.set("ETag", etag);
+    headers.set("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(lastModified)));
+    send(exchange, 200, body.length);
+    if (!isHead(exchange)) {
+      exchange.getResponseBody().write(body);
+      bytesServed.addAndGet(body.length);
+    }
+  }
+
+  // Arquivo inteiro ou um único intervalo (Range), respeitando If-Range
+  private void serveFile(HttpExchange exchange, Path file) throws IOException {
+    long size = Files.size(file);
+    long lastModified = Files.getLastModifiedTime(file).toMillis();
+    String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    if (notModified(exchange, etag, lastModified)) return;
+
+    Headers headers = exchange.getResponseHeaders();
+    headers.set("Content-Type", "application/zip");
+    headers.set("Accept-Ranges", "bytes");
+    String modified = HTTP_DATE.format(Instant.ofEpochMilli(lastModified));
+    headers.set("ETag", etag);
+    headers.set("Last-Modified", modified);
+
+    long start = 0;
+    long end = size; // exclusivo
+    int status = 200;
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+    if (range != null && (ifRange == null || ifRange.equals(etag) || ifRange.equals(modified))) {
+      Matcher matcher = RANGE.matcher(range.trim());
+      if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+        sendEmpty(exchange, 400);
+        return;
+      }
+      if (matcher.group(1).isEmpty()) {
+        start = Math.max(0, size - Long.parseLong(matcher.group(2))); // sufixo: últimos n bytes
+      } else {
+        start = Long.parseLong(matcher.group(1));
+        if (!matcher.group(2).isEmpty()) {
+          end = Math.min(size, Long.parseLong(matcher.group(2)) + 1);
+        }
+      }
+      if (start >= size || start >= end) {
+        headers.set("Content-Range", "bytes */" + size);
+        sendEmpty(exchange, 416);
+        return;
+      }
+      headers.set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+      status = 206;
+    }
+
+    send(exchange, status, end - start);
+    if (isHead(exchange)) return;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      OutputStream body = exchange.getResponseBody();
+      WritableByteChannel out = Channels.newChannel(body);
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+      long position = start;
+      while (position < end) {
+        buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+        int read = channel.read(buffer, position);
+        if (read < 0) break;
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        position += read;
+        bytesServed.addAndGet(read);
+      }
+    }
+  }
+
+  // Responde 304 quando o validador do cliente ainda vale
+  private static boolean notModified(HttpExchange exchange, String etag, long lastModified)
+      throws IOException {
+    Headers request = exchange.getRequestHeaders();
+    String ifNoneMatch = request.getFirst("If-None-Match");
+    boolean notModified;
+    if (ifNoneMatch != null) {
+      notModified = ifNoneMatch.equals(etag) || "*".equals(ifNoneMatch.trim());
+    } else {
+      notModified = modifiedSince(request.getFirst("If-Modified-Since"), lastModified);
+    }
+    if (!notModified) return false;
+
+    exchange.getResponseHeaders().set("ETag", etag);
+    sendEmpty(exchange, 304);
+    return true;
+  }
+
+  private static boolean modifiedSince(String value, long lastModified) {
+    if (value == null) return false;
+    try {
+      long since = Instant.from(HTTP_DATE.parse(value)).toEpochMilli();
+      return lastModified / 1000 <= since / 1000; // datas HTTP têm precisão de segundos
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+  // Envia os headers com o tamanho do corpo; HEAD não tem corpo, mas informa Content-Length
+  private static void send(HttpExchange exchange, int status, long length) throws IOException {
+    if (isHead(exchange)) {
+      exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+    }
+  }
+
+  private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+    exchange.sendResponseHeaders(status, -1);
+  }
+
+  private static boolean isHead(HttpExchange exchange) {
+    return "HEAD".equals(exchange.getRequestMethod());
+  }
+
+  private static boolean isHidden(Path path) {
+    return path.getFileName().toString().startsWith(".");
+  }
+
+  private static String humanSize(long bytes) {
+    if (bytes < 1024) return Long.toString(bytes);
+    if (bytes < 1024 * 1024) return (bytes / 1024) + "K";
+    if (bytes < 1024L * 1024 * 1024) return (bytes / (1024 * 1024)) + "M";
+    return (bytes / (1024L * 1024 * 1024)) + "G";
+  }
+}
@@ -0,0 +1,291 @@
+package com.perf.loadtest;
+
+import com.perf.SyntheticAnsData;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Teste de carga de ponta a ponta: gera arquivos sintéticos da ANS no volume pedido, sobe o
+ * {@link AnsHttpServer} com eles e executa o com.Main completo em outra JVM, apontado para o
+ * servidor local com -Dpipeline.baseUrl. Ao final informa o tempo total, o pico de memória
+ * residente (VmHWM do processo filho) e a vazão de cada etapa, a partir das linhas "Etapa ...
+ * concluída em ... ms" do Main.
+ *
+ * <p>Uso: mvn -Pperf package && java -cp target/benchmarks.jar com.perf.loadtest.LoadTestDriver
+ *
+ * <p>Propriedades: -Dload.size=1g (CSV descompactado somando os trimestres, ex.: 500m, 50g),
+ * -Dload.quarters=3, -Dload.last=3T2025 (último trimestre), -Dload.operators=1100,
+ * -Dload.validCnpj=0.95, -Dload.missing=0.02 (operadoras fora do cadastro), -Dload.seed=42,
+ * -Dload.dir=target/loadtest, -Dload.jvmArgs="-Xmx4g -Dpipeline.streaming=true" (repassados ao
+ * Main) e -Dload.clean=false (mantém o diretório de trabalho da execução anterior).
+ */
+public class LoadTestDriver {
+
+  private static final Pattern STAGE = Pattern.compile("^Etapa (\\S+) conclu\\S* em (\\d+) ms$");
+  private static final Pattern QUARTER = Pattern.compile("(\\d)T(\\d{4})");
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Path dir = Path.of(System.getProperty("load.dir", "target/loadtest")).toAbsolutePath();
+    long size = parseSize(System.getProperty("load.size", "1g"));
+    int quarters = Integer.getInteger("load.quarters", 3);
+    String lastQuarter = System.getProperty("load.last", "3T2025");
+    Matcher last = QUARTER.matcher(lastQuarter);
+    if (!last.matches()) {
+      throw new IllegalArgumentException("Trimestre inválido: " + lastQuarter);
+    }
+    SyntheticAnsData data =
+        new SyntheticAnsData(
+            Long.getLong("load.seed", 42),
+            Integer.getInteger("load.operators", 1100),
+            Double.parseDouble(System.getProperty("load.validCnpj", "0.95")),
+            Double.parseDouble(System.getProperty("load.missing", "0.02")));
+    String description =
+        System.getProperty("load.seed", "42")
+            + "/"
+            + data.operators()
+            + "/"
+            + System.getProperty("load.validCnpj", "0.95")
+            + "/"
+            + System.getProperty("load.missing", "0.02");
+
+    // Gera (ou reaproveita) os ZIPs e o cadastro de operadoras
+    long start = System.nanoTime();
+    AnsArchiveGenerator.Dataset dataset =
+        new AnsArchiveGenerator(
+                data,
+                description,
+                size,
+                quarters,
+                Integer.parseInt(last.group(2)),
+                Integer.parseInt(last.group(1)))
+            .generate(dir.resolve("data"));
+    System.out.printf(
+        Locale.ROOT,
+        "Dados: %d linhas, %s de CSV, %s em ZIP (%d ms)%n",
+        dataset.rows(),
+        megabytes(dataset.csvBytes()),
+        megabytes(dataset.zipBytes()),
+        (System.nanoTime() - start) / 1_000_000);
+
+    // Diretório de trabalho do Main, com o cadastro no lugar de extra_files/
+    Path workspace = dir.resolve("run");
+    if (Boolean.parseBoolean(System.getProperty("load.clean", "true"))) {
+      deleteRecursively(workspace);
+    }
+    Path extraFile = workspace.resolve("extra_files").resolve("dados operadoras.csv");
+    Files.createDirectories(extraFile.getParent());
+    Files.copy(dataset.operators(), extraFile, StandardCopyOption.REPLACE_EXISTING);
+
+    int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    try (AnsHttpServer server = new AnsHttpServer(dataset.root(), 0, threads)) {
+      List<String> command = new ArrayList<>();
+      command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+      String jvmArgs = System.getProperty("load.jvmArgs", "").trim();
+      if (!jvmArgs.isEmpty()) command.addAll(List.of(jvmArgs.split("\\s+")));
+      command.add("-Dpipeline.baseUrl=" + server.url(AnsArchiveGenerator.LISTING_PATH));
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add("com.Main");
+
+      Result result = run(command, workspace);
+      Path output = workspace.resolve("output").resolve("consolidado_despesas.csv");
+      long outputBytes = Files.exists(output) ? Files.size(output) : 0;
+
+      // Volume de referência de cada etapa, para a vazão (download: o que o servidor enviou, que
+      // fica perto de zero quando o Main reaproveita os ZIPs com 304)
+      Map<String, Long> volumes = new LinkedHashMap<>();
+      volumes.put("download", server.bytesServed());
+      volumes.put("processamento", dataset.csvBytes());
+      volumes.put("compactacao", outputBytes);
+      volumes.put("agregacoes", outputBytes);
+
+      report(dir, dataset, result, volumes, server, outputBytes, jvmArgs);
+      if (result.exitCode() != 0) {
+        System.err.println("Main terminou com código " + result.exitCode());
+        System.exit(result.exitCode());
+      }
+    }
+  }
+
+  /** Tempo total, pico de RSS (-1 se indisponível) e duração de cada etapa do Main */
+  private record Result(int exitCode, long wallMillis, long peakRssKb, Map<String, Long> stages) {}
+
+  // Executa o Main, repassando a saída e acompanhando a memória do processo pelo /proc
+  private static Result run(List<String> command, Path workspace)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    Process process =
+        new ProcessBuilder(command).directory(workspace.toFile()).redirectErrorStream(true).start();
+
+    AtomicLong peakRssKb = new AtomicLong(-1);
+    Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+    Thread sampler =
+        new Thread(
+            () -> {
+              while (process.isAlive()) {
+                peakRssKb.accumulateAndGet(readPeakRssKb(status), Math::max);
+                try {
+                  Thread.sleep(100);
+                } catch (InterruptedException e) {
+                  return;
+                }
+              }
+            },
+            "rss-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+
+    Map<String, Long> stages = new LinkedHashMap<>();
+    try (BufferedReader out =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+      String line;
+      while ((line = out.readLine()) != null) {
+        System.out.println("  | " + line);
+        Matcher matcher = STAGE.matcher(line);
+        if (matcher.matches()) {
+          stages.merge(matcher.group(1), Long.parseLong(matcher.group(2)), Long::sum);
+        }
+      }
+    }
+    int exitCode = process.waitFor();
+    long wallMillis = (System.nanoTime() - start) / 1_000_000;
+    sampler.interrupt();
+    sampler.join(TimeUnit.SECONDS.toMillis(1));
+    return new Result(exitCode, wallMillis, peakRssKb.get(), stages);
+  }
+
+  // VmHWM (pico de memória residente) do processo, em KB; -1 fora do Linux ou após o término
+  private static long readPeakRssKb(Path status) {
+    try (Stream<String> lines = Files.lines(status)) {
+      return lines
+          .filter(line -> line.startsWith("VmHWM:"))
+          .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")))
+          .findFirst()
+          .orElse(-1);
+    } catch (IOException | UncheckedIOException e) {
+      return -1;
+    }
+  }
+
+  // Imprime o resumo e grava o mesmo conteúdo em JSON em results/
+  private static void report(
+      Path dir,
+      AnsArchiveGenerator.Dataset dataset,
+      Result result,
+      Map<String, Long> volumes,
+      AnsHttpServer server,
+      long outputBytes,
+      String jvmArgs)
+      throws IOException {
+    System.out.println();
+    System.out.printf(Locale.ROOT, "Tempo total:   %d ms%n", result.wallMillis());
+    System.out.println(
+        "Pico de RSS:   "
+            + (result.peakRssKb() < 0 ? "indisponível" : megabytes(result.peakRssKb() * 1024)));
+    System.out.printf(
+        Locale.ROOT,
+        "Servidor:      %d requisições, %s enviados%n",
+        server.requests(),
+        megabytes(server.bytesServed()));
+    System.out.printf(Locale.ROOT, "CSV final:     %s%n%n", megabytes(outputBytes));
+    System.out.printf(Locale.ROOT, "%-15s %10s %12s %10s%n", "etapa", "ms", "volume", "MB/s");
+
+    StringBuilder stagesJson = new StringBuilder();
+    for (Map.Entry<String, Long> stage : result.stages().entrySet()) {
+      long millis = stage.getValue();
+      Long volume = volumes.get(stage.getKey());
+      double throughput =
+          volume == null || millis == 0 ? Double.NaN : volume / 1e6 / (millis / 1000.0);
+      System.out.printf(
+          Locale.ROOT,
+          "%-15s %10d %12s %10s%n",
+          stage.getKey(),
+          millis,
+          volume == null ? "-" : megabytes(volume),
+          Double.isNaN(throughput) ? "-" : String.format(Locale.ROOT, "%.1f", throughput));
+
+      if (stagesJson.length() > 0) stagesJson.append(",\n");
+      stagesJson.append(
+          String.format(
+              Locale.ROOT,
+              "    {\"stage\": \"%s\", \"millis\": %d, \"bytes\": %d, \"mbPerSecond\": %s}",
+              stage.getKey(),
+              millis,
+              volume == null ? 0 : volume,
+              Double.isNaN(throughput) ? "null" : String.format(Locale.ROOT, "%.3f", throughput)));
+    }
+
+    String json =
+        String.format(
+            Locale.ROOT,
+            "{%n  \"exitCode\": %d,%n  \"jvmArgs\": \"%s\",%n  \"rows\": %d,%n"
+                + "  \"csvBytes\": %d,%n  \"zipBytes\": %d,%n  \"outputBytes\": %d,%n"
+                + "  \"wallMillis\": %d,%n  \"peakRssKb\": %d,%n  \"bytesServed\": %d,%n"
+                + "  \"stages\": [%n%s%n  ]%n}%n",
+            result.exitCode(),
+            jvmArgs.replace("\\", "\\\\").replace("\"", "\\\""),
+            dataset.rows(),
+            dataset.csvBytes(),
+            dataset.zipBytes(),
+            outputBytes,
+            result.wallMillis(),
+            result.peakRssKb(),
+            server.bytesServed(),
+            stagesJson);
+    Path resultDir = dir.resolve("results");
+    Files.createDirectories(resultDir);
+    String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    Path resultFile = resultDir.resolve("loadtest-" + timestamp + ".json");
+    Files.writeString(resultFile, json);
+    System.out.println();
+    System.out.println("Resultado salvo em: " + resultFile);
+  }
+
+  /** Tamanho com sufixo opcional k, m ou g (potências de 1024), por exemplo 500m ou 50g */
+  private static long parseSize(String value) {
+    String text = value.trim().toLowerCase(Locale.ROOT);
+    long unit = 1;
+    if (text.endsWith("k")) unit = 1L << 10;
+    if (text.endsWith("m")) unit = 1L << 20;
+    if (text.endsWith("g")) unit = 1L << 30;
+    if (unit > 1) text = text.substring(0, text.length() - 1);
+    try {
+      return Math.round(Double.parseDouble(text) * unit);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Tamanho inválido: " + value);
+    }
+  }
+
+  private static String megabytes(long bytes) {
+    return String.format(Locale.ROOT, "%.1f MB", bytes / 1e6);
+  }
+
+  private static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) return;
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.support;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servidor HTTP local (127.0.0.1) que serve um arquivo de fixture com HEAD, Range/If-Range, ETag e
+ * 304, e falhas programáveis para os testes do RangeDownloader.
+ */
+final class FixtureServer implements AutoCloseable {
+
+  private static final String LAST_MODIFIED = "Wed, 01 Jan 2025 00:00:00 GMT";
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+  private static final int CHUNK = 8 * 1024;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private volatile byte[] content;
+
+  /** Responde 200 com o arquivo inteiro mesmo quando o pedido tem Range */
+  volatile boolean ignoreRange;
+
+  /** Encerra a conexão de cada resposta com Range depois de tantos bytes (negativo: nunca) */
+  volatile long dropRangesAfter = -1;
+
+  /** Encerra sem corpo a resposta ao Range que começa nesta posição (negativo: nenhum) */
+  volatile long breakRangeAt = -1;
+
+  /** Pausa entre os blocos enviados, para manter segmentos em andamento */
+  volatile long chunkDelayMillis;
+
+  final List<String> ranges = new CopyOnWriteArrayList<>();
+  final AtomicLong bytesServed = new AtomicLong();
+  final AtomicInteger notModified = new AtomicInteger();
+
+  FixtureServer(Path fixture) throws IOException {
+    this.content = Files.readAllBytes(fixture);
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.executor = Executors.newCachedThreadPool(Helpers.daemonThreads("fixture-http"));
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  URI uri(String fileName) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/" + fileName);
+  }
+
+  /** Troca o arquivo servido; o ETag muda junto com o conteúdo */
+  void serve(Path fixture) throws IOException {
+    content = Files.readAllBytes(fixture);
+  }
+
+  /** Zera os contadores entre duas etapas de um teste */
+  void reset() {
+    ranges.clear();
+    bytesServed.set(0);
+    notModified.set(0);
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      byte[] body = content;
+      String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+      Headers request = exchange.getRequestHeaders();
+      Headers headers = exchange.getResponseHeaders();
+      headers.set("ETag", etag);
+      headers.set("Last-Modified", LAST_MODIFIED);
+
+      if (etag.equals(request.getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      headers.set("Accept-Ranges", "bytes");
+
+      long start = 0;
+      long end = body.length; // exclusivo
+      int status = 200;
+      String range = request.getFirst("Range");
+      String ifRange = request.getFirst("If-Range");
+      if (range != null) ranges.add(range);
+      if (range != null && !ignoreRange && (ifRange == null || ifRange.equals(etag))) {
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches()) {
+          exchange.sendResponseHeaders(400, -1);
+          return;
+        }
+        start = Long.parseLong(matcher.group(1));
+        end = Math.min(body.length, Long.parseLong(matcher.group(2)) + 1);
+        headers.set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + body.length);
+        status = 206;
+      }
+
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        headers.set("Content-Length", Long.toString(end - start));
+        exchange.sendResponseHeaders(status, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(status, end - start);
+
+      long limit = end;
+      if (status == 206 && start == breakRangeAt) {
+        limit = start;
+      } else if (status == 206 && dropRangesAfter >= 0) {
+        limit = Math.min(end, start + dropRangesAfter);
+      }
+      OutputStream out = exchange.getResponseBody();
+      for (long position = start; position < limit; position += CHUNK) {
+        int length = (int) Math.min(CHUNK, limit - position);
+        out.write(body, (int) position, length);
+        out.flush();
+        bytesServed.addAndGet(length);
+        pause();
+      }
+      if (limit < end) {
+        // Corpo incompleto: a conexão cai antes do Content-Length anunciado
+        throw new IOException("Conexão encerrada pelo servidor de teste");
+      }
+    }
+  }
+
+  private void pause() {
+    if (chunkDelayMillis <= 0) return;
+    try {
+      Thread.sleep(chunkDelayMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.support;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Download segmentado contra um servidor HTTP local que serve ZIPs de fixture */
+class RangeDownloaderTest {
+
+  private static final int SEGMENTS = 4;
+  private static final long MIN_SEGMENT_SIZE = 64 * 1024;
+
+  @TempDir Path dir;
+
+  private Path fixture;
+  private Path destination;
+  private Path partFile;
+  private Path stateFile;
+  private FixtureServer server;
+  private URI uri;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    fixture = zip(dir.resolve("fixture.zip"), 1);
+    destination = dir.resolve("baixado.zip");
+    partFile = dir.resolve("baixado.zip.part");
+    stateFile = dir.resolve("baixado.zip.part.state");
+    server = new FixtureServer(fixture);
+    uri = server.uri("fixture.zip");
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.close();
+  }
+
+  @Test
+  void downloadsAllSegments() throws IOException {
+    RangeDownloader.RemoteFile remote = downloader().download(uri, destination, null);
+
+    assertNotNull(remote);
+    assertEquals(Files.size(fixture), remote.size());
+    assertArrayEquals(Files.readAllBytes(fixture), Files.readAllBytes(destination));
+    assertEquals(SEGMENTS, server.ranges.size());
+    assertFalse(Files.exists(partFile));
+    assertFalse(Files.exists(stateFile));
+  }
+
+  @Test
+  void resumesInterruptedSegmentsFromSavedState() throws IOException {
+    // Cada resposta cai após 48 KB: as três tentativas de um segmento de 256 KB não bastam
+    server.dropRangesAfter = 48 * 1024;
+    assertThrows(IOException.class, () -> downloader().download(uri, destination, null));
+
+    assertFalse(Files.exists(destination));
+    assertTrue(Files.exists(partFile));
+    assertTrue(Files.exists(stateFile));
+
+    server.dropRangesAfter = -1;
+    server.reset();
+    downloader().download(uri, destination, null);
+
+    long size = Files.size(fixture);
+    assertArrayEquals(Files.readAllBytes(fixture), Files.readAllBytes(destination));
+    assertTrue(server.bytesServed.get() < size, "a retomada baixou o arquivo inteiro de novo");
+    for (String range : server.ranges) {
+      // Nenhum segmento recomeça do início: todos continuam do byte salvo no .part.state
+      long start = Long.parseLong(range.substring("bytes=".length(), range.indexOf('-')));
+      assertFalse(segmentStarts(size).contains(start), "segmento recomeçado: " + range);
+    }
+    assertFalse(Files.exists(partFile));
+    assertFalse(Files.exists(stateFile));
+  }
+
+  @Test
+  void fallsBackToWholeDownloadWhenRangeIsIgnored() throws IOException {
+    server.ignoreRange = true;
+    RangeDownloader.RemoteFile remote = downloader().download(uri, destination, null);
+
+    assertNotNull(remote);
+    assertEquals(Files.size(fixture), remote.size());
+    assertArrayEquals(Files.readAllBytes(fixture), Files.readAllBytes(destination));
+    assertFalse(Files.exists(partFile));
+    assertFalse(Files.exists(stateFile));
+  }
+
+  @Test
+  void skipsDownloadWhenNotModified() throws IOException {
+    RangeDownloader.RemoteFile cached = downloader().download(uri, destination, null);
+    byte[] before = Files.readAllBytes(destination);
+
+    server.reset();
+    assertNull(downloader().download(uri, destination, cached));
+    assertEquals(1, server.notModified.get());
+    assertEquals(0, server.bytesServed.get());
+    assertArrayEquals(before, Files.readAllBytes(destination));
+
+    // Com o arquivo alterado no servidor, o mesmo cache não vale mais
+    Path changed = zip(dir.resolve("alterado.zip"), 2);
+    server.serve(changed);
+    server.reset();
+    RangeDownloader.RemoteFile updated = downloader().download(uri, destination, cached);
+
+    assertNotNull(updated);
+    assertFalse(updated.etag().equals(cached.etag()));
+    assertArrayEquals(Files.readAllBytes(changed), Files.readAllBytes(destination));
+  }
+
+  @Test
+  void cancelsAndJoinsSegmentsWhenOneFails() throws Exception {
+    // O primeiro segmento falha sempre; os demais seguem lentos até serem cancelados
+    server.breakRangeAt = 0;
+    server.chunkDelayMillis = 20;
+    assertThrows(IOException.class, () -> downloader().download(uri, destination, null));
+
+    assertFalse(segmentRunning(), "segmento ainda ativo após o download falhar");
+    assertTrue(Files.exists(stateFile));
+    byte[] partial = Files.readAllBytes(partFile);
+    Thread.sleep(200);
+    assertArrayEquals(partial, Files.readAllBytes(partFile), ".part alterado após a falha");
+
+    server.breakRangeAt = -1;
+    server.chunkDelayMillis = 0;
+    downloader().download(uri, destination, null);
+    assertArrayEquals(Files.readAllBytes(fixture), Files.readAllBytes(destination));
+  }
+
+  private static RangeDownloader downloader() {
+    return new RangeDownloader(HttpClient.newHttpClient())
+        .segments(SEGMENTS)
+        .minSegmentSize(MIN_SEGMENT_SIZE);
+  }
+
+  /** ZIP de cerca de 1 MB com conteúdo aleatório, que não se comprime */
+  private static Path zip(Path file, long seed) throws IOException {
+    byte[] data = new byte[1024 * 1024];
+    new Random(seed).nextBytes(data);
+    try (OutputStream out = Files.newOutputStream(file);
+        ZipOutputStream zos = new ZipOutputStream(out)) {
+      zos.putNextEntry(new ZipEntry("dados.bin"));
+      zos.write(data);
+      zos.closeEntry();
+    }
+    return file;
+  }
+
+  /** Início de cada segmento, como o RangeDownloader divide o arquivo */
+  private static Set<Long> segmentStarts(long size) {
+    Set<Long> starts = new HashSet<>();
+    for (int i = 0; i < SEGMENTS; i++) {
+      starts.add(size * i / SEGMENTS);
+    }
+    return starts;
+  }
+
+  /** Alguma thread ainda executa o download de um segmento */
+  private static boolean segmentRunning() {
+    String downloader = RangeDownloader.class.getName();
+    return Thread.getAllStackTraces().values().stream()
+        .flatMap(Arrays::stream)
+        .map(StackTraceElement::getClassName)
+        .anyMatch(name -> name.equals(downloader) || name.startsWith(downloader + "$"));
+  }
+}